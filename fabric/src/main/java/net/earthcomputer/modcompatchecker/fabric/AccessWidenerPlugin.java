@@ -3,9 +3,10 @@ package net.earthcomputer.modcompatchecker.fabric;
 import net.earthcomputer.modcompatchecker.config.Config;
 import net.earthcomputer.modcompatchecker.config.Plugin;
 import net.earthcomputer.modcompatchecker.indexer.ClassIndex;
-import net.earthcomputer.modcompatchecker.indexer.Index;
+import net.earthcomputer.modcompatchecker.indexer.IndexBuilder;
 import net.earthcomputer.modcompatchecker.util.AccessFlags;
 import net.earthcomputer.modcompatchecker.util.ClassMember;
+import net.earthcomputer.modcompatchecker.util.JarSession;
 import org.jetbrains.annotations.Nullable;
 import org.objectweb.asm.Opcodes;
 
@@ -13,14 +14,12 @@ import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.nio.charset.StandardCharsets;
-import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
-import java.util.jar.JarEntry;
-import java.util.jar.JarFile;
+import java.util.TreeMap;
 
 public class AccessWidenerPlugin implements Plugin {
     private final Map<String, List<AccessWidenerOp>> widenedClasses = new HashMap<>();
@@ -33,30 +32,28 @@ public class AccessWidenerPlugin implements Plugin {
     }
 
     @Override
-    public void preIndexMod(Config config, Index index, Path modPath) throws IOException {
-        readAccessWidener(config, modPath);
+    public void preIndexMod(Config config, IndexBuilder index, JarSession modJar) throws IOException {
+        readAccessWidener(config, modJar);
     }
 
     @Override
-    public void preIndexLibrary(Config config, Index index, Path libraryPath) throws IOException {
-        readAccessWidener(config, libraryPath);
+    public void preIndexLibrary(Config config, IndexBuilder index, JarSession libraryJar) throws IOException {
+        readAccessWidener(config, libraryJar);
     }
 
-    private void readAccessWidener(Config config, Path modPath) throws IOException {
-        try (JarFile modJar = new JarFile(modPath.toFile())) {
-            FabricModJson modJson = FabricModJson.load(modJar);
-            if (modJson == null) {
-                return;
-            }
+    private void readAccessWidener(Config config, JarSession modJar) throws IOException {
+        FabricModJson modJson = FabricModJson.load(modJar);
+        if (modJson == null) {
+            return;
+        }
 
-            if (modJson.accessWidener != null) {
-                JarEntry accessWidenerEntry = modJar.getJarEntry(modJson.accessWidener);
-                if (accessWidenerEntry == null) {
-                    throw new IOException("Could not find specified access widener \"" + modJson.accessWidener + "\"");
-                }
-                try (BufferedReader reader = new BufferedReader(new InputStreamReader(modJar.getInputStream(accessWidenerEntry), StandardCharsets.UTF_8))) {
-                    doReadAccessWidener(config, reader);
-                }
+        if (modJson.accessWidener != null) {
+            JarSession.Entry accessWidenerEntry = modJar.getEntry(modJson.accessWidener);
+            if (accessWidenerEntry == null) {
+                throw new IOException("Could not find specified access widener \"" + modJson.accessWidener + "\"");
+            }
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(modJar.getInputStream(accessWidenerEntry), StandardCharsets.UTF_8))) {
+                doReadAccessWidener(config, reader);
             }
         }
     }
@@ -130,9 +127,14 @@ public class AccessWidenerPlugin implements Plugin {
         return props == null ? "intermediary" : props.getProperty("runtimeNamespace", "intermediary");
     }
 
+    @Override
+    public String getIndexCacheKey(Config config) {
+        return getRuntimeNamespace(config) + "\n" + new TreeMap<>(widenedClasses) + "\n" + new TreeMap<>(widenedFields) + "\n" + new TreeMap<>(widenedMethods);
+    }
+
     @Override
     @Nullable
-    public ClassIndex onIndexClass(Index index, String className, ClassIndex clazz) {
+    public ClassIndex onIndexClass(String className, ClassIndex clazz) {
         List<AccessWidenerOp> widenOps = widenedClasses.get(className);
         if (widenOps != null) {
             for (AccessWidenerOp widenOp : widenOps) {
@@ -2,6 +2,7 @@ package net.earthcomputer.modcompatchecker.fabric;
 
 import com.google.gson.Gson;
 import com.google.gson.JsonParseException;
+import net.earthcomputer.modcompatchecker.util.JarSession;
 import org.jetbrains.annotations.Nullable;
 
 import java.io.IOException;
@@ -11,20 +12,21 @@ import java.nio.charset.StandardCharsets;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
-import java.util.jar.JarEntry;
-import java.util.jar.JarFile;
 
 final class FabricModJson {
     private static final Gson GSON = new Gson();
 
     public int schemaVersion;
+    @Nullable
     public Map<String, List<String>> entrypoints = Collections.emptyMap();
     @Nullable
     public String accessWidener;
+    @Nullable
+    public List<NestedJar> jars = Collections.emptyList();
 
     @Nullable
-    public static FabricModJson load(JarFile modJar) throws IOException {
-        JarEntry modJsonEntry = modJar.getJarEntry("fabric.mod.json");
+    public static FabricModJson load(JarSession modJar) throws IOException {
+        JarSession.Entry modJsonEntry = modJar.getEntry("fabric.mod.json");
         if (modJsonEntry == null) {
             return null;
         }
@@ -39,4 +41,9 @@ final class FabricModJson {
         }
         return fabricModJson;
     }
+
+    public static final class NestedJar {
+        @Nullable
+        public String file;
+    }
 }
@@ -2,15 +2,15 @@ package net.earthcomputer.modcompatchecker.fabric;
 
 import net.earthcomputer.modcompatchecker.config.Config;
 import net.earthcomputer.modcompatchecker.config.Plugin;
-import net.earthcomputer.modcompatchecker.indexer.Index;
+import net.earthcomputer.modcompatchecker.indexer.IndexBuilder;
+import net.earthcomputer.modcompatchecker.util.JarSession;
 import net.earthcomputer.modcompatchecker.util.ThreeState;
 
 import java.io.IOException;
-import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
-import java.util.jar.JarFile;
 
 public class FabricPlugin implements Plugin {
     private final Set<String> entrypointClasses = new HashSet<>();
@@ -26,14 +26,33 @@ public class FabricPlugin implements Plugin {
     }
 
     @Override
-    public void preIndexMod(Config config, Index index, Path modPath) throws IOException {
-        try (JarFile modJar = new JarFile(modPath.toFile())) {
-            FabricModJson modJson = FabricModJson.load(modJar);
-            if (modJson == null) {
-                return;
+    public List<String> getNestedJars(JarSession jar) throws IOException {
+        FabricModJson modJson = FabricModJson.load(jar);
+        // gson leaves fields null where the json has an explicit null
+        if (modJson == null || modJson.jars == null) {
+            return List.of();
+        }
+        List<String> nestedJars = new ArrayList<>(modJson.jars.size());
+        for (FabricModJson.NestedJar nestedJar : modJson.jars) {
+            if (nestedJar != null && nestedJar.file != null) {
+                nestedJars.add(nestedJar.file);
+            }
+        }
+        return nestedJars;
+    }
+
+    @Override
+    public void preIndexMod(Config config, IndexBuilder index, JarSession modJar) throws IOException {
+        FabricModJson modJson = FabricModJson.load(modJar);
+        if (modJson == null || modJson.entrypoints == null) {
+            return;
+        }
+        for (List<String> entrypointCategory : modJson.entrypoints.values()) {
+            if (entrypointCategory == null) {
+                continue;
             }
-            for (List<String> entrypointCategory : modJson.entrypoints.values()) {
-                for (String entrypoint : entrypointCategory) {
+            for (String entrypoint : entrypointCategory) {
+                if (entrypoint != null) {
                     entrypointClasses.add(entrypoint.replace('.', '/'));
                 }
             }
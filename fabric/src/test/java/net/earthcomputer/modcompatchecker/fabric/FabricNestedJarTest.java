@@ -0,0 +1,194 @@
+package net.earthcomputer.modcompatchecker.fabric;
+
+import net.earthcomputer.modcompatchecker.ErrorCollectingProblemCollector;
+import net.earthcomputer.modcompatchecker.checker.Checker;
+import net.earthcomputer.modcompatchecker.config.Config;
+import net.earthcomputer.modcompatchecker.config.Plugin;
+import net.earthcomputer.modcompatchecker.config.PluginLoader;
+import net.earthcomputer.modcompatchecker.indexer.IResolvedClass;
+import net.earthcomputer.modcompatchecker.indexer.Index;
+import net.earthcomputer.modcompatchecker.indexer.IndexBuilder;
+import net.earthcomputer.modcompatchecker.indexer.Indexer;
+import net.earthcomputer.modcompatchecker.util.ClassMember;
+import net.earthcomputer.modcompatchecker.util.JarSession;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+public class FabricNestedJarTest {
+    @TempDir
+    Path tempDir;
+
+    @BeforeEach
+    public void setup() {
+        List<Plugin> plugins = PluginLoader.createBuiltinPlugins();
+        plugins.add(new FabricPlugin());
+        PluginLoader.setTestingPlugins(plugins);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        PluginLoader.setTestingPlugins(null);
+    }
+
+    @Test
+    public void testNestedJars() throws IOException {
+        byte[] storedJar = zip(
+            new ZipFileEntry("nested/Stored.class", writeClass("nested/Stored", "stored", "missing/StoredRef"), false),
+            new ZipFileEntry("nested/Duplicate.class", writeClass("nested/Duplicate", "fromStored", null), false)
+        );
+        byte[] deflatedJar = zip(
+            new ZipFileEntry("nested/Deflated.class", writeClass("nested/Deflated", "deflated", "missing/DeflatedRef"), true),
+            new ZipFileEntry("nested/Duplicate.class", writeClass("nested/Duplicate", "fromDeflated", null), true)
+        );
+        String modJson = """
+            {
+              "schemaVersion": 1,
+              "id": "outer",
+              "version": "1.0",
+              "jars": [
+                {"file": "META-INF/jars/stored.jar"},
+                {"file": "META-INF/jars/deflated.jar"}
+              ]
+            }
+            """;
+        Path outerJar = tempDir.resolve("outer.jar");
+        Files.write(outerJar, zip(
+            new ZipFileEntry("fabric.mod.json", modJson.getBytes(StandardCharsets.UTF_8), true),
+            new ZipFileEntry("META-INF/jars/stored.jar", storedJar, false),
+            new ZipFileEntry("META-INF/jars/deflated.jar", deflatedJar, true),
+            new ZipFileEntry("outer/Outer.class", writeClass("outer/Outer", "outer", null), true),
+            new ZipFileEntry("nested/Duplicate.class", writeClass("nested/Duplicate", "fromOuter", null), true)
+        ));
+
+        List<JarSession> jars = Indexer.withNestedJars(JarSession.open(outerJar));
+        try {
+            Assertions.assertEquals(List.of(outerJar + "!/META-INF/jars/stored.jar", outerJar + "!/META-INF/jars/deflated.jar", outerJar.toString()), jars.stream().map(JarSession::toString).toList());
+
+            // the same way as Main, later jars take precedence
+            IndexBuilder builder = new IndexBuilder();
+            List<Indexer.Source> sources = new ArrayList<>();
+            for (JarSession jar : jars) {
+                sources.add(out -> Indexer.indexJar(jar, out, Runnable::run));
+            }
+            Indexer.indexAll(sources, builder, Runnable::run);
+            Index index = builder.build();
+
+            assertOnlyField(index, "nested/Stored", "stored");
+            assertOnlyField(index, "nested/Deflated", "deflated");
+            assertOnlyField(index, "outer/Outer", "outer");
+            assertOnlyField(index, "nested/Duplicate", "fromOuter");
+
+            ErrorCollectingProblemCollector problems = new ErrorCollectingProblemCollector();
+            Checker.check(index, Config.empty(), jars, problems);
+            List<String> messages = new ArrayList<>(problems.getMessages());
+            messages.sort(null);
+            Assertions.assertEquals(List.of(
+                "nested/Deflated.run ()V: L1: Code accesses class missing/DeflatedRef which is removed",
+                "nested/Stored.run ()V: L1: Code accesses class missing/StoredRef which is removed"
+            ), messages);
+        } finally {
+            jars.forEach(JarSession::close);
+        }
+    }
+
+    @Test
+    public void testNullJars() throws IOException {
+        Path jar = tempDir.resolve("null.jar");
+        Files.write(jar, zip(new ZipFileEntry("fabric.mod.json", """
+            {
+              "schemaVersion": 1,
+              "id": "nulljars",
+              "version": "1.0",
+              "entrypoints": null,
+              "jars": null
+            }
+            """.getBytes(StandardCharsets.UTF_8), true)));
+        try (JarSession session = JarSession.open(jar)) {
+            Assertions.assertEquals(List.of(), new FabricPlugin().getNestedJars(session));
+            Assertions.assertEquals(List.of(session), Indexer.withNestedJars(session));
+            new FabricPlugin().preIndexMod(Config.empty(), new IndexBuilder(), session);
+        }
+
+        Files.write(jar, zip(new ZipFileEntry("fabric.mod.json", """
+            {
+              "schemaVersion": 1,
+              "id": "nulljars",
+              "version": "1.0",
+              "entrypoints": {"main": null},
+              "jars": [null, {"file": null}]
+            }
+            """.getBytes(StandardCharsets.UTF_8), true)));
+        try (JarSession session = JarSession.open(jar)) {
+            Assertions.assertEquals(List.of(), new FabricPlugin().getNestedJars(session));
+            new FabricPlugin().preIndexMod(Config.empty(), new IndexBuilder(), session);
+        }
+    }
+
+    private static void assertOnlyField(Index index, String className, String fieldName) {
+        IResolvedClass clazz = index.findClass(className);
+        Assertions.assertNotNull(clazz, className);
+        Assertions.assertEquals(List.of(fieldName), clazz.getFields().stream().map(ClassMember::name).toList(), className);
+    }
+
+    // a class with a single field, and a method referencing the given class if it's not null
+    private static byte[] writeClass(String className, String fieldName, String referencedClass) {
+        ClassWriter writer = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+        writer.visit(Opcodes.V17, Opcodes.ACC_PUBLIC, className, null, "java/lang/Object", null);
+        writer.visitField(Opcodes.ACC_PUBLIC, fieldName, "I", null, null).visitEnd();
+        if (referencedClass != null) {
+            MethodVisitor method = writer.visitMethod(Opcodes.ACC_PUBLIC | Opcodes.ACC_STATIC, "run", "()V", null, null);
+            method.visitCode();
+            Label label = new Label();
+            method.visitLabel(label);
+            method.visitLineNumber(1, label);
+            method.visitTypeInsn(Opcodes.NEW, referencedClass);
+            method.visitInsn(Opcodes.POP);
+            method.visitInsn(Opcodes.RETURN);
+            method.visitMaxs(0, 0);
+            method.visitEnd();
+        }
+        writer.visitEnd();
+        return writer.toByteArray();
+    }
+
+    private record ZipFileEntry(String name, byte[] contents, boolean deflate) {
+    }
+
+    private static byte[] zip(ZipFileEntry... entries) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ZipOutputStream output = new ZipOutputStream(bytes)) {
+            for (ZipFileEntry entry : entries) {
+                ZipEntry zipEntry = new ZipEntry(entry.name);
+                if (!entry.deflate) {
+                    CRC32 crc = new CRC32();
+                    crc.update(entry.contents);
+                    zipEntry.setMethod(ZipEntry.STORED);
+                    zipEntry.setSize(entry.contents.length);
+                    zipEntry.setCrc(crc.getValue());
+                }
+                output.putNextEntry(zipEntry);
+                output.write(entry.contents);
+                output.closeEntry();
+            }
+        }
+        return bytes.toByteArray();
+    }
+}
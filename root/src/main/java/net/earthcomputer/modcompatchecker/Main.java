@@ -4,6 +4,7 @@ import joptsimple.OptionException;
 import joptsimple.OptionParser;
 import joptsimple.OptionSet;
 import joptsimple.util.PathConverter;
+import joptsimple.util.EnumConverter;
 import joptsimple.util.PathProperties;
 import net.earthcomputer.modcompatchecker.checker.Checker;
 import net.earthcomputer.modcompatchecker.checker.PrintingProblemCollector;
@@ -12,15 +13,26 @@ import net.earthcomputer.modcompatchecker.config.ConfigLoader;
 import net.earthcomputer.modcompatchecker.config.Plugin;
 import net.earthcomputer.modcompatchecker.config.PluginLoader;
 import net.earthcomputer.modcompatchecker.indexer.Index;
+import net.earthcomputer.modcompatchecker.indexer.IndexBuilder;
+import net.earthcomputer.modcompatchecker.indexer.IndexCache;
+import net.earthcomputer.modcompatchecker.indexer.IndexFormat;
 import net.earthcomputer.modcompatchecker.indexer.Indexer;
+import net.earthcomputer.modcompatchecker.indexer.JarManifest;
+import net.earthcomputer.modcompatchecker.indexer.JdkIndex;
+import net.earthcomputer.modcompatchecker.util.JarSession;
+import org.jetbrains.annotations.Nullable;
 
 import java.io.BufferedReader;
-import java.io.BufferedWriter;
 import java.io.IOException;
-import java.io.PrintWriter;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
 
 public final class Main {
     private Main() {
@@ -30,10 +42,20 @@ public final class Main {
         OptionParser parser = new OptionParser();
         var configOption = parser.acceptsAll(List.of("c", "config"), "the config file").withRequiredArg().withValuesConvertedBy(new PathConverter(PathProperties.FILE_EXISTING, PathProperties.READABLE));
         var helpOption = parser.acceptsAll(List.of("h", "help"), "prints this help message").forHelp();
-        var indexOption = parser.acceptsAll(List.of("i", "index"), "creates an index of the given jar").withRequiredArg().withValuesConvertedBy(new PathConverter(PathProperties.FILE_EXISTING, PathProperties.READABLE));
-        var checkOption = parser.acceptsAll(List.of("k", "check"), "the mod jar to check compatibility").withRequiredArg().withValuesConvertedBy(new PathConverter(PathProperties.FILE_EXISTING, PathProperties.READABLE));
+        var indexOption = parser.acceptsAll(List.of("i", "index"), "creates an index of the given jars").withRequiredArg().withValuesConvertedBy(new PathConverter(PathProperties.FILE_EXISTING, PathProperties.READABLE));
+        var checkOption = parser.acceptsAll(List.of("k", "check"), "the mod jar or directory of classes to check compatibility").withRequiredArg().withValuesConvertedBy(new PathConverter(PathProperties.READABLE));
         var libraryOption = parser.acceptsAll(List.of("l", "library"), "a library to check against").withRequiredArg().withValuesConvertedBy(new PathConverter(PathProperties.FILE_EXISTING, PathProperties.READABLE));
-        var outputOption = parser.acceptsAll(List.of("o", "output"), "the output of this operation").availableIf(indexOption).requiredIf(indexOption).withRequiredArg().withValuesConvertedBy(new PathConverter());
+        var bundleOption = parser.acceptsAll(List.of("b", "bundle"), "merges the given jars and indexes into a single index").withRequiredArg().withValuesConvertedBy(new PathConverter(PathProperties.FILE_EXISTING, PathProperties.READABLE));
+        var outputOption = parser.acceptsAll(List.of("o", "output"), "the output of this operation").availableIf(indexOption, bundleOption).requiredIf(indexOption, bundleOption).withRequiredArg().withValuesConvertedBy(new PathConverter());
+        var formatOption = parser.accepts("format", "the format of the index to output").availableIf(indexOption, bundleOption).withRequiredArg().withValuesConvertedBy(new EnumConverter<>(IndexFormat.class) {}).defaultsTo(IndexFormat.TEXT);
+        var previousOption = parser.accepts("previous", "a previous index of an older version of the jar to reuse unchanged classes from").availableIf(indexOption).withRequiredArg().withValuesConvertedBy(new PathConverter(PathProperties.FILE_EXISTING, PathProperties.READABLE));
+        var cacheDirOption = parser.accepts("cache-dir", "a directory to cache library indexes in").availableIf(checkOption).withRequiredArg().withValuesConvertedBy(new PathConverter());
+        var releaseOption = parser.accepts("release", "the Java release to check against, defaults to the running JDK").availableIf(checkOption).withRequiredArg().ofType(Integer.class);
+        var jdkCacheSizeOption = parser.accepts("jdk-cache-size", "the maximum number of JDK classes to keep in memory").availableIf(checkOption).withRequiredArg().ofType(Integer.class).defaultsTo(JdkIndex.DEFAULT_CACHE_CAPACITY);
+        var statsOption = parser.accepts("stats", "prints statistics about the check").availableIf(checkOption);
+        var onDemandOption = parser.accepts("on-demand", "only indexes the classes of library jars which the check needs, which is faster for small mods").availableIf(checkOption);
+        var watchOption = parser.accepts("watch", "keeps running, and checks the mods again whenever they change").availableIf(checkOption);
+        var threadsOption = parser.accepts("threads", "the number of threads to index jars with").withRequiredArg().ofType(Integer.class).defaultsTo(Runtime.getRuntime().availableProcessors());
         OptionSet options;
         try {
             options = parser.parse(args);
@@ -46,6 +68,11 @@ public final class Main {
             return;
         }
 
+        if (threadsOption.value(options) <= 0) {
+            System.err.println("Number of threads must be positive");
+            return;
+        }
+
         PluginLoader.plugins().forEach(Plugin::initialize);
 
         Config config;
@@ -60,13 +87,31 @@ public final class Main {
             config = Config.empty();
         }
 
-        if (options.has(indexOption)) {
-            indexJar(indexOption.value(options), outputOption.value(options), config);
-            return;
-        }
+        ForkJoinPool executor = new ForkJoinPool(threadsOption.value(options));
+        try {
+            if (options.has(indexOption)) {
+                if (indexOption.values(options).size() > 1 && options.has(previousOption)) {
+                    System.err.println("A previous index can only be used when indexing a single jar");
+                    return;
+                }
+                indexJars(indexOption.values(options), outputOption.value(options), previousOption.value(options), formatOption.value(options), config, executor);
+                return;
+            }
 
-        if (options.has(checkOption)) {
-            checkMods(checkOption.values(options), libraryOption.values(options), config);
+            if (options.has(bundleOption)) {
+                bundle(bundleOption.values(options), outputOption.value(options), formatOption.value(options), config, executor);
+                return;
+            }
+
+            if (options.has(checkOption)) {
+                if (jdkCacheSizeOption.value(options) <= 0) {
+                    System.err.println("JDK cache size must be positive");
+                    return;
+                }
+                checkMods(checkOption.values(options), libraryOption.values(options), cacheDirOption.value(options), releaseOption.value(options), jdkCacheSizeOption.value(options), options.has(statsOption), options.has(onDemandOption), options.has(watchOption), config, executor);
+            }
+        } finally {
+            executor.shutdown();
         }
     }
 
@@ -78,82 +123,229 @@ public final class Main {
         }
     }
 
-    private static void indexJar(Path jarPath, Path outputPath, Config config) {
-        Index index = new Index();
+    private static void indexJars(List<Path> jarPaths, Path outputPath, @Nullable Path previousPath, IndexFormat format, Config config, Executor executor) {
+        IndexBuilder index = new IndexBuilder();
+        // the manifest records the entries of a single jar, so several jars (including nested ones) are always indexed from
+        // scratch
+        JarManifest manifest = null;
+        List<JarSession> jars = new ArrayList<>(jarPaths.size());
         try {
-            for (Plugin plugin : PluginLoader.plugins()) {
-                plugin.preIndexLibrary(config, index, jarPath);
+            for (Path jarPath : jarPaths) {
+                jars.addAll(openWithNestedJars(JarSession.open(jarPath)));
+            }
+            for (JarSession jar : jars) {
+                for (Plugin plugin : PluginLoader.plugins()) {
+                    plugin.preIndexLibrary(config, index, jar);
+                }
+            }
+            if (jars.size() == 1) {
+                manifest = Indexer.indexJarIncrementally(jars.get(0), config, index, previousPath, executor);
+            } else {
+                List<Indexer.Source> sources = new ArrayList<>(jars.size());
+                for (JarSession jar : jars) {
+                    sources.add(out -> Indexer.indexJar(jar, out, executor));
+                }
+                Indexer.indexAll(sources, index, executor);
             }
-            Indexer.indexJar(jarPath, index);
         } catch (IOException e) {
             System.err.println("Failed to index jar: " + e);
             return;
+        } finally {
+            closeAll(jars);
         }
-        try (BufferedWriter writer = Files.newBufferedWriter(outputPath)) {
-            PrintWriter pw = new PrintWriter(writer);
-            index.serialize(pw);
-            if (pw.checkError()) {
-                System.err.println("Error writing to output path");
+        try {
+            format.write(index, outputPath);
+            if (manifest != null) {
+                manifest.write(JarManifest.sidecarPath(outputPath));
             }
         } catch (IOException e) {
             System.err.println("Error writing to output path: " + e);
         }
     }
 
-    private static void checkMods(List<Path> modPaths, List<Path> libraryPaths, Config config) {
-        Index index = new Index();
-
-        for (Path libraryPath : libraryPaths) {
-            if (libraryPath.toString().endsWith(".jar")) {
-                for (Plugin plugin : PluginLoader.plugins()) {
-                    try {
-                        plugin.preIndexLibrary(config, index, libraryPath);
-                    } catch (IOException e) {
-                        System.err.println("Failed to index library: " + e);
-                        return;
+    private static void bundle(List<Path> inputPaths, Path outputPath, IndexFormat format, Config config, Executor executor) {
+        IndexBuilder index = new IndexBuilder();
+        // each jar is opened once, for both the plugins and the indexer
+        Map<Path, List<JarSession>> jars = new LinkedHashMap<>();
+        try {
+            for (Path inputPath : inputPaths) {
+                if (inputPath.toString().endsWith(".jar") && !jars.containsKey(inputPath)) {
+                    jars.put(inputPath, openWithNestedJars(JarSession.open(inputPath)));
+                }
+            }
+            for (List<JarSession> inputJars : jars.values()) {
+                for (JarSession jar : inputJars) {
+                    for (Plugin plugin : PluginLoader.plugins()) {
+                        plugin.preIndexLibrary(config, index, jar);
                     }
                 }
             }
+            Indexer.bundle(inputPaths, jars, index, executor);
+        } catch (IOException e) {
+            System.err.println("Failed to bundle: " + e);
+            return;
+        } finally {
+            jars.values().forEach(Main::closeAll);
+        }
+        try {
+            format.write(index, outputPath);
+        } catch (IOException e) {
+            System.err.println("Error writing to output path: " + e);
         }
-        for (Path modPath : modPaths) {
-            for (Plugin plugin : PluginLoader.plugins()) {
+    }
+
+    private static void checkMods(List<Path> modPaths, List<Path> libraryPaths, @Nullable Path cacheDir, @Nullable Integer release, int jdkCacheSize, boolean printStats, boolean onDemand, boolean watch, Config config, Executor executor) {
+        // each jar is opened once for everything that reads it. Mods are read again when they're checked, so they keep the
+        // contents of their entries until then. Jars nested inside a library or mod are treated as another library or mod
+        Map<Path, List<JarSession>> libraryJars = new LinkedHashMap<>();
+        Map<Path, List<JarSession>> modJars = new LinkedHashMap<>();
+        try {
+            try {
+                for (Path libraryPath : libraryPaths) {
+                    if (libraryPath.toString().endsWith(".jar")) {
+                        libraryJars.put(libraryPath, openWithNestedJars(JarSession.open(libraryPath)));
+                    }
+                }
+                for (Path modPath : modPaths) {
+                    // directories and mods which are being watched are read into memory rather than mapped
+                    JarSession modJar = watch || Files.isDirectory(modPath) ? JarSession.read(modPath) : JarSession.openRetaining(modPath);
+                    modJars.put(modPath, openWithNestedJars(modJar));
+                }
+            } catch (IOException e) {
+                System.err.println("Failed to open jar: " + e);
+                return;
+            }
+
+            IndexBuilder builder = new IndexBuilder();
+
+            IndexCache cache = null;
+            if (cacheDir != null) {
                 try {
-                    plugin.preIndexMod(config, index, modPath);
+                    cache = new IndexCache(cacheDir);
                 } catch (IOException e) {
-                    System.err.println("Failed to index mod jar: " + e);
+                    System.err.println("Failed to open index cache: " + e);
                     return;
                 }
             }
-        }
 
-        for (Path libraryPath : libraryPaths) {
             try {
-                if (libraryPath.toString().endsWith(".jar")) {
-                    Indexer.indexJar(libraryPath, index);
-                } else {
-                    try (BufferedReader reader = Files.newBufferedReader(libraryPath)) {
-                        index.deserializeFrom(reader);
-                    }
+                JdkIndex jdk = release == null ? JdkIndex.runtime() : JdkIndex.forRelease(release);
+                if (jdkCacheSize != JdkIndex.DEFAULT_CACHE_CAPACITY) {
+                    jdk = jdk.withCacheCapacity(jdkCacheSize);
+                }
+                if (cache != null) {
+                    jdk = cache.indexJdk(jdk);
                 }
+                builder.setJdk(jdk);
             } catch (IOException e) {
-                System.err.println("Failed to index library: " + e);
+                System.err.println("Failed to index JDK: " + e);
                 return;
             }
-        }
 
-        for (Path modPath : modPaths) {
+            for (List<JarSession> jars : libraryJars.values()) {
+                for (JarSession libraryJar : jars) {
+                    for (Plugin plugin : PluginLoader.plugins()) {
+                        try {
+                            plugin.preIndexLibrary(config, builder, libraryJar);
+                        } catch (IOException e) {
+                            System.err.println("Failed to index library: " + e);
+                            return;
+                        }
+                    }
+                }
+            }
+            for (List<JarSession> jars : modJars.values()) {
+                for (JarSession modJar : jars) {
+                    for (Plugin plugin : PluginLoader.plugins()) {
+                        try {
+                            plugin.preIndexMod(config, builder, modJar);
+                        } catch (IOException e) {
+                            System.err.println("Failed to index mod jar: " + e);
+                            return;
+                        }
+                    }
+                }
+            }
+
+            // mods come after libraries, so that their classes take precedence
+            List<Indexer.Source> sources = new ArrayList<>(libraryPaths.size() + modJars.size());
+            for (Path libraryPath : libraryPaths) {
+                List<JarSession> jars = libraryJars.get(libraryPath);
+                if (jars != null) {
+                    for (JarSession libraryJar : jars) {
+                        IndexCache jarCache = cache;
+                        if (onDemand) {
+                            sources.add(out -> Indexer.indexJarOnDemand(libraryJar, out));
+                        } else if (jarCache != null) {
+                            sources.add(out -> jarCache.indexJar(libraryJar, config, out, executor));
+                        } else {
+                            sources.add(out -> Indexer.indexJar(libraryJar, out, executor));
+                        }
+                    }
+                } else {
+                    sources.add(out -> IndexFormat.detect(libraryPath).load(out, libraryPath));
+                }
+            }
+            List<JarSession> allModJars = new ArrayList<>();
+            modJars.values().forEach(allModJars::addAll);
+            if (!watch) {
+                for (JarSession modJar : allModJars) {
+                    sources.add(out -> Indexer.indexJar(modJar, out, executor));
+                }
+            }
             try {
-                Indexer.indexJar(modPath, index);
+                Indexer.indexAll(sources, builder, executor);
+                if (onDemand) {
+                    Indexer.indexReferencedClasses(allModJars, builder, executor);
+                }
             } catch (IOException e) {
-                System.err.println("Failed to index mod jar: " + e);
+                System.err.println("Failed to index jars: " + e);
+                return;
+            }
+
+            if (watch) {
+                // the watcher indexes the mods itself, so that it can index them again incrementally
+                Watcher watcher = new Watcher(builder, config, executor);
+                watcher.markPreIndexed(allModJars);
+                try {
+                    watcher.run(modJars);
+                } catch (IOException e) {
+                    System.err.println("Error watching mods: " + e);
+                }
                 return;
             }
+
+            Index index = builder.build();
+
+            try {
+                Checker.check(index, config, allModJars, new PrintingProblemCollector());
+            } catch (IOException e) {
+                System.err.println("Error checking mod jars: " + e);
+            }
+
+            if (printStats) {
+                System.err.println("Resolution cache: " + index.getResolutionCache());
+                System.err.println("Verdict cache: " + index.getVerdictCache());
+                System.err.println("JDK class cache: " + index.getJdk().getClassCache());
+            }
+        } finally {
+            libraryJars.values().forEach(Main::closeAll);
+            modJars.values().forEach(Main::closeAll);
         }
+    }
 
+    static List<JarSession> openWithNestedJars(JarSession jar) throws IOException {
         try {
-            Checker.check(index, config, modPaths, new PrintingProblemCollector());
+            return Indexer.withNestedJars(jar);
         } catch (IOException e) {
-            System.err.println("Error checking mod jars: " + e);
+            jar.close();
+            throw e;
+        }
+    }
+
+    private static void closeAll(Collection<JarSession> jars) {
+        for (JarSession jar : jars) {
+            jar.close();
         }
     }
 }
\ No newline at end of file
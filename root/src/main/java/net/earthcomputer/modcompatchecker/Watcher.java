@@ -0,0 +1,368 @@
+package net.earthcomputer.modcompatchecker;
+
+import net.earthcomputer.modcompatchecker.checker.Checker;
+import net.earthcomputer.modcompatchecker.checker.RecordingProblemCollector;
+import net.earthcomputer.modcompatchecker.config.Config;
+import net.earthcomputer.modcompatchecker.config.Plugin;
+import net.earthcomputer.modcompatchecker.config.PluginLoader;
+import net.earthcomputer.modcompatchecker.indexer.ClassHierarchy;
+import net.earthcomputer.modcompatchecker.indexer.Index;
+import net.earthcomputer.modcompatchecker.indexer.IndexBuilder;
+import net.earthcomputer.modcompatchecker.indexer.Indexer;
+import net.earthcomputer.modcompatchecker.indexer.JarManifest;
+import net.earthcomputer.modcompatchecker.util.JarSession;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+// Keeps the libraries indexed while the mods are checked again each time they're rebuilt. Only the classes which changed
+// are indexed again, by comparing the CRC of each class file with the previous build, and only those classes and the
+// classes which extend or implement them are checked again. After the first check, which prints every problem, each
+// check prints the problems which were added and removed, prefixed with "+" and "-".
+//
+// Plugins only see the first build of each mod before indexing, so changes to things like the mod metadata need a
+// restart.
+final class Watcher {
+    // how long to wait for a build to stop writing files before checking
+    private static final long QUIET_PERIOD_MILLIS = 300;
+
+    private final IndexBuilder libraries;
+    private final Config config;
+    private final Executor executor;
+    private final Map<Path, List<ModJar>> mods = new LinkedHashMap<>();
+    private final Set<String> preIndexedJars = new HashSet<>();
+    // the jar entry each mod class was indexed from, where several mods have the same class the last one wins
+    private Map<String, ClassLocation> modClasses = Map.of();
+    private Map<String, List<String>> problems = new TreeMap<>();
+    @Nullable
+    private Index index;
+
+    Watcher(IndexBuilder libraries, Config config, Executor executor) {
+        this.libraries = libraries;
+        this.config = config;
+        this.executor = executor;
+    }
+
+    /**
+     * Marks the given jars as already seen by the plugins' pre-indexing hooks.
+     */
+    void markPreIndexed(List<JarSession> jars) {
+        for (JarSession jar : jars) {
+            preIndexedJars.add(jar.getName());
+        }
+    }
+
+    void run(Map<Path, List<JarSession>> initialMods) throws IOException {
+        try {
+            start(initialMods).forEach(System.out::println);
+            System.out.flush();
+
+            try (WatchService watchService = FileSystems.getDefault().newWatchService()) {
+                Map<WatchKey, Path> watchedDirs = new HashMap<>();
+                for (Path modPath : mods.keySet()) {
+                    if (Files.isDirectory(modPath)) {
+                        registerAll(watchService, modPath, watchedDirs);
+                    } else {
+                        register(watchService, modPath.toAbsolutePath().getParent(), watchedDirs);
+                    }
+                }
+                System.err.println("Watching for changes to " + mods.size() + " mod(s)");
+
+                while (true) {
+                    Set<Path> changedMods = new LinkedHashSet<>();
+                    WatchKey key;
+                    try {
+                        key = watchService.take();
+                        while (key != null) {
+                            handleEvents(key, watchService, watchedDirs, changedMods);
+                            key = watchService.poll(QUIET_PERIOD_MILLIS, TimeUnit.MILLISECONDS);
+                        }
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+                    if (!changedMods.isEmpty()) {
+                        recheck(changedMods).forEach(System.out::println);
+                        System.out.flush();
+                    }
+                }
+            }
+        } finally {
+            close();
+        }
+    }
+
+    /**
+     * Indexes and checks the given mods for the first time, and returns every problem found.
+     */
+    List<String> start(Map<Path, List<JarSession>> initialMods) throws IOException {
+        for (var entry : initialMods.entrySet()) {
+            mods.put(entry.getKey(), reindex(entry.getKey(), entry.getValue()).jars);
+        }
+        index = buildIndex(mods);
+        modClasses = locateModClasses(mods);
+        RecordingProblemCollector collector = new RecordingProblemCollector();
+        for (List<ModJar> jars : mods.values()) {
+            for (ModJar jar : jars) {
+                Checker.check(index, config, List.of(jar.session), collector);
+            }
+        }
+        problems = collector.getProblems();
+        List<String> result = new ArrayList<>();
+        problems.values().forEach(result::addAll);
+        return result;
+    }
+
+    void close() {
+        for (List<ModJar> jars : mods.values()) {
+            for (ModJar jar : jars) {
+                jar.session.close();
+            }
+        }
+        mods.clear();
+    }
+
+    private void handleEvents(WatchKey key, WatchService watchService, Map<WatchKey, Path> watchedDirs, Set<Path> changedMods) {
+        Path dir = watchedDirs.get(key);
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW || dir == null) {
+                changedMods.addAll(mods.keySet());
+                continue;
+            }
+            Path changed = dir.resolve((Path) event.context());
+            for (Path modPath : mods.keySet()) {
+                Path absoluteModPath = modPath.toAbsolutePath();
+                if (changed.equals(absoluteModPath) || (changed.startsWith(absoluteModPath) && Files.isDirectory(absoluteModPath))) {
+                    changedMods.add(modPath);
+                }
+            }
+            if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE && Files.isDirectory(changed)) {
+                try {
+                    registerAll(watchService, changed, watchedDirs);
+                } catch (IOException e) {
+                    System.err.println("Failed to watch directory " + changed + ": " + e);
+                }
+            }
+        }
+        if (!key.reset()) {
+            watchedDirs.remove(key);
+        }
+    }
+
+    private static void registerAll(WatchService watchService, Path dir, Map<WatchKey, Path> watchedDirs) throws IOException {
+        // a watch service only watches the direct children of each directory
+        try (Stream<Path> dirs = Files.walk(dir)) {
+            for (Path subdir : (Iterable<Path>) dirs.filter(Files::isDirectory)::iterator) {
+                register(watchService, subdir, watchedDirs);
+            }
+        }
+    }
+
+    private static void register(WatchService watchService, Path dir, Map<WatchKey, Path> watchedDirs) throws IOException {
+        Path absoluteDir = dir.toAbsolutePath();
+        WatchKey key = absoluteDir.register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_DELETE, StandardWatchEventKinds.ENTRY_MODIFY);
+        watchedDirs.put(key, absoluteDir);
+    }
+
+    /**
+     * Indexes and checks the given mods again after they changed, and returns the problems which were added and removed,
+     * prefixed with "+" and "-". If a mod can't be indexed or checked, such as when it's still being written, the
+     * previous build of it is kept and it's checked again when it next changes.
+     */
+    List<String> recheck(Set<Path> changedMods) {
+        Map<Path, List<ModJar>> newMods = new LinkedHashMap<>(mods);
+        List<ModJar> newJars = new ArrayList<>();
+        Set<String> changedClasses = new HashSet<>();
+        for (Path modPath : changedMods) {
+            List<JarSession> jars = List.of();
+            try {
+                jars = Main.openWithNestedJars(JarSession.read(modPath));
+                for (JarSession jar : jars) {
+                    if (preIndexedJars.add(jar.getName())) {
+                        for (Plugin plugin : PluginLoader.plugins()) {
+                            plugin.preIndexMod(config, libraries, jar);
+                        }
+                    }
+                }
+                ReindexedMod reindexed = reindex(modPath, jars);
+                newMods.put(modPath, reindexed.jars);
+                newJars.addAll(reindexed.jars);
+                changedClasses.addAll(reindexed.changedClasses);
+            } catch (IOException | RuntimeException e) {
+                // most likely the mod is still being written, it will be checked again once it's finished
+                System.err.println("Failed to index mod " + modPath + ": " + e);
+                jars.forEach(JarSession::close);
+            }
+        }
+
+        Index newIndex;
+        Map<String, ClassLocation> newModClasses;
+        Set<String> affectedClasses = new TreeSet<>(changedClasses);
+        Map<JarSession, List<JarSession.Entry>> entriesToCheck = new LinkedHashMap<>();
+        Map<String, List<String>> newProblems;
+        try {
+            newIndex = changedClasses.isEmpty() ? index : buildIndex(newMods);
+            newModClasses = locateModClasses(newMods);
+
+            for (String className : newModClasses.keySet()) {
+                if (extendsAny(newIndex, className, changedClasses) || (index != null && extendsAny(index, className, changedClasses))) {
+                    affectedClasses.add(className);
+                }
+            }
+
+            for (String className : affectedClasses) {
+                ClassLocation location = newModClasses.get(className);
+                if (location != null) {
+                    entriesToCheck.computeIfAbsent(location.jar, k -> new ArrayList<>()).add(location.entry);
+                }
+            }
+            RecordingProblemCollector collector = new RecordingProblemCollector();
+            for (var entry : entriesToCheck.entrySet()) {
+                Checker.checkClasses(newIndex, config, entry.getKey(), entry.getValue(), collector);
+            }
+            newProblems = collector.getProblems();
+        } catch (IOException | RuntimeException e) {
+            // keep checking against the previous builds, so that the next change is compared against them
+            System.err.println("Failed to check mods: " + e);
+            newJars.forEach(jar -> jar.session.close());
+            return List.of();
+        }
+
+        for (Path modPath : changedMods) {
+            List<ModJar> newModJars = newMods.get(modPath);
+            List<ModJar> replaced = mods.put(modPath, newModJars);
+            if (replaced != null && replaced != newModJars) {
+                for (ModJar previousJar : replaced) {
+                    previousJar.session.close();
+                }
+            }
+        }
+        index = newIndex;
+        modClasses = newModClasses;
+        if (changedClasses.isEmpty()) {
+            return List.of();
+        }
+        affectedClasses.addAll(newProblems.keySet());
+
+        List<String> result = new ArrayList<>();
+        int added = 0;
+        int removed = 0;
+        for (String className : affectedClasses) {
+            List<String> oldClassProblems = problems.getOrDefault(className, List.of());
+            List<String> newClassProblems = newProblems.getOrDefault(className, List.of());
+            List<String> removedProblems = new ArrayList<>(oldClassProblems);
+            newClassProblems.forEach(removedProblems::remove);
+            List<String> addedProblems = new ArrayList<>(newClassProblems);
+            oldClassProblems.forEach(addedProblems::remove);
+            for (String problem : removedProblems) {
+                result.add("- " + problem);
+            }
+            for (String problem : addedProblems) {
+                result.add("+ " + problem);
+            }
+            removed += removedProblems.size();
+            added += addedProblems.size();
+            if (newClassProblems.isEmpty()) {
+                problems.remove(className);
+            } else {
+                problems.put(className, newClassProblems);
+            }
+        }
+        System.err.printf("Re-checked %d class(es): %d problem(s) added, %d removed, %d in total%n", entriesToCheck.values().stream().mapToInt(List::size).sum(), added, removed, problems.values().stream().mapToInt(List::size).sum());
+        return result;
+    }
+
+    private static boolean extendsAny(Index index, String className, Set<String> classNames) {
+        ClassHierarchy hierarchy = index.getHierarchy(className);
+        if (hierarchy == null) {
+            return false;
+        }
+        for (ClassHierarchy ancestor : hierarchy.getAncestors()) {
+            if (classNames.contains(ancestor.getName())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Indexes the given jars of a mod, reusing the classes of the previous build of the mod where their class files are
+    // unchanged, and returns them along with the names of the classes which changed. The previous build is left as it is,
+    // so that it can still be used if the new build can't be checked.
+    private ReindexedMod reindex(Path modPath, List<JarSession> jars) throws IOException {
+        Map<String, ModJar> previousJars = new HashMap<>();
+        for (ModJar previousJar : mods.getOrDefault(modPath, List.of())) {
+            previousJars.put(previousJar.session.getName(), previousJar);
+        }
+
+        Set<String> changedClasses = new HashSet<>();
+        List<ModJar> modJars = new ArrayList<>(jars.size());
+        for (JarSession jar : jars) {
+            ModJar previousJar = previousJars.remove(jar.getName());
+            IndexBuilder jarIndex = new IndexBuilder();
+            JarManifest manifest = previousJar == null
+                ? Indexer.indexJarIncrementally(jar, config, jarIndex, null, new IndexBuilder(), executor)
+                : Indexer.indexJarIncrementally(jar, config, jarIndex, previousJar.manifest, previousJar.index, executor);
+            changedClasses.addAll(manifest.getChangedClasses(previousJar == null ? null : previousJar.manifest));
+            modJars.add(new ModJar(jar, jarIndex, manifest));
+        }
+        // nested jars which are no longer there
+        for (ModJar previousJar : previousJars.values()) {
+            changedClasses.addAll(previousJar.manifest.getClassEntries().keySet());
+        }
+        return new ReindexedMod(modJars, changedClasses);
+    }
+
+    private Index buildIndex(Map<Path, List<ModJar>> mods) throws IOException {
+        IndexBuilder builder = libraries.copy();
+        for (List<ModJar> jars : mods.values()) {
+            for (ModJar jar : jars) {
+                builder.putAll(jar.index);
+            }
+        }
+        return builder.build();
+    }
+
+    private static Map<String, ClassLocation> locateModClasses(Map<Path, List<ModJar>> mods) {
+        Map<String, ClassLocation> modClasses = new HashMap<>();
+        for (List<ModJar> jars : mods.values()) {
+            for (ModJar jar : jars) {
+                jar.manifest.getClassEntries().forEach((className, entryName) -> {
+                    JarSession.Entry entry = jar.session.getEntry(entryName);
+                    if (entry != null) {
+                        modClasses.put(className, new ClassLocation(jar.session, entry));
+                    }
+                });
+            }
+        }
+        return modClasses;
+    }
+
+    private record ModJar(JarSession session, IndexBuilder index, JarManifest manifest) {
+    }
+
+    private record ClassLocation(JarSession jar, JarSession.Entry entry) {
+    }
+
+    private record ReindexedMod(List<ModJar> jars, Set<String> changedClasses) {
+    }
+}
@@ -4,18 +4,15 @@ import net.earthcomputer.modcompatchecker.config.BuiltinPlugin;
 import net.earthcomputer.modcompatchecker.config.Config;
 import net.earthcomputer.modcompatchecker.config.Plugin;
 import net.earthcomputer.modcompatchecker.indexer.Index;
+import net.earthcomputer.modcompatchecker.util.JarSession;
 import org.jetbrains.annotations.VisibleForTesting;
 import org.objectweb.asm.ClassReader;
 
 import java.io.IOException;
 import java.io.UncheckedIOException;
-import java.nio.file.Path;
-import java.util.Enumeration;
 import java.util.List;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.Executor;
-import java.util.jar.JarEntry;
-import java.util.jar.JarFile;
 
 @BuiltinPlugin
 public class BinaryCompatChecker implements Plugin {
@@ -25,28 +22,45 @@ public class BinaryCompatChecker implements Plugin {
     }
 
     @Override
-    public void check(Index index, Config config, Path modPath, JarFile modJar, ProblemCollector problems, List<CompletableFuture<Void>> futures, Executor executor) throws IOException {
+    public void check(Index index, Config config, JarSession modJar, ProblemCollector problems, List<CompletableFuture<Void>> futures, Executor executor) throws IOException {
         CheckerConfig checkerConfig = new CheckerConfig(config);
-        Enumeration<JarEntry> entries = modJar.entries();
-        while (entries.hasMoreElements()) {
-            JarEntry entry = entries.nextElement();
+        for (JarSession.Entry entry : modJar.getEntries()) {
             if (entry.getName().endsWith(".class")) {
                 futures.add(CompletableFuture.runAsync(() -> checkClass(index, checkerConfig, modJar, entry, problems), executor));
             }
         }
     }
 
+    @Override
+    public void checkClasses(Index index, Config config, JarSession modJar, List<JarSession.Entry> classEntries, ProblemCollector problems, List<CompletableFuture<Void>> futures, Executor executor) throws IOException {
+        CheckerConfig checkerConfig = new CheckerConfig(config);
+        for (JarSession.Entry entry : classEntries) {
+            futures.add(CompletableFuture.runAsync(() -> checkClass(index, checkerConfig, modJar, entry, problems), executor));
+        }
+    }
+
+    @VisibleForTesting
+    public static void checkClass(Index index, CheckerConfig config, JarSession jar, JarSession.Entry entry, ProblemCollector problems) {
+        checkClass(index, config, jar, entry, problems, true);
+    }
+
+    /**
+     * Checks the given class. If {@code prescan} is false, its code is always visited in full, which finds the same
+     * problems as when it's only visited in full if a prescan of its code finds any.
+     */
     @VisibleForTesting
-    public static void checkClass(Index index, CheckerConfig config, JarFile jarFile, JarEntry entry, ProblemCollector problems) {
+    public static void checkClass(Index index, CheckerConfig config, JarSession jar, JarSession.Entry entry, ProblemCollector problems, boolean prescan) {
         ClassReader classReader;
         try {
-            classReader = new ClassReader(jarFile.getInputStream(entry));
+            classReader = new ClassReader(jar.getBytes(entry));
         } catch (IOException e) {
             throw new UncheckedIOException(e);
         }
         if (!config.shouldCheckClass(classReader.getClassName())) {
             return;
         }
-        classReader.accept(new ClassCheckVisitor(index, config, problems), 0);
+        // most classes have no problems in their code, so only visit it when it's needed to find where they are
+        int flags = prescan && !CodePrescanner.mayHaveProblems(index, classReader) ? ClassReader.SKIP_CODE : 0;
+        classReader.accept(new ClassCheckVisitor(index, config, problems), flags);
     }
 }
@@ -4,35 +4,52 @@ import net.earthcomputer.modcompatchecker.config.Config;
 import net.earthcomputer.modcompatchecker.config.Plugin;
 import net.earthcomputer.modcompatchecker.config.PluginLoader;
 import net.earthcomputer.modcompatchecker.indexer.Index;
+import net.earthcomputer.modcompatchecker.util.JarSession;
 
 import java.io.IOException;
 import java.io.UncheckedIOException;
-import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CompletionException;
 import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
-import java.util.jar.JarFile;
 
 public final class Checker {
     private Checker() {
     }
 
-    public static void check(Index index, Config config, List<Path> modJars, ProblemCollector problems) throws IOException {
-        for (Path modJar : modJars) {
+    public static void check(Index index, Config config, List<JarSession> modJars, ProblemCollector problems) throws IOException {
+        for (JarSession modJar : modJars) {
             check(index, config, modJar, problems);
         }
     }
 
-    private static void check(Index index, Config config, Path modJar, ProblemCollector problems) throws IOException {
-        Executor executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
-        try (JarFile jarFile = new JarFile(modJar.toFile())) {
-            List<CompletableFuture<Void>> futures = new ArrayList<>();
+    private static void check(Index index, Config config, JarSession modJar, ProblemCollector problems) throws IOException {
+        runChecks((futures, executor) -> {
+            for (Plugin plugin : PluginLoader.plugins()) {
+                plugin.check(index, config, modJar, problems, futures, executor);
+            }
+        });
+    }
+
+    /**
+     * Re-checks the given class entries of a mod jar which has already been checked.
+     */
+    public static void checkClasses(Index index, Config config, JarSession modJar, List<JarSession.Entry> classEntries, ProblemCollector problems) throws IOException {
+        runChecks((futures, executor) -> {
             for (Plugin plugin : PluginLoader.plugins()) {
-                plugin.check(index, config, modJar, jarFile, problems, futures, executor);
+                plugin.checkClasses(index, config, modJar, classEntries, problems, futures, executor);
             }
+        });
+    }
+
+    private static void runChecks(CheckStarter starter) throws IOException {
+        ExecutorService executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+        try {
+            List<CompletableFuture<Void>> futures = new ArrayList<>();
+            starter.start(futures, executor);
             try {
                 CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new)).join();
             } catch (CompletionException e) {
@@ -42,6 +59,14 @@ public final class Checker {
             }
         } catch (IOException e) {
             throw new IOException("Error reading jar file: ", e);
+        } finally {
+            // watch mode checks many times in the same process
+            executor.shutdown();
         }
     }
+
+    @FunctionalInterface
+    private interface CheckStarter {
+        void start(List<CompletableFuture<Void>> futures, Executor executor) throws IOException;
+    }
 }
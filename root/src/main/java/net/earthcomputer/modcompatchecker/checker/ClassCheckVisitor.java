@@ -1,5 +1,6 @@
 package net.earthcomputer.modcompatchecker.checker;
 
+import net.earthcomputer.modcompatchecker.indexer.ClassHierarchy;
 import net.earthcomputer.modcompatchecker.indexer.IResolvedClass;
 import net.earthcomputer.modcompatchecker.indexer.Index;
 import net.earthcomputer.modcompatchecker.util.AsmUtil;
@@ -189,20 +190,19 @@ public final class ClassCheckVisitor extends ClassVisitor {
             return;
         }
 
-        String superName = this.superName;
-        for (IResolvedClass superClass = this.superClass; superClass != null; superClass = index.findClass(superName = superClass.getSuperclass())) {
-            for (ClassMember method : superClass.getMethods()) {
-                if (!method.name().equals(name) || !method.descriptor().equals(descriptor)) {
-                    continue;
-                }
-                if (InheritanceUtil.canOverride(className, superName, method.access())) {
-                    if (method.access().isFinal()) {
-                        problems.addProblem(className, name, descriptor, Errors.METHOD_OVERRIDES_FINAL);
-                    } else {
-                        // we've found the method we are overriding
-                    }
-                    return;
+        ClassHierarchy superHierarchy = index.getHierarchy(superName);
+        if (superHierarchy == null) {
+            return;
+        }
+        for (ClassHierarchy superClass : superHierarchy.getSuperclassChain()) {
+            ClassMember method = superClass.getResolvedClass().findMethod(name, descriptor);
+            if (method != null && InheritanceUtil.canOverride(className, superClass.getName(), method.access())) {
+                if (method.access().isFinal()) {
+                    problems.addProblem(className, name, descriptor, Errors.METHOD_OVERRIDES_FINAL);
+                } else {
+                    // we've found the method we are overriding
                 }
+                return;
             }
         }
     }
@@ -0,0 +1,239 @@
+package net.earthcomputer.modcompatchecker.checker;
+
+import net.earthcomputer.modcompatchecker.indexer.Index;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.Handle;
+import org.objectweb.asm.Opcodes;
+
+import java.util.HashSet;
+import java.util.Set;
+
+// Finds out whether the code of a class has any problems without visiting it through ASM. The bytecode of each method
+// is scanned for the instructions which MethodCheckVisitor checks, and each distinct combination of opcode and constant
+// pool entry is checked once, by passing it to a MethodCheckVisitor which only notes whether a problem was found. Most
+// classes have none, and then only need to be visited without their code.
+//
+// The outcome of checking an instruction doesn't depend on where it is, except for writes to final fields, which depend
+// on the method they're in, so those are checked for each method.
+final class CodePrescanner {
+    private static final int CONSTANT_INTERFACE_METHODREF = 11;
+    private static final int CONSTANT_CLASS = 7;
+    private static final int CONSTANT_METHOD_HANDLE = 15;
+    private static final int CONSTANT_METHOD_TYPE = 16;
+    private static final int CONSTANT_DYNAMIC = 17;
+
+    private final Index index;
+    private final ClassReader reader;
+    private final String className;
+    private final char[] charBuffer;
+    private final ProblemCollector problems = (className, problem, args) -> this.foundProblem = true;
+    private final Set<Integer> checkedInstructions = new HashSet<>();
+    private int bootstrapMethodsOffset = -1;
+    private boolean foundProblem;
+
+    private CodePrescanner(Index index, ClassReader reader) {
+        this.index = index;
+        this.reader = reader;
+        this.className = reader.getClassName();
+        this.charBuffer = new char[reader.getMaxStringLength()];
+    }
+
+    /**
+     * Returns whether checking the code of the given class may find problems, in which case it must be visited in full.
+     * Otherwise, it may be visited with {@link ClassReader#SKIP_CODE}.
+     */
+    static boolean mayHaveProblems(Index index, ClassReader reader) {
+        try {
+            return new CodePrescanner(index, reader).scan();
+        } catch (IndexOutOfBoundsException e) {
+            // leave malformed class files to ASM
+            return true;
+        }
+    }
+
+    private boolean scan() {
+        int pos = reader.header + 6;
+        pos += 2 + reader.readUnsignedShort(pos) * 2;
+
+        int fieldCount = reader.readUnsignedShort(pos);
+        pos += 2;
+        for (int i = 0; i < fieldCount; i++) {
+            pos = skipAttributes(pos + 6);
+        }
+
+        int methodCount = reader.readUnsignedShort(pos);
+        pos += 2;
+        int[] methodOffsets = new int[methodCount];
+        int[] codeOffsets = new int[methodCount];
+        for (int i = 0; i < methodCount; i++) {
+            methodOffsets[i] = pos;
+            codeOffsets[i] = -1;
+            int attributeCount = reader.readUnsignedShort(pos + 6);
+            pos += 8;
+            for (int j = 0; j < attributeCount; j++) {
+                if ("Code".equals(reader.readUTF8(pos, charBuffer))) {
+                    codeOffsets[i] = pos + 6;
+                }
+                pos += 6 + reader.readInt(pos + 2);
+            }
+        }
+
+        int attributeCount = reader.readUnsignedShort(pos);
+        pos += 2;
+        for (int i = 0; i < attributeCount; i++) {
+            if ("BootstrapMethods".equals(reader.readUTF8(pos, charBuffer))) {
+                bootstrapMethodsOffset = pos + 6;
+            }
+            pos += 6 + reader.readInt(pos + 2);
+        }
+
+        for (int i = 0; i < methodCount; i++) {
+            if (codeOffsets[i] != -1) {
+                String methodName = reader.readUTF8(methodOffsets[i] + 2, charBuffer);
+                String methodDesc = reader.readUTF8(methodOffsets[i] + 4, charBuffer);
+                if (scanCode(codeOffsets[i], new MethodCheckVisitor(index, problems, className, methodName, methodDesc))) {
+                    return true;
+                }
+            }
+        }
+
+        return false;
+    }
+
+    private int skipAttributes(int pos) {
+        int attributeCount = reader.readUnsignedShort(pos);
+        pos += 2;
+        for (int i = 0; i < attributeCount; i++) {
+            pos += 6 + reader.readInt(pos + 2);
+        }
+        return pos;
+    }
+
+    private boolean scanCode(int codeOffset, MethodCheckVisitor visitor) {
+        int codeStart = codeOffset + 8;
+        int codeEnd = codeStart + reader.readInt(codeOffset + 4);
+        int pos = codeStart;
+        while (pos < codeEnd) {
+            int opcode = reader.readByte(pos);
+            switch (opcode) {
+                case Opcodes.NEW, Opcodes.ANEWARRAY, Opcodes.CHECKCAST, Opcodes.INSTANCEOF -> {
+                    int cpIndex = reader.readUnsignedShort(pos + 1);
+                    if (shouldCheck(opcode, cpIndex)) {
+                        visitor.visitTypeInsn(opcode, reader.readClass(pos + 1, charBuffer));
+                    }
+                    pos += 3;
+                }
+                case Opcodes.MULTIANEWARRAY -> {
+                    int cpIndex = reader.readUnsignedShort(pos + 1);
+                    if (shouldCheck(opcode, cpIndex)) {
+                        visitor.visitMultiANewArrayInsn(reader.readClass(pos + 1, charBuffer), reader.readByte(pos + 3));
+                    }
+                    pos += 4;
+                }
+                case Opcodes.GETSTATIC, Opcodes.GETFIELD, Opcodes.PUTSTATIC, Opcodes.PUTFIELD -> {
+                    int cpIndex = reader.readUnsignedShort(pos + 1);
+                    // writes to final fields depend on the method, and this is a new visitor for each method
+                    if (opcode == Opcodes.PUTSTATIC || opcode == Opcodes.PUTFIELD || shouldCheck(opcode, cpIndex)) {
+                        int refOffset = reader.getItem(cpIndex);
+                        int nameAndTypeOffset = reader.getItem(reader.readUnsignedShort(refOffset + 2));
+                        visitor.visitFieldInsn(opcode, reader.readClass(refOffset, charBuffer), reader.readUTF8(nameAndTypeOffset, charBuffer), reader.readUTF8(nameAndTypeOffset + 2, charBuffer));
+                    }
+                    pos += 3;
+                }
+                case Opcodes.INVOKEVIRTUAL, Opcodes.INVOKESPECIAL, Opcodes.INVOKESTATIC, Opcodes.INVOKEINTERFACE -> {
+                    int cpIndex = reader.readUnsignedShort(pos + 1);
+                    if (shouldCheck(opcode, cpIndex)) {
+                        int refOffset = reader.getItem(cpIndex);
+                        int nameAndTypeOffset = reader.getItem(reader.readUnsignedShort(refOffset + 2));
+                        boolean isInterface = reader.readByte(refOffset - 1) == CONSTANT_INTERFACE_METHODREF;
+                        visitor.visitMethodInsn(opcode, reader.readClass(refOffset, charBuffer), reader.readUTF8(nameAndTypeOffset, charBuffer), reader.readUTF8(nameAndTypeOffset + 2, charBuffer), isInterface);
+                    }
+                    pos += opcode == Opcodes.INVOKEINTERFACE ? 5 : 3;
+                }
+                case Opcodes.INVOKEDYNAMIC -> {
+                    int cpIndex = reader.readUnsignedShort(pos + 1);
+                    if (shouldCheck(opcode, cpIndex)) {
+                        checkInvokeDynamic(visitor, cpIndex);
+                    }
+                    pos += 5;
+                }
+                case Opcodes.LDC -> {
+                    checkLdc(visitor, reader.readByte(pos + 1));
+                    pos += 2;
+                }
+                case 19, 20 -> { // LDC_W, LDC2_W
+                    checkLdc(visitor, reader.readUnsignedShort(pos + 1));
+                    pos += 3;
+                }
+                case Opcodes.BIPUSH, Opcodes.NEWARRAY, Opcodes.RET,
+                    Opcodes.ILOAD, Opcodes.LLOAD, Opcodes.FLOAD, Opcodes.DLOAD, Opcodes.ALOAD,
+                    Opcodes.ISTORE, Opcodes.LSTORE, Opcodes.FSTORE, Opcodes.DSTORE, Opcodes.ASTORE -> pos += 2;
+                case Opcodes.SIPUSH, Opcodes.IINC, Opcodes.GOTO, Opcodes.JSR, Opcodes.IFNULL, Opcodes.IFNONNULL -> pos += 3;
+                case 200, 201 -> pos += 5; // GOTO_W, JSR_W
+                case 196 -> pos += reader.readByte(pos + 1) == Opcodes.IINC ? 6 : 4; // WIDE
+                case Opcodes.TABLESWITCH -> {
+                    pos += 4 - ((pos - codeStart) & 3);
+                    int low = reader.readInt(pos + 4);
+                    int high = reader.readInt(pos + 8);
+                    pos += 12 + 4 * (high - low + 1);
+                }
+                case Opcodes.LOOKUPSWITCH -> {
+                    pos += 4 - ((pos - codeStart) & 3);
+                    pos += 8 + 8 * reader.readInt(pos + 4);
+                }
+                default -> {
+                    if (opcode >= Opcodes.IFEQ && opcode <= Opcodes.IF_ACMPNE) {
+                        pos += 3;
+                    } else if (opcode <= 201) {
+                        pos += 1;
+                    } else {
+                        // not a valid opcode, leave it to ASM
+                        return true;
+                    }
+                }
+            }
+
+            if (foundProblem) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    private boolean shouldCheck(int opcode, int cpIndex) {
+        return checkedInstructions.add(opcode << 16 | cpIndex);
+    }
+
+    private void checkLdc(MethodCheckVisitor visitor, int cpIndex) {
+        int tag = reader.readByte(reader.getItem(cpIndex) - 1);
+        if (tag == CONSTANT_CLASS || tag == CONSTANT_METHOD_TYPE || tag == CONSTANT_METHOD_HANDLE || tag == CONSTANT_DYNAMIC) {
+            if (shouldCheck(Opcodes.LDC, cpIndex)) {
+                visitor.visitLdcInsn(reader.readConst(cpIndex, charBuffer));
+            }
+        }
+    }
+
+    private void checkInvokeDynamic(MethodCheckVisitor visitor, int cpIndex) {
+        if (bootstrapMethodsOffset == -1) {
+            // not a valid class file, leave it to ASM
+            foundProblem = true;
+            return;
+        }
+
+        int indyOffset = reader.getItem(cpIndex);
+        int nameAndTypeOffset = reader.getItem(reader.readUnsignedShort(indyOffset + 2));
+
+        int bootstrapMethodOffset = bootstrapMethodsOffset + 2;
+        for (int i = reader.readUnsignedShort(indyOffset); i > 0; i--) {
+            bootstrapMethodOffset += 4 + 2 * reader.readUnsignedShort(bootstrapMethodOffset + 2);
+        }
+        Handle bsm = (Handle) reader.readConst(reader.readUnsignedShort(bootstrapMethodOffset), charBuffer);
+        Object[] args = new Object[reader.readUnsignedShort(bootstrapMethodOffset + 2)];
+        for (int i = 0; i < args.length; i++) {
+            args[i] = reader.readConst(reader.readUnsignedShort(bootstrapMethodOffset + 4 + 2 * i), charBuffer);
+        }
+
+        visitor.visitInvokeDynamicInsn(reader.readUTF8(nameAndTypeOffset, charBuffer), reader.readUTF8(nameAndTypeOffset + 2, charBuffer), bsm, args);
+    }
+}
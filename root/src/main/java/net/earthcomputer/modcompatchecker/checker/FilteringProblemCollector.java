@@ -0,0 +1,35 @@
+package net.earthcomputer.modcompatchecker.checker;
+
+import java.util.Set;
+
+// Passes on only the problems found in the given classes.
+public final class FilteringProblemCollector implements ProblemCollector {
+    private final Set<String> classNames;
+    private final ProblemCollector delegate;
+
+    public FilteringProblemCollector(Set<String> classNames, ProblemCollector delegate) {
+        this.classNames = classNames;
+        this.delegate = delegate;
+    }
+
+    @Override
+    public void addProblem(String className, Errors problem, String... args) {
+        if (classNames.contains(className)) {
+            delegate.addProblem(className, problem, args);
+        }
+    }
+
+    @Override
+    public void addProblem(String className, String memberName, String memberDesc, Errors problem, String... args) {
+        if (classNames.contains(className)) {
+            delegate.addProblem(className, memberName, memberDesc, problem, args);
+        }
+    }
+
+    @Override
+    public void addProblem(String className, String memberName, String memberDesc, int lineNumber, Errors problem, String... args) {
+        if (classNames.contains(className)) {
+            delegate.addProblem(className, memberName, memberDesc, lineNumber, problem, args);
+        }
+    }
+}
@@ -22,6 +22,7 @@ import java.util.List;
 
 public final class MethodCheckVisitor extends MethodVisitor {
     private final Index index;
+    private final VerdictCache verdictCache;
     private final ProblemCollector problems;
     private final String className;
     private final String methodName;
@@ -31,6 +32,7 @@ public final class MethodCheckVisitor extends MethodVisitor {
     public MethodCheckVisitor(Index index, ProblemCollector problems, String className, String methodName, String methodDesc) {
         super(AsmUtil.API);
         this.index = index;
+        this.verdictCache = index.getVerdictCache();
         this.problems = problems;
         this.className = className;
         this.methodName = methodName;
@@ -75,27 +77,35 @@ public final class MethodCheckVisitor extends MethodVisitor {
     }
 
     private void checkFieldAccess(FieldAccessType accessType, String owner, String name, String descriptor) {
+        report(verdictCache.getVerdict(className, accessType, owner, name, descriptor, false, verdict -> checkFieldAccess(verdict, accessType, owner, name, descriptor)));
+    }
+
+    private void checkFieldAccess(VerdictCache.Builder verdict, FieldAccessType accessType, String owner, String name, String descriptor) {
         OwnedClassMember field = InheritanceUtil.lookupField(index, owner, name, descriptor);
         if (field == null) {
-            problems.addProblem(className, methodName, methodDesc, lineNumber, Errors.ACCESS_REMOVED_FIELD, owner, name, descriptor);
+            verdict.addProblem(Errors.ACCESS_REMOVED_FIELD, owner, name, descriptor);
         } else {
-            if (!AsmUtil.isMemberAccessible(index, className, field.owner(), field.member().access().accessLevel())) {
-                problems.addProblem(className, methodName, methodDesc, lineNumber, Errors.ACCESS_INACCESSIBLE_FIELD, owner, name, descriptor, field.member().access().accessLevel().getLowerName());
+            if (!isMemberAccessible(verdict, field.owner(), field.member().access().accessLevel())) {
+                verdict.addProblem(Errors.ACCESS_INACCESSIBLE_FIELD, owner, name, descriptor, field.member().access().accessLevel().getLowerName());
             }
             if (field.member().access().isStatic()) {
                 if (!accessType.isStatic()) {
-                    problems.addProblem(className, methodName, methodDesc, lineNumber, Errors.NONSTATIC_ACCESS_TO_STATIC_FIELD, owner, name, descriptor);
+                    verdict.addProblem(Errors.NONSTATIC_ACCESS_TO_STATIC_FIELD, owner, name, descriptor);
                 }
             } else {
                 if (accessType.isStatic()) {
-                    problems.addProblem(className, methodName, methodDesc, lineNumber, Errors.STATIC_ACCESS_TO_NONSTATIC_FIELD, owner, name, descriptor);
+                    verdict.addProblem(Errors.STATIC_ACCESS_TO_NONSTATIC_FIELD, owner, name, descriptor);
                 }
             }
             if (field.member().access().isFinal()) {
                 if (accessType.isWrite()) {
+                    verdict.dependsOnClass();
+                    if (field.owner().equals(className)) {
+                        verdict.dependsOnMethod();
+                    }
                     String expectedMethod = accessType.isStatic() ? AsmUtil.CLASS_INITIALIZER_NAME : AsmUtil.CONSTRUCTOR_NAME;
                     if (!field.owner().equals(className) || !expectedMethod.equals(methodName)) {
-                        problems.addProblem(className, methodName, methodDesc, lineNumber, Errors.WRITE_FINAL_FIELD, owner, name, descriptor);
+                        verdict.addProblem(Errors.WRITE_FINAL_FIELD, owner, name, descriptor);
                     }
                 }
             }
@@ -112,38 +122,42 @@ public final class MethodCheckVisitor extends MethodVisitor {
     }
 
     private void checkMethodCall(MethodInvocationType invocationType, String owner, String name, String descriptor, boolean isInterface) {
+        report(verdictCache.getVerdict(className, invocationType, owner, name, descriptor, isInterface, verdict -> checkMethodCall(verdict, invocationType, owner, name, descriptor, isInterface)));
+    }
+
+    private void checkMethodCall(VerdictCache.Builder verdict, MethodInvocationType invocationType, String owner, String name, String descriptor, boolean isInterface) {
         IResolvedClass resolvedClass = index.findClass(owner);
         if (resolvedClass != null && resolvedClass.getAccess().isInterface() != isInterface) {
-            problems.addProblem(className, methodName, methodDesc, lineNumber, isInterface ? Errors.INTERFACE_CALL_TO_NON_INTERFACE_METHOD : Errors.NON_INTERFACE_CALL_TO_INTERFACE_METHOD, owner, name, descriptor);
+            verdict.addProblem(isInterface ? Errors.INTERFACE_CALL_TO_NON_INTERFACE_METHOD : Errors.NON_INTERFACE_CALL_TO_INTERFACE_METHOD, owner, name, descriptor);
         }
 
         switch (invocationType) {
             case VIRTUAL -> {
                 OwnedClassMember method = InheritanceUtil.lookupMethod(index, owner, name, descriptor);
                 if (method == null) {
-                    problems.addProblem(className, methodName, methodDesc, lineNumber, Errors.ACCESS_REMOVED_METHOD, owner, name, descriptor);
+                    verdict.addProblem(Errors.ACCESS_REMOVED_METHOD, owner, name, descriptor);
                 } else {
-                    if (!AsmUtil.isMemberAccessible(index, className, method.owner(), method.member().access().accessLevel())) {
-                        problems.addProblem(className, methodName, methodDesc, lineNumber, Errors.ACCESS_INACCESSIBLE_METHOD, owner, name, descriptor, method.member().access().accessLevel().getLowerName());
+                    if (!isMemberAccessible(verdict, method.owner(), method.member().access().accessLevel())) {
+                        verdict.addProblem(Errors.ACCESS_INACCESSIBLE_METHOD, owner, name, descriptor, method.member().access().accessLevel().getLowerName());
                     }
                     if (method.member().access().isStatic()) {
-                        problems.addProblem(className, methodName, methodDesc, lineNumber, Errors.NONSTATIC_CALL_TO_STATIC_METHOD, owner, name, descriptor);
+                        verdict.addProblem(Errors.NONSTATIC_CALL_TO_STATIC_METHOD, owner, name, descriptor);
                     }
                 }
             }
             case INTERFACE -> {
                 OwnedClassMember method = InheritanceUtil.lookupMethod(index, owner, name, descriptor);
                 if (method == null) {
-                    problems.addProblem(className, methodName, methodDesc, lineNumber, Errors.ACCESS_REMOVED_METHOD, owner, name, descriptor);
+                    verdict.addProblem(Errors.ACCESS_REMOVED_METHOD, owner, name, descriptor);
                 } else {
                     AccessLevel accessLevel = method.member().access().accessLevel();
                     if (accessLevel == AccessLevel.PROTECTED || accessLevel == AccessLevel.PACKAGE) {
-                        problems.addProblem(className, methodName, methodDesc, lineNumber, Errors.INTERFACE_CALL_TO_PACKAGE_OR_PROTECTED, owner, name, descriptor, accessLevel.getLowerName());
-                    } else if (!AsmUtil.isMemberAccessible(index, className, method.owner(), accessLevel)) {
-                        problems.addProblem(className, methodName, methodDesc, lineNumber, Errors.ACCESS_INACCESSIBLE_METHOD, owner, name, descriptor, accessLevel.getLowerName());
+                        verdict.addProblem(Errors.INTERFACE_CALL_TO_PACKAGE_OR_PROTECTED, owner, name, descriptor, accessLevel.getLowerName());
+                    } else if (!isMemberAccessible(verdict, method.owner(), accessLevel)) {
+                        verdict.addProblem(Errors.ACCESS_INACCESSIBLE_METHOD, owner, name, descriptor, accessLevel.getLowerName());
                     }
                     if (method.member().access().isStatic()) {
-                        problems.addProblem(className, methodName, methodDesc, lineNumber, Errors.NONSTATIC_CALL_TO_STATIC_METHOD, owner, name, descriptor);
+                        verdict.addProblem(Errors.NONSTATIC_CALL_TO_STATIC_METHOD, owner, name, descriptor);
                     }
                 }
             }
@@ -151,6 +165,7 @@ public final class MethodCheckVisitor extends MethodVisitor {
                 // JVMS 21 §6.5.invokespecial
                 String effectiveOwner = owner;
                 if (!AsmUtil.CONSTRUCTOR_NAME.equals(name)) {
+                    verdict.dependsOnClass();
                     IResolvedClass currentClass = index.findClass(className);
                     for (IResolvedClass clazz = currentClass; clazz != null; clazz = index.findClass(clazz.getSuperclass())) {
                         if (owner.equals(clazz.getSuperclass())) {
@@ -165,9 +180,9 @@ public final class MethodCheckVisitor extends MethodVisitor {
                 switch (nonAbstractMethods.size()) {
                     case 0 -> {
                         if (lookupResult.isEmpty()) {
-                            problems.addProblem(className, methodName, methodDesc, lineNumber, Errors.ACCESS_REMOVED_METHOD, owner, name, descriptor);
+                            verdict.addProblem(Errors.ACCESS_REMOVED_METHOD, owner, name, descriptor);
                         } else {
-                            problems.addProblem(className, methodName, methodDesc, lineNumber, Errors.INVOKESPECIAL_ABSTRACT_METHOD, owner, name, descriptor);
+                            verdict.addProblem(Errors.INVOKESPECIAL_ABSTRACT_METHOD, owner, name, descriptor);
                         }
                     }
                     case 1 -> {
@@ -176,30 +191,30 @@ public final class MethodCheckVisitor extends MethodVisitor {
                             if (resolvedClass == null || !resolvedClass.getAccess().isInterface()) {
                                 // if the resolved class is an interface, then we already gave an error about that
                                 // don't report a related error about the constructor being removed because it's an interface
-                                problems.addProblem(className, methodName, methodDesc, lineNumber, Errors.ACCESS_REMOVED_METHOD, owner, name, descriptor);
+                                verdict.addProblem(Errors.ACCESS_REMOVED_METHOD, owner, name, descriptor);
                             }
                         } else {
-                            if (!AsmUtil.isMemberAccessible(index, className, method.owner(), method.member().access().accessLevel())) {
-                                problems.addProblem(className, methodName, methodDesc, lineNumber, Errors.ACCESS_INACCESSIBLE_METHOD, owner, name, descriptor, method.member().access().accessLevel().getLowerName());
+                            if (!isMemberAccessible(verdict, method.owner(), method.member().access().accessLevel())) {
+                                verdict.addProblem(Errors.ACCESS_INACCESSIBLE_METHOD, owner, name, descriptor, method.member().access().accessLevel().getLowerName());
                             }
                             if (method.member().access().isStatic()) {
-                                problems.addProblem(className, methodName, methodDesc, lineNumber, Errors.NONSTATIC_CALL_TO_STATIC_METHOD, owner, name, descriptor);
+                                verdict.addProblem(Errors.NONSTATIC_CALL_TO_STATIC_METHOD, owner, name, descriptor);
                             }
                         }
                     }
-                    default -> problems.addProblem(className, methodName, methodDesc, lineNumber, Errors.INVOKESPECIAL_DIAMOND_PROBLEM, owner, name, descriptor);
+                    default -> verdict.addProblem(Errors.INVOKESPECIAL_DIAMOND_PROBLEM, owner, name, descriptor);
                 }
             }
             case STATIC -> {
                 OwnedClassMember method = InheritanceUtil.lookupMethod(index, owner, name, descriptor);
                 if (method == null) {
-                    problems.addProblem(className, methodName, methodDesc, lineNumber, Errors.ACCESS_REMOVED_METHOD, owner, name, descriptor);
+                    verdict.addProblem(Errors.ACCESS_REMOVED_METHOD, owner, name, descriptor);
                 } else {
-                    if (!AsmUtil.isMemberAccessible(index, className, method.owner(), method.member().access().accessLevel())) {
-                        problems.addProblem(className, methodName, methodDesc, lineNumber, Errors.ACCESS_INACCESSIBLE_METHOD, owner, name, descriptor, method.member().access().accessLevel().getLowerName());
+                    if (!isMemberAccessible(verdict, method.owner(), method.member().access().accessLevel())) {
+                        verdict.addProblem(Errors.ACCESS_INACCESSIBLE_METHOD, owner, name, descriptor, method.member().access().accessLevel().getLowerName());
                     }
                     if (!method.member().access().isStatic()) {
-                        problems.addProblem(className, methodName, methodDesc, lineNumber, Errors.STATIC_CALL_TO_NONSTATIC_METHOD, owner, name, descriptor);
+                        verdict.addProblem(Errors.STATIC_CALL_TO_NONSTATIC_METHOD, owner, name, descriptor);
                     }
                 }
             }
@@ -274,18 +289,37 @@ public final class MethodCheckVisitor extends MethodVisitor {
     }
 
     private boolean checkClassReference(@Nullable String referredClass) {
-        if (referredClass != null) {
-            IResolvedClass resolvedClass = index.findClass(referredClass);
-            if (resolvedClass == null) {
-                problems.addProblem(className, methodName, methodDesc, lineNumber, Errors.CODE_REFERENCES_REMOVED_CLASS, referredClass);
-                return false;
-            } else if (!AsmUtil.isClassAccessible(className, referredClass, resolvedClass.getAccess().accessLevel())) {
-                problems.addProblem(className, methodName, methodDesc, lineNumber, Errors.CODE_REFERENCES_INACCESSIBLE_CLASS, referredClass, resolvedClass.getAccess().accessLevel().getLowerName());
-                return false;
-            }
+        if (referredClass == null) {
+            return true;
         }
 
-        return true;
+        VerdictCache.Verdict verdict = verdictCache.getClassVerdict(className, referredClass, builder -> checkClassReference(builder, referredClass));
+        report(verdict);
+        return verdict.passed();
+    }
+
+    private void checkClassReference(VerdictCache.Builder verdict, String referredClass) {
+        IResolvedClass resolvedClass = index.findClass(referredClass);
+        if (resolvedClass == null) {
+            verdict.addProblem(Errors.CODE_REFERENCES_REMOVED_CLASS, referredClass);
+        } else if (!AsmUtil.isClassAccessible(className, referredClass, resolvedClass.getAccess().accessLevel())) {
+            verdict.addProblem(Errors.CODE_REFERENCES_INACCESSIBLE_CLASS, referredClass, resolvedClass.getAccess().accessLevel().getLowerName());
+        }
+    }
+
+    private boolean isMemberAccessible(VerdictCache.Builder verdict, String containingClassName, AccessLevel accessLevel) {
+        // anything other than public members and members of the same package depends on the ancestry or nest of this
+        // class, which differ between classes in the same package
+        if (accessLevel != AccessLevel.PUBLIC && (accessLevel == AccessLevel.PRIVATE || !AsmUtil.areSamePackage(className, containingClassName))) {
+            verdict.dependsOnClass();
+        }
+        return AsmUtil.isMemberAccessible(index, className, containingClassName, accessLevel);
+    }
+
+    private void report(VerdictCache.Verdict verdict) {
+        for (VerdictCache.Problem problem : verdict.problems()) {
+            problems.addProblem(className, methodName, methodDesc, lineNumber, problem.error(), problem.args());
+        }
     }
 
     private enum FieldAccessType {
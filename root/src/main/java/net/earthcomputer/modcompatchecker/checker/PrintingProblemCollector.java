@@ -3,16 +3,28 @@ package net.earthcomputer.modcompatchecker.checker;
 public final class PrintingProblemCollector implements ProblemCollector {
     @Override
     public void addProblem(String className, Errors problem, String... args) {
-        System.out.println(className + ": " + problem.getDescription().formatted((Object[]) args));
+        System.out.println(format(className, problem, args));
     }
 
     @Override
     public void addProblem(String className, String memberName, String memberDesc, Errors problem, String... args) {
-        System.out.println(className + "." + memberName + " " + memberDesc + ": " + problem.getDescription().formatted((Object[]) args));
+        System.out.println(format(className, memberName, memberDesc, problem, args));
     }
 
     @Override
     public void addProblem(String className, String memberName, String memberDesc, int lineNumber, Errors problem, String... args) {
-        System.out.println(className + "." + memberName + " " + memberDesc + ": L" + lineNumber + ": " + problem.getDescription().formatted((Object[]) args));
+        System.out.println(format(className, memberName, memberDesc, lineNumber, problem, args));
+    }
+
+    static String format(String className, Errors problem, String... args) {
+        return className + ": " + problem.getDescription().formatted((Object[]) args);
+    }
+
+    static String format(String className, String memberName, String memberDesc, Errors problem, String... args) {
+        return className + "." + memberName + " " + memberDesc + ": " + problem.getDescription().formatted((Object[]) args);
+    }
+
+    static String format(String className, String memberName, String memberDesc, int lineNumber, Errors problem, String... args) {
+        return className + "." + memberName + " " + memberDesc + ": L" + lineNumber + ": " + problem.getDescription().formatted((Object[]) args);
     }
 }
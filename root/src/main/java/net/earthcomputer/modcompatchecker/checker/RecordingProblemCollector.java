@@ -0,0 +1,46 @@
+package net.earthcomputer.modcompatchecker.checker;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+// Keeps the problems found, formatted the same way as PrintingProblemCollector prints them, grouped by the class they
+// were found in. Problems may be added from several threads at once.
+public final class RecordingProblemCollector implements ProblemCollector {
+    private final Map<String, ConcurrentLinkedQueue<String>> problems = new ConcurrentHashMap<>();
+
+    @Override
+    public void addProblem(String className, Errors problem, String... args) {
+        add(className, PrintingProblemCollector.format(className, problem, args));
+    }
+
+    @Override
+    public void addProblem(String className, String memberName, String memberDesc, Errors problem, String... args) {
+        add(className, PrintingProblemCollector.format(className, memberName, memberDesc, problem, args));
+    }
+
+    @Override
+    public void addProblem(String className, String memberName, String memberDesc, int lineNumber, Errors problem, String... args) {
+        add(className, PrintingProblemCollector.format(className, memberName, memberDesc, lineNumber, problem, args));
+    }
+
+    private void add(String className, String problem) {
+        problems.computeIfAbsent(className, k -> new ConcurrentLinkedQueue<>()).add(problem);
+    }
+
+    /**
+     * Returns the problems found in each class, sorted by class name and then by problem.
+     */
+    public Map<String, List<String>> getProblems() {
+        Map<String, List<String>> result = new TreeMap<>();
+        problems.forEach((className, classProblems) -> {
+            List<String> sorted = new ArrayList<>(classProblems);
+            sorted.sort(null);
+            result.put(className, sorted);
+        });
+        return result;
+    }
+}
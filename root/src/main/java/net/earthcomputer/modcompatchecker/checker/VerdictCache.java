@@ -0,0 +1,126 @@
+package net.earthcomputer.modcompatchecker.checker;
+
+import net.earthcomputer.modcompatchecker.util.AsmUtil;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+// Memoized outcomes of checking a class, field or method reference from code, for an index snapshot. Most outcomes only
+// depend on the reference and the package it's made from, and are shared by all the classes in that package. Those
+// which also depend on the ancestry or nest of the accessing class, such as protected and private access, are kept for
+// each accessing class separately, and those which depend on the accessing method aren't kept at all. Which of these an
+// outcome depends on is itself only determined by the reference and the package, so the shared entry records it for the
+// next lookup.
+//
+// The problems are stored without the accessing class, method and line number, and are reported again with those of
+// each later reference.
+public final class VerdictCache {
+    private static final Verdict CLASS_DEPENDENT = new Verdict(List.of(), Dependency.CLASS);
+
+    private final Map<Reference, Verdict> verdicts = new ConcurrentHashMap<>();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    public VerdictCache() {
+    }
+
+    Verdict getClassVerdict(String className, String referredClass, Consumer<Builder> checker) {
+        return getVerdict(className, null, referredClass, "", "", false, checker);
+    }
+
+    Verdict getVerdict(String className, @Nullable Enum<?> kind, String owner, String name, String desc, boolean isInterface, Consumer<Builder> checker) {
+        String packageName = AsmUtil.getPackageName(className);
+        Reference sharedRef = new Reference(packageName, null, kind, owner, name, desc, isInterface);
+        Verdict verdict = verdicts.get(sharedRef);
+        if (verdict != null && verdict.dependency != Dependency.NONE) {
+            verdict = verdicts.get(new Reference(packageName, className, kind, owner, name, desc, isInterface));
+        }
+        if (verdict != null) {
+            hits.increment();
+            return verdict;
+        }
+        misses.increment();
+
+        Builder builder = new Builder();
+        checker.accept(builder);
+        verdict = builder.build();
+        switch (verdict.dependency) {
+            case NONE -> verdicts.putIfAbsent(sharedRef, verdict);
+            case CLASS -> {
+                verdicts.putIfAbsent(sharedRef, CLASS_DEPENDENT);
+                verdicts.putIfAbsent(new Reference(packageName, className, kind, owner, name, desc, isInterface), verdict);
+            }
+            case METHOD -> verdicts.putIfAbsent(sharedRef, CLASS_DEPENDENT);
+        }
+        return verdict;
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public int size() {
+        return verdicts.size();
+    }
+
+    @Override
+    public String toString() {
+        long hits = getHits();
+        long total = hits + getMisses();
+        return String.format("%d hits, %d misses (%.1f%% hit rate), %d entries", hits, total - hits, total == 0 ? 0.0 : 100.0 * hits / total, size());
+    }
+
+    record Verdict(List<Problem> problems, Dependency dependency) {
+        boolean passed() {
+            return problems.isEmpty();
+        }
+    }
+
+    record Problem(Errors error, String[] args) {
+    }
+
+    static final class Builder {
+        private final List<Problem> problems = new ArrayList<>(0);
+        private Dependency dependency = Dependency.NONE;
+
+        void addProblem(Errors error, String... args) {
+            problems.add(new Problem(error, args));
+        }
+
+        /**
+         * Marks the outcome as depending on the accessing class beyond its package.
+         */
+        void dependsOnClass() {
+            if (dependency == Dependency.NONE) {
+                dependency = Dependency.CLASS;
+            }
+        }
+
+        /**
+         * Marks the outcome as depending on the accessing method.
+         */
+        void dependsOnMethod() {
+            dependency = Dependency.METHOD;
+        }
+
+        Verdict build() {
+            return new Verdict(List.copyOf(problems), dependency);
+        }
+    }
+
+    private enum Dependency {
+        NONE, CLASS, METHOD
+    }
+
+    private record Reference(String packageName, @Nullable String accessingClass, @Nullable Enum<?> kind, String owner, String name, String desc, boolean isInterface) {
+    }
+}
@@ -50,7 +50,7 @@ public enum CondyInvokeChecker implements CondyChecker {
                 return;
             }
 
-            if (resolvedClass.getFields().stream().noneMatch(field -> field.access().isEnum() && field.name().equals(enumDesc.constantName()))) {
+            if (resolvedClass.findFieldsByName(enumDesc.constantName()).stream().noneMatch(field -> field.access().isEnum())) {
                 context.addProblem(Errors.ACCESS_REMOVED_FIELD, type.getInternalName(), enumDesc.constantName(), type.getDescriptor());
             }
         }
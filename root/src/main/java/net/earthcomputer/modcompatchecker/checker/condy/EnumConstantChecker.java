@@ -7,6 +7,8 @@ import net.earthcomputer.modcompatchecker.util.AsmUtil;
 import net.earthcomputer.modcompatchecker.util.ClassMember;
 import org.objectweb.asm.Type;
 
+import java.util.List;
+
 public enum EnumConstantChecker implements CondyChecker {
     INSTANCE;
 
@@ -28,13 +30,8 @@ public enum EnumConstantChecker implements CondyChecker {
         if (!resolvedEnum.getAccess().isEnum() || !AsmUtil.ENUM.equals(resolvedEnum.getSuperclass())) {
             context.addProblem(Errors.ENUM_CONSTANT_NOT_AN_ENUM_CONSTANT, enumClass, context.name());
         } else {
-            ClassMember resolvedField = null;
-            for (ClassMember field : resolvedEnum.getFields()) {
-                if (field.name().equals(context.name())) {
-                    resolvedField = field;
-                    break;
-                }
-            }
+            List<ClassMember> resolvedFields = resolvedEnum.findFieldsByName(context.name());
+            ClassMember resolvedField = resolvedFields.isEmpty() ? null : resolvedFields.get(0);
             if (resolvedField == null) {
                 context.addProblem(Errors.ACCESS_REMOVED_FIELD, enumClass, context.name(), context.descriptor());
             } else if (!resolvedField.access().isEnum()) {
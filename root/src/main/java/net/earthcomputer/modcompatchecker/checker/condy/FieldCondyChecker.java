@@ -43,13 +43,7 @@ public enum FieldCondyChecker implements CondyChecker {
             context.addProblem(Errors.CODE_REFERENCES_INACCESSIBLE_CLASS, declaringClass, resolvedType.getAccess().accessLevel().getLowerName());
         }
 
-        ClassMember resolvedField = null;
-        for (ClassMember field : resolvedType.getFields()) {
-            if (field.name().equals(context.name()) && field.descriptor().equals(fieldType.getDescriptor())) {
-                resolvedField = field;
-                break;
-            }
-        }
+        ClassMember resolvedField = resolvedType.findField(context.name(), fieldType.getDescriptor());
 
         if (resolvedField == null) {
             context.addProblem(Errors.ACCESS_REMOVED_FIELD, declaringClass, context.name(), fieldType.getDescriptor());
@@ -44,7 +44,7 @@ public enum EnumSwitchChecker implements IndyChecker {
                 }
             } else if (label instanceof String enumConstant) {
                 // TODO: is this check correct?
-                if (resolvedEnum.getFields().stream().noneMatch(field -> field.access().isEnum() && field.name().equals(enumConstant))) {
+                if (resolvedEnum.findFieldsByName(enumConstant).stream().noneMatch(field -> field.access().isEnum())) {
                     context.addProblem(Errors.ENUM_SWITCH_REMOVED_ENUM_CONSTANT, enumClass, enumConstant);
                 }
             }
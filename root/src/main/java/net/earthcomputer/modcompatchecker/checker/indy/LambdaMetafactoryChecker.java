@@ -94,6 +94,16 @@ public enum LambdaMetafactoryChecker implements IndyChecker {
                 return AsmUtil.isMemberAccessible(index, context.className(), containingClassName, containingClass, accessLevel);
             }
 
+            @Override
+            protected String getAccessingClassName() {
+                return context.className();
+            }
+
+            @Override
+            protected boolean mayDeclareMethod(String name) {
+                return name.equals(interfaceMethodName);
+            }
+
             @Override
             protected List<OwnedClassMember> multiLookupMethod(String name, String desc) {
                 if (name.equals(interfaceMethodName) && interfaceMethodDescs.contains(desc)) {
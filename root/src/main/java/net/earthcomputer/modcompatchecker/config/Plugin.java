@@ -1,21 +1,22 @@
 package net.earthcomputer.modcompatchecker.config;
 
+import net.earthcomputer.modcompatchecker.checker.FilteringProblemCollector;
 import net.earthcomputer.modcompatchecker.checker.ProblemCollector;
 import net.earthcomputer.modcompatchecker.indexer.ClassIndex;
 import net.earthcomputer.modcompatchecker.indexer.Index;
+import net.earthcomputer.modcompatchecker.indexer.IndexBuilder;
 import net.earthcomputer.modcompatchecker.util.ClassMember;
+import net.earthcomputer.modcompatchecker.util.JarSession;
 import net.earthcomputer.modcompatchecker.util.ThreeState;
 import org.jetbrains.annotations.Nullable;
 
 import java.io.IOException;
-import java.nio.file.Path;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.Executor;
-import java.util.jar.JarFile;
 
 public interface Plugin {
     String id();
@@ -35,14 +36,48 @@ public interface Plugin {
         return ThreeState.UNKNOWN;
     }
 
-    default void preIndexLibrary(Config config, Index index, Path libraryPath) throws IOException {
+    /**
+     * Returns the names of the entries of the given jar which are jars themselves, and should be indexed and checked
+     * along with it.
+     */
+    default List<String> getNestedJars(JarSession jar) throws IOException {
+        return List.of();
     }
 
-    default void preIndexMod(Config config, Index index, Path modPath) throws IOException {
+    default void preIndexLibrary(Config config, IndexBuilder index, JarSession libraryJar) throws IOException {
     }
 
+    default void preIndexMod(Config config, IndexBuilder index, JarSession modJar) throws IOException {
+    }
+
+    /**
+     * Returns a string describing any state that affects how this plugin processes indexed classes, such as config
+     * values and anything read in {@link #preIndexLibrary} and {@link #preIndexMod}. Cached library indexes are only
+     * reused if this is unchanged. Called after all libraries and mods have been pre-indexed.
+     */
+    default String getIndexCacheKey(Config config) {
+        return "";
+    }
+
+    /**
+     * Called for each class as it is indexed, possibly from several threads at once. This and the other indexing hooks
+     * may read state set up in {@link #preIndexLibrary} and {@link #preIndexMod}, but shouldn't modify it.
+     */
+    @Nullable
+    default ClassIndex onIndexClass(String className, ClassIndex clazz) {
+        return onIndexClass(null, className, clazz);
+    }
+
+    /**
+     * The old form of {@link #onIndexClass(String, ClassIndex)}, which is still called for plugins that override it.
+     * Classes are now indexed into an {@link IndexBuilder}, or decoded lazily from an index file, so there's no
+     * {@link Index} to pass, and {@code index} is always {@code null}.
+     *
+     * @deprecated override {@link #onIndexClass(String, ClassIndex)} instead
+     */
+    @Deprecated(forRemoval = true)
     @Nullable
-    default ClassIndex onIndexClass(Index index, String className, ClassIndex clazz) {
+    default ClassIndex onIndexClass(@Nullable Index index, String className, ClassIndex clazz) {
         return clazz;
     }
 
@@ -61,7 +96,25 @@ public interface Plugin {
         return permittedSubclass;
     }
 
-    default void check(Index index, Config config, Path modPath, JarFile modJar, ProblemCollector problems, List<CompletableFuture<Void>> futures, Executor executor) throws IOException {
+    default void check(Index index, Config config, JarSession modJar, ProblemCollector problems, List<CompletableFuture<Void>> futures, Executor executor) throws IOException {
+    }
+
+    /**
+     * Checks only the given class entries of a mod jar which has already been checked, such as the classes which changed
+     * or were affected by a change when a mod is rebuilt in watch mode. Problems are only expected for the given
+     * classes. By default, the whole jar is checked again with {@link #check} and only the problems in the given classes
+     * are kept, so plugins should override this if they can check classes on their own.
+     */
+    default void checkClasses(Index index, Config config, JarSession modJar, List<JarSession.Entry> classEntries, ProblemCollector problems, List<CompletableFuture<Void>> futures, Executor executor) throws IOException {
+        Set<String> classNames = new HashSet<>();
+        for (JarSession.Entry entry : classEntries) {
+            String entryName = entry.getName();
+            if (entryName.startsWith("META-INF/versions/")) {
+                entryName = entryName.substring(entryName.indexOf('/', "META-INF/versions/".length()) + 1);
+            }
+            classNames.add(entryName.substring(0, entryName.length() - ".class".length()));
+        }
+        check(index, config, modJar, new FilteringProblemCollector(classNames, problems), futures, executor);
     }
 
     final class Ordering {
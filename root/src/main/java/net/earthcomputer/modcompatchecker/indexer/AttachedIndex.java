@@ -0,0 +1,15 @@
+package net.earthcomputer.modcompatchecker.indexer;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+
+// Classes which are attached to an index without being read up front, and are only decoded when they're first looked
+// up, such as those in a binary index or a library jar which is indexed on demand. Lookups may come from several threads
+// at once.
+interface AttachedIndex {
+    boolean containsClass(String className) throws IOException;
+
+    @Nullable
+    ClassIndex findClass(String className) throws IOException;
+}
@@ -0,0 +1,108 @@
+package net.earthcomputer.modcompatchecker.indexer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+// Layout of a binary index file:
+//   header:  "MCCI" magic, u1 version
+//   blocks:  independently deflated string blocks and class blocks
+//   footer:  the string and class block tables (see BinaryIndexReader)
+//   trailer: u8 offset of the footer
+// All integers other than the header and trailer are unsigned LEB128 varints. Strings are stored once in the string
+// table and referred to by id everywhere else, with the most frequently used strings getting the smallest ids.
+final class BinaryIndexFormat {
+    static final byte[] MAGIC = {'M', 'C', 'C', 'I'};
+    // version 2 added the source of each class
+    static final int VERSION = 2;
+    static final int MIN_VERSION = 1;
+    static final int HEADER_SIZE = MAGIC.length + 1;
+    static final int TRAILER_SIZE = Long.BYTES;
+
+    static final int STRINGS_PER_BLOCK = 4096;
+    static final int CLASSES_PER_BLOCK = 256;
+
+    private BinaryIndexFormat() {
+    }
+
+    static void writeVarInt(ByteArrayOutputStream out, int value) {
+        writeVarLong(out, Integer.toUnsignedLong(value));
+    }
+
+    static void writeVarLong(ByteArrayOutputStream out, long value) {
+        while ((value & ~0x7fL) != 0) {
+            out.write((int) ((value & 0x7f) | 0x80));
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    static int readVarInt(ByteBuffer buffer) throws IOException {
+        long value = readVarLong(buffer);
+        if (value > Integer.MAX_VALUE) {
+            throw new IOException("Invalid binary index: varint out of range");
+        }
+        return (int) value;
+    }
+
+    static long readVarLong(ByteBuffer buffer) throws IOException {
+        try {
+            long value = 0;
+            for (int shift = 0; shift < Long.SIZE; shift += 7) {
+                byte b = buffer.get();
+                value |= (long) (b & 0x7f) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+        } catch (BufferUnderflowException e) {
+            throw new IOException("Invalid binary index: unexpected end of data", e);
+        }
+        throw new IOException("Invalid binary index: varint too long");
+    }
+
+    static byte[] compress(byte[] data) {
+        Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+        try {
+            deflater.setInput(data);
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(data.length / 4 + 16);
+            byte[] buf = new byte[8192];
+            while (!deflater.finished()) {
+                int len = deflater.deflate(buf);
+                out.write(buf, 0, len);
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    static ByteBuffer decompress(ByteBuffer data, int uncompressedLength) throws IOException {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(data);
+            byte[] result = new byte[uncompressedLength];
+            int len = 0;
+            while (len < uncompressedLength && !inflater.finished()) {
+                int inflated = inflater.inflate(result, len, uncompressedLength - len);
+                if (inflated == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                len += inflated;
+            }
+            if (len != uncompressedLength) {
+                throw new IOException("Invalid binary index: block is shorter than expected");
+            }
+            return ByteBuffer.wrap(result);
+        } catch (DataFormatException e) {
+            throw new IOException("Invalid binary index: corrupt block", e);
+        } finally {
+            inflater.end();
+        }
+    }
+}
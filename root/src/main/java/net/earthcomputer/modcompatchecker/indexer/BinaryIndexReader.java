@@ -0,0 +1,287 @@
+package net.earthcomputer.modcompatchecker.indexer;
+
+import net.earthcomputer.modcompatchecker.util.AccessFlags;
+import net.earthcomputer.modcompatchecker.util.ClassMember;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+// Blocks are only decompressed when something inside them is first needed, and are then kept for the lifetime of the
+// reader. Decoding is thread-safe: two threads racing to decode the same block both produce equal results, and
+// whichever finishes first wins.
+final class BinaryIndexReader implements AttachedIndex {
+    private final ByteBuffer buffer;
+    private final boolean runPlugins;
+    private final SymbolTable symbols;
+    private final int version;
+    private final int stringCount;
+    private final int stringsPerBlock;
+    private final Block[] stringBlocks;
+    private final AtomicReferenceArray<String[]> strings;
+    private final Block[] classBlocks;
+    private final AtomicReferenceArray<ClassBlock> decodedClassBlocks;
+
+    private BinaryIndexReader(ByteBuffer buffer, boolean runPlugins, SymbolTable symbols) throws IOException {
+        this.buffer = buffer;
+        this.runPlugins = runPlugins;
+        this.symbols = symbols;
+
+        if (buffer.limit() < BinaryIndexFormat.HEADER_SIZE + BinaryIndexFormat.TRAILER_SIZE) {
+            throw new IOException("Invalid binary index: file too short");
+        }
+        byte[] magic = new byte[BinaryIndexFormat.MAGIC.length];
+        buffer.get(0, magic);
+        if (!Arrays.equals(magic, BinaryIndexFormat.MAGIC)) {
+            throw new IOException("Invalid binary index: bad magic");
+        }
+        version = buffer.get(BinaryIndexFormat.MAGIC.length) & 0xff;
+        if (version < BinaryIndexFormat.MIN_VERSION || version > BinaryIndexFormat.VERSION) {
+            throw new IOException("Unsupported binary index version " + version);
+        }
+
+        long footerOffset = buffer.getLong(buffer.limit() - BinaryIndexFormat.TRAILER_SIZE);
+        if (footerOffset < BinaryIndexFormat.HEADER_SIZE || footerOffset > buffer.limit() - BinaryIndexFormat.TRAILER_SIZE) {
+            throw new IOException("Invalid binary index: bad footer offset");
+        }
+        ByteBuffer footer = buffer.slice((int) footerOffset, buffer.limit() - BinaryIndexFormat.TRAILER_SIZE - (int) footerOffset);
+
+        stringCount = BinaryIndexFormat.readVarInt(footer);
+        stringsPerBlock = BinaryIndexFormat.readVarInt(footer);
+        stringBlocks = readBlockTable(footer, stringCount, stringsPerBlock, false);
+        strings = new AtomicReferenceArray<>(stringBlocks.length);
+
+        int classCount = BinaryIndexFormat.readVarInt(footer);
+        int classesPerBlock = BinaryIndexFormat.readVarInt(footer);
+        classBlocks = readBlockTable(footer, classCount, classesPerBlock, true);
+        decodedClassBlocks = new AtomicReferenceArray<>(classBlocks.length);
+    }
+
+    static BinaryIndexReader open(ByteBuffer buffer, SymbolTable symbols) throws IOException {
+        return new BinaryIndexReader(buffer, true, symbols);
+    }
+
+    // for indexes which were written after plugins had already processed the classes, such as cached indexes
+    static BinaryIndexReader openRaw(ByteBuffer buffer, SymbolTable symbols) throws IOException {
+        return new BinaryIndexReader(buffer, false, symbols);
+    }
+
+    private Block[] readBlockTable(ByteBuffer footer, int count, int perBlock, boolean hasFirstName) throws IOException {
+        if (perBlock <= 0) {
+            throw new IOException("Invalid binary index: bad block size");
+        }
+        Block[] blocks = new Block[(int) (((long) count + perBlock - 1) / perBlock)];
+        for (int i = 0; i < blocks.length; i++) {
+            long offset = BinaryIndexFormat.readVarLong(footer);
+            int compressedLength = BinaryIndexFormat.readVarInt(footer);
+            int uncompressedLength = BinaryIndexFormat.readVarInt(footer);
+            int firstName = hasFirstName ? BinaryIndexFormat.readVarInt(footer) : -1;
+            if (offset < BinaryIndexFormat.HEADER_SIZE || offset + compressedLength > buffer.limit() - BinaryIndexFormat.TRAILER_SIZE) {
+                throw new IOException("Invalid binary index: block out of bounds");
+            }
+            blocks[i] = new Block((int) offset, compressedLength, uncompressedLength, firstName);
+        }
+        return blocks;
+    }
+
+    private ByteBuffer decompressBlock(Block block) throws IOException {
+        return BinaryIndexFormat.decompress(buffer.slice(block.offset, block.compressedLength), block.uncompressedLength);
+    }
+
+    String getString(int id) throws IOException {
+        if (id < 0 || id >= stringCount) {
+            throw new IOException("Invalid binary index: string id " + id + " out of range");
+        }
+        int blockIndex = id / stringsPerBlock;
+        String[] block = strings.get(blockIndex);
+        if (block == null) {
+            block = decodeStringBlock(blockIndex);
+            if (!strings.compareAndSet(blockIndex, null, block)) {
+                block = strings.get(blockIndex);
+            }
+        }
+        return block[id % stringsPerBlock];
+    }
+
+    @Nullable
+    private String getNullableString(int idPlusOne) throws IOException {
+        return idPlusOne == 0 ? null : getString(idPlusOne - 1);
+    }
+
+    private String[] decodeStringBlock(int blockIndex) throws IOException {
+        ByteBuffer data = decompressBlock(stringBlocks[blockIndex]);
+        String[] result = new String[Math.min(stringsPerBlock, stringCount - blockIndex * stringsPerBlock)];
+        try {
+            for (int i = 0; i < result.length; i++) {
+                int length = BinaryIndexFormat.readVarInt(data);
+                result[i] = symbols.intern(new String(data.array(), data.position(), length, StandardCharsets.UTF_8));
+                data.position(data.position() + length);
+            }
+        } catch (IndexOutOfBoundsException e) {
+            throw new IOException("Invalid binary index: corrupt string block", e);
+        }
+        return result;
+    }
+
+    private ClassBlock getClassBlock(int blockIndex) throws IOException {
+        ClassBlock block = decodedClassBlocks.get(blockIndex);
+        if (block == null) {
+            block = decodeClassBlock(blockIndex);
+            if (!decodedClassBlocks.compareAndSet(blockIndex, null, block)) {
+                block = decodedClassBlocks.get(blockIndex);
+            }
+        }
+        return block;
+    }
+
+    private ClassBlock decodeClassBlock(int blockIndex) throws IOException {
+        ByteBuffer data = decompressBlock(classBlocks[blockIndex]);
+        try {
+            int count = BinaryIndexFormat.readVarInt(data);
+            String[] names = new String[count];
+            int[] offsets = new int[count];
+            for (int i = 0; i < count; i++) {
+                names[i] = getString(BinaryIndexFormat.readVarInt(data));
+                offsets[i] = BinaryIndexFormat.readVarInt(data);
+            }
+            return new ClassBlock(data.slice(), names, offsets);
+        } catch (BufferUnderflowException e) {
+            throw new IOException("Invalid binary index: corrupt class block", e);
+        }
+    }
+
+    void readAll(IndexBuilder index) throws IOException {
+        for (int blockIndex = 0; blockIndex < classBlocks.length; blockIndex++) {
+            // read straight through the block rather than caching it, as nothing else will ask for it again
+            ClassBlock block = decodeClassBlock(blockIndex);
+            for (int i = 0; i < block.names.length; i++) {
+                ClassIndex classIndex = readClass(block, i);
+                if (classIndex != null) {
+                    index.putClass(block.names[i], classIndex);
+                }
+            }
+        }
+    }
+
+    @Override
+    public boolean containsClass(String className) throws IOException {
+        int blockIndex = findClassBlock(className);
+        return blockIndex >= 0 && Arrays.binarySearch(getClassBlock(blockIndex).names, className) >= 0;
+    }
+
+    @Override
+    @Nullable
+    public ClassIndex findClass(String className) throws IOException {
+        int blockIndex = findClassBlock(className);
+        if (blockIndex < 0) {
+            return null;
+        }
+        ClassBlock block = getClassBlock(blockIndex);
+        int i = Arrays.binarySearch(block.names, className);
+        return i < 0 ? null : readClass(block, i);
+    }
+
+    private int findClassBlock(String className) throws IOException {
+        // find the last block whose first class is not after the class we're looking for
+        int low = 0;
+        int high = classBlocks.length - 1;
+        int result = -1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (getString(classBlocks[mid].firstName).compareTo(className) <= 0) {
+                result = mid;
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return result;
+    }
+
+    @Nullable
+    private ClassIndex readClass(ClassBlock block, int i) throws IOException {
+        String className = block.names[i];
+        try {
+            return readClass(className, block.records.duplicate().position(block.offsets[i]));
+        } catch (BufferUnderflowException | IllegalArgumentException e) {
+            throw new IOException("Invalid binary index: corrupt class record for " + className, e);
+        }
+    }
+
+    @Nullable
+    private ClassIndex readClass(String className, ByteBuffer data) throws IOException {
+        AccessFlags access = new AccessFlags(BinaryIndexFormat.readVarInt(data));
+        String superclass = getNullableString(BinaryIndexFormat.readVarInt(data));
+        List<String> interfaces = readStrings(data);
+        String nestHost = getNullableString(BinaryIndexFormat.readVarInt(data));
+        List<String> nestMembers = readStrings(data);
+        List<String> permittedSubclasses = readStrings(data);
+
+        ClassIndex classIndex = runPlugins ? IndexBuilder.createClass(className, access, superclass, interfaces) : new ClassIndex(access, superclass, interfaces);
+        if (classIndex == null) {
+            return null;
+        }
+
+        classIndex.setNestHost(nestHost);
+        nestMembers.forEach(classIndex::addNestMember);
+        for (String permittedSubclass : permittedSubclasses) {
+            if (runPlugins) {
+                classIndex.addPermittedSubclass(className, permittedSubclass);
+            } else {
+                classIndex.putPermittedSubclass(permittedSubclass);
+            }
+        }
+
+        int fieldCount = BinaryIndexFormat.readVarInt(data);
+        for (int i = 0; i < fieldCount; i++) {
+            AccessFlags fieldAccess = new AccessFlags(BinaryIndexFormat.readVarInt(data));
+            String name = getString(BinaryIndexFormat.readVarInt(data));
+            String descriptor = getString(BinaryIndexFormat.readVarInt(data));
+            if (runPlugins) {
+                classIndex.addField(className, fieldAccess, name, descriptor);
+            } else {
+                classIndex.putField(new ClassMember(fieldAccess, name, descriptor));
+            }
+        }
+
+        int methodCount = BinaryIndexFormat.readVarInt(data);
+        for (int i = 0; i < methodCount; i++) {
+            AccessFlags methodAccess = new AccessFlags(BinaryIndexFormat.readVarInt(data));
+            String name = getString(BinaryIndexFormat.readVarInt(data));
+            String descriptor = getString(BinaryIndexFormat.readVarInt(data));
+            if (runPlugins) {
+                classIndex.addMethod(className, methodAccess, name, descriptor);
+            } else {
+                classIndex.putMethod(new ClassMember(methodAccess, name, descriptor));
+            }
+        }
+
+        if (version >= 2) {
+            classIndex.setSource(getNullableString(BinaryIndexFormat.readVarInt(data)));
+        }
+        classIndex.finish();
+
+        return classIndex;
+    }
+
+    private List<String> readStrings(ByteBuffer data) throws IOException {
+        int count = BinaryIndexFormat.readVarInt(data);
+        List<String> result = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            result.add(getString(BinaryIndexFormat.readVarInt(data)));
+        }
+        return result;
+    }
+
+    private record Block(int offset, int compressedLength, int uncompressedLength, int firstName) {
+    }
+
+    private record ClassBlock(ByteBuffer records, String[] names, int[] offsets) {
+    }
+}
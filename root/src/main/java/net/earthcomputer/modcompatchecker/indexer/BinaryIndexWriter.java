@@ -0,0 +1,150 @@
+package net.earthcomputer.modcompatchecker.indexer;
+
+import net.earthcomputer.modcompatchecker.util.ClassMember;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+final class BinaryIndexWriter {
+    private final Map<String, Integer> stringIds = new HashMap<>();
+    private final List<String> strings = new ArrayList<>();
+
+    private BinaryIndexWriter() {
+    }
+
+    static void write(List<Map.Entry<String, ClassIndex>> classes, OutputStream output) throws IOException {
+        BinaryIndexWriter writer = new BinaryIndexWriter();
+        writer.buildStringTable(classes);
+        writer.writeTo(classes, new DataOutputStream(output));
+    }
+
+    private void buildStringTable(List<Map.Entry<String, ClassIndex>> classes) {
+        Map<String, Integer> frequencies = new HashMap<>();
+        for (var entry : classes) {
+            ClassIndex clazz = entry.getValue();
+            countString(frequencies, entry.getKey());
+            countString(frequencies, clazz.getSuperclass());
+            clazz.getInterfaces().forEach(itf -> countString(frequencies, itf));
+            countString(frequencies, clazz.getNestHost());
+            clazz.getNestMembers().forEach(nestMember -> countString(frequencies, nestMember));
+            clazz.getPermittedSubclasses().forEach(permittedSubclass -> countString(frequencies, permittedSubclass));
+            for (ClassMember field : clazz.getFields()) {
+                countString(frequencies, field.name());
+                countString(frequencies, field.descriptor());
+            }
+            for (ClassMember method : clazz.getMethods()) {
+                countString(frequencies, method.name());
+                countString(frequencies, method.descriptor());
+            }
+            countString(frequencies, clazz.getSource());
+        }
+
+        strings.addAll(frequencies.keySet());
+        strings.sort(Comparator.<String>comparingInt(frequencies::get).reversed().thenComparing(Comparator.naturalOrder()));
+        for (int i = 0; i < strings.size(); i++) {
+            stringIds.put(strings.get(i), i);
+        }
+    }
+
+    private static void countString(Map<String, Integer> frequencies, @Nullable String str) {
+        if (str != null) {
+            frequencies.merge(str, 1, Integer::sum);
+        }
+    }
+
+    private void writeTo(List<Map.Entry<String, ClassIndex>> classes, DataOutputStream out) throws IOException {
+        out.write(BinaryIndexFormat.MAGIC);
+        out.writeByte(BinaryIndexFormat.VERSION);
+
+        ByteArrayOutputStream footer = new ByteArrayOutputStream();
+
+        BinaryIndexFormat.writeVarInt(footer, strings.size());
+        BinaryIndexFormat.writeVarInt(footer, BinaryIndexFormat.STRINGS_PER_BLOCK);
+        for (int start = 0; start < strings.size(); start += BinaryIndexFormat.STRINGS_PER_BLOCK) {
+            ByteArrayOutputStream block = new ByteArrayOutputStream();
+            for (String str : strings.subList(start, Math.min(strings.size(), start + BinaryIndexFormat.STRINGS_PER_BLOCK))) {
+                byte[] bytes = str.getBytes(StandardCharsets.UTF_8);
+                BinaryIndexFormat.writeVarInt(block, bytes.length);
+                block.writeBytes(bytes);
+            }
+            writeBlock(out, footer, block);
+        }
+
+        BinaryIndexFormat.writeVarInt(footer, classes.size());
+        BinaryIndexFormat.writeVarInt(footer, BinaryIndexFormat.CLASSES_PER_BLOCK);
+        for (int start = 0; start < classes.size(); start += BinaryIndexFormat.CLASSES_PER_BLOCK) {
+            List<Map.Entry<String, ClassIndex>> blockClasses = classes.subList(start, Math.min(classes.size(), start + BinaryIndexFormat.CLASSES_PER_BLOCK));
+
+            // each block starts with a directory of its classes, so that a single class can be found without decoding
+            // the whole block
+            ByteArrayOutputStream records = new ByteArrayOutputStream();
+            ByteArrayOutputStream block = new ByteArrayOutputStream();
+            BinaryIndexFormat.writeVarInt(block, blockClasses.size());
+            for (var entry : blockClasses) {
+                BinaryIndexFormat.writeVarInt(block, stringIds.get(entry.getKey()));
+                BinaryIndexFormat.writeVarInt(block, records.size());
+                writeClass(records, entry.getValue());
+            }
+            records.writeTo(block);
+
+            writeBlock(out, footer, block);
+            BinaryIndexFormat.writeVarInt(footer, stringIds.get(blockClasses.get(0).getKey()));
+        }
+
+        long footerOffset = out.size();
+        footer.writeTo(out);
+        out.writeLong(footerOffset);
+        out.flush();
+    }
+
+    private static void writeBlock(DataOutputStream out, ByteArrayOutputStream footer, ByteArrayOutputStream block) throws IOException {
+        byte[] uncompressed = block.toByteArray();
+        byte[] compressed = BinaryIndexFormat.compress(uncompressed);
+        BinaryIndexFormat.writeVarLong(footer, out.size());
+        BinaryIndexFormat.writeVarInt(footer, compressed.length);
+        BinaryIndexFormat.writeVarInt(footer, uncompressed.length);
+        out.write(compressed);
+    }
+
+    private void writeClass(ByteArrayOutputStream out, ClassIndex clazz) {
+        BinaryIndexFormat.writeVarInt(out, clazz.getAccess().toAsm());
+        writeNullableString(out, clazz.getSuperclass());
+        writeStrings(out, clazz.getInterfaces());
+        writeNullableString(out, clazz.getNestHost());
+        writeStrings(out, clazz.getNestMembers());
+        writeStrings(out, clazz.getPermittedSubclasses());
+        writeMembers(out, clazz.getFields());
+        writeMembers(out, clazz.getMethods());
+        writeNullableString(out, clazz.getSource());
+    }
+
+    private void writeNullableString(ByteArrayOutputStream out, @Nullable String str) {
+        BinaryIndexFormat.writeVarInt(out, str == null ? 0 : stringIds.get(str) + 1);
+    }
+
+    private void writeStrings(ByteArrayOutputStream out, Collection<String> strs) {
+        BinaryIndexFormat.writeVarInt(out, strs.size());
+        for (String str : strs) {
+            BinaryIndexFormat.writeVarInt(out, stringIds.get(str));
+        }
+    }
+
+    private void writeMembers(ByteArrayOutputStream out, Collection<ClassMember> members) {
+        BinaryIndexFormat.writeVarInt(out, members.size());
+        for (ClassMember member : members) {
+            BinaryIndexFormat.writeVarInt(out, member.access().toAsm());
+            BinaryIndexFormat.writeVarInt(out, stringIds.get(member.name()));
+            BinaryIndexFormat.writeVarInt(out, stringIds.get(member.descriptor()));
+        }
+    }
+}
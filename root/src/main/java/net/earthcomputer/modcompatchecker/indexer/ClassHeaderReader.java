@@ -0,0 +1,420 @@
+package net.earthcomputer.modcompatchecker.indexer;
+
+import net.earthcomputer.modcompatchecker.util.AsmUtil;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.Opcodes;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+
+// Reads the parts of a class file which go into an index straight from its bytes: the access flags, names and
+// descriptors of the class and its members, its supertypes, and its PermittedSubclasses, NestHost and NestMembers
+// attributes. Only the constant pool entries those refer to are decoded, and nothing else in the class file is looked at
+// beyond skipping over it. The visitor's visit, visitNestHost, visitNestMember, visitPermittedSubclass, visitField,
+// visitMethod and visitEnd methods are called in the same order and with the same names, descriptors and access flags as
+// ClassReader.accept with SKIP_CODE would call them, including the flags ASM derives from the Deprecated, Synthetic and
+// Record attributes. Nothing else is visited.
+//
+// The class file is checked before anything is visited, and anything unusual, such as a constant pool tag or class file
+// version this doesn't know about, or an index that doesn't point to the expected kind of constant, is left to ASM.
+final class ClassHeaderReader {
+    private static final int MAGIC = 0xcafebabe;
+
+    private static final int CONSTANT_UTF8 = 1;
+    private static final int CONSTANT_INTEGER = 3;
+    private static final int CONSTANT_FLOAT = 4;
+    private static final int CONSTANT_LONG = 5;
+    private static final int CONSTANT_DOUBLE = 6;
+    private static final int CONSTANT_CLASS = 7;
+    private static final int CONSTANT_STRING = 8;
+    private static final int CONSTANT_FIELDREF = 9;
+    private static final int CONSTANT_METHODREF = 10;
+    private static final int CONSTANT_INTERFACE_METHODREF = 11;
+    private static final int CONSTANT_NAME_AND_TYPE = 12;
+    private static final int CONSTANT_METHOD_HANDLE = 15;
+    private static final int CONSTANT_METHOD_TYPE = 16;
+    private static final int CONSTANT_DYNAMIC = 17;
+    private static final int CONSTANT_INVOKE_DYNAMIC = 18;
+    private static final int CONSTANT_MODULE = 19;
+    private static final int CONSTANT_PACKAGE = 20;
+
+    private static final byte[] DEPRECATED = ascii("Deprecated");
+    private static final byte[] SYNTHETIC = ascii("Synthetic");
+    private static final byte[] RECORD = ascii("Record");
+    private static final byte[] NEST_HOST = ascii("NestHost");
+    private static final byte[] NEST_MEMBERS = ascii("NestMembers");
+    private static final byte[] PERMITTED_SUBCLASSES = ascii("PermittedSubclasses");
+
+    private final byte[] bytes;
+    // the offset of each constant pool entry, after its tag
+    private final int[] constantOffsets;
+    private final String[] utf8Cache;
+    private int headerStart;
+    private int membersStart;
+    private int classAccess;
+    private int nestHostOffset;
+    private int nestMembersOffset;
+    private int permittedSubclassesOffset;
+
+    private ClassHeaderReader(byte[] bytes, int constantCount) {
+        this.bytes = bytes;
+        this.constantOffsets = new int[constantCount];
+        this.utf8Cache = new String[constantCount];
+    }
+
+    /**
+     * Reads the given class file into the visitor, as ASM would with {@link ClassReader#SKIP_CODE}, and returns the
+     * name of the class.
+     */
+    static String accept(byte[] bytes, ClassVisitor visitor) {
+        ClassHeaderReader reader = bytes.length >= 10 ? new ClassHeaderReader(bytes, readUnsignedShort(bytes, 8)) : null;
+        if (reader != null && reader.check()) {
+            return reader.accept(visitor);
+        }
+        ClassReader classReader = new ClassReader(bytes);
+        classReader.accept(visitor, ClassReader.SKIP_CODE);
+        return classReader.getClassName();
+    }
+
+    /**
+     * Adds the names of the classes which the given class file refers to in its constant pool, either directly or in a
+     * descriptor, to the given set. Array classes are added as their element class. Nothing is added if the class file is
+     * unusual.
+     */
+    static void addReferencedClasses(byte[] bytes, Set<String> classNames) {
+        if (bytes.length < 10) {
+            return;
+        }
+        ClassHeaderReader reader = new ClassHeaderReader(bytes, readUnsignedShort(bytes, 8));
+        try {
+            if (reader.readConstantPool() < 0) {
+                return;
+            }
+        } catch (ArrayIndexOutOfBoundsException e) {
+            return;
+        }
+        for (int i = 1; i < reader.constantOffsets.length; i++) {
+            int offset = reader.constantOffsets[i];
+            if (offset == 0) {
+                continue;
+            }
+            switch (bytes[offset - 1]) {
+                case CONSTANT_CLASS -> {
+                    if (reader.isClass(i)) {
+                        String className = reader.readClass(i);
+                        if (className.startsWith("[")) {
+                            addDescriptorClasses(className, classNames);
+                        } else {
+                            classNames.add(className);
+                        }
+                    }
+                }
+                case CONSTANT_NAME_AND_TYPE -> {
+                    int descriptorIndex = reader.readUnsignedShort(offset + 2);
+                    if (reader.isUtf8(descriptorIndex)) {
+                        addDescriptorClasses(reader.readUtf8(descriptorIndex), classNames);
+                    }
+                }
+                case CONSTANT_METHOD_TYPE -> {
+                    int descriptorIndex = reader.readUnsignedShort(offset);
+                    if (reader.isUtf8(descriptorIndex)) {
+                        addDescriptorClasses(reader.readUtf8(descriptorIndex), classNames);
+                    }
+                }
+                default -> {
+                }
+            }
+        }
+    }
+
+    private static void addDescriptorClasses(String descriptor, Set<String> classNames) {
+        int i = 0;
+        while (i < descriptor.length()) {
+            if (descriptor.charAt(i) == 'L') {
+                int end = descriptor.indexOf(';', i);
+                if (end < 0) {
+                    return;
+                }
+                classNames.add(descriptor.substring(i + 1, end));
+                i = end + 1;
+            } else {
+                i++;
+            }
+        }
+    }
+
+    // walks the whole class file, checking that everything accept() reads is there, and finding the class attributes
+    private boolean check() {
+        try {
+            return doCheck();
+        } catch (ArrayIndexOutOfBoundsException e) {
+            // truncated
+            return false;
+        }
+    }
+
+    private boolean doCheck() {
+        int pos = readConstantPool();
+        if (pos < 0) {
+            return false;
+        }
+
+        headerStart = pos;
+        classAccess = readUnsignedShort(pos);
+        if (!isClass(readUnsignedShort(pos + 2))) {
+            return false;
+        }
+        int superIndex = readUnsignedShort(pos + 4);
+        if (superIndex != 0 && !isClass(superIndex)) {
+            return false;
+        }
+        int interfaceCount = readUnsignedShort(pos + 6);
+        pos += 8;
+        for (int i = 0; i < interfaceCount; i++, pos += 2) {
+            if (!isClass(readUnsignedShort(pos))) {
+                return false;
+            }
+        }
+
+        membersStart = pos;
+        // fields, then methods
+        for (int memberType = 0; memberType < 2; memberType++) {
+            int memberCount = readUnsignedShort(pos);
+            pos += 2;
+            for (int i = 0; i < memberCount; i++) {
+                if (!isUtf8(readUnsignedShort(pos + 2)) || !isUtf8(readUnsignedShort(pos + 4))) {
+                    return false;
+                }
+                pos = checkAttributes(pos + 6);
+                if (pos < 0) {
+                    return false;
+                }
+            }
+        }
+
+        int attributeCount = readUnsignedShort(pos);
+        pos += 2;
+        for (int i = 0; i < attributeCount; i++) {
+            int nameIndex = readUnsignedShort(pos);
+            int length = readInt(pos + 2);
+            int contents = pos + 6;
+            if (!isUtf8(nameIndex) || length < 0 || length > bytes.length - contents) {
+                return false;
+            }
+            // where an attribute appears more than once, ASM uses the last one
+            if (utf8Equals(nameIndex, DEPRECATED)) {
+                classAccess |= Opcodes.ACC_DEPRECATED;
+            } else if (utf8Equals(nameIndex, SYNTHETIC)) {
+                classAccess |= Opcodes.ACC_SYNTHETIC;
+            } else if (utf8Equals(nameIndex, RECORD)) {
+                classAccess |= Opcodes.ACC_RECORD;
+            } else if (utf8Equals(nameIndex, NEST_HOST)) {
+                if (!isClass(readUnsignedShort(contents))) {
+                    return false;
+                }
+                nestHostOffset = contents;
+            } else if (utf8Equals(nameIndex, NEST_MEMBERS)) {
+                if (!checkClassList(contents)) {
+                    return false;
+                }
+                nestMembersOffset = contents;
+            } else if (utf8Equals(nameIndex, PERMITTED_SUBCLASSES)) {
+                if (!checkClassList(contents)) {
+                    return false;
+                }
+                permittedSubclassesOffset = contents;
+            }
+            pos = contents + length;
+        }
+        return true;
+    }
+
+    // returns the position after the constant pool, or -1 if it's unusual. Class files newer than ASM can read are
+    // left to it, so that they fail the same way.
+    private int readConstantPool() {
+        if (readInt(0) != MAGIC || readUnsignedShort(6) > AsmUtil.LATEST_CLASS_VERSION) {
+            return -1;
+        }
+
+        int pos = 10;
+        for (int i = 1; i < constantOffsets.length; i++) {
+            constantOffsets[i] = pos + 1;
+            int size = switch (bytes[pos]) {
+                case CONSTANT_UTF8 -> 3 + readUnsignedShort(pos + 1);
+                case CONSTANT_INTEGER, CONSTANT_FLOAT, CONSTANT_FIELDREF, CONSTANT_METHODREF, CONSTANT_INTERFACE_METHODREF, CONSTANT_NAME_AND_TYPE, CONSTANT_DYNAMIC, CONSTANT_INVOKE_DYNAMIC -> 5;
+                case CONSTANT_LONG, CONSTANT_DOUBLE -> {
+                    // takes up two entries
+                    i++;
+                    yield 9;
+                }
+                case CONSTANT_CLASS, CONSTANT_STRING, CONSTANT_METHOD_TYPE, CONSTANT_MODULE, CONSTANT_PACKAGE -> 3;
+                case CONSTANT_METHOD_HANDLE -> 4;
+                default -> -1;
+            };
+            if (size < 0) {
+                return -1;
+            }
+            pos += size;
+            if (pos > bytes.length) {
+                return -1;
+            }
+        }
+        return pos;
+    }
+
+    // returns the position after the attributes, or -1 if they're invalid
+    private int checkAttributes(int pos) {
+        int attributeCount = readUnsignedShort(pos);
+        pos += 2;
+        for (int i = 0; i < attributeCount; i++) {
+            int length = readInt(pos + 2);
+            if (!isUtf8(readUnsignedShort(pos)) || length < 0 || length > bytes.length - pos - 6) {
+                return -1;
+            }
+            pos += 6 + length;
+        }
+        return pos;
+    }
+
+    private boolean checkClassList(int pos) {
+        int count = readUnsignedShort(pos);
+        for (int i = 0; i < count; i++) {
+            if (!isClass(readUnsignedShort(pos + 2 + 2 * i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private String accept(ClassVisitor visitor) {
+        int pos = headerStart;
+        String name = readClass(readUnsignedShort(pos + 2));
+        int superIndex = readUnsignedShort(pos + 4);
+        String[] interfaces = new String[readUnsignedShort(pos + 6)];
+        for (int i = 0; i < interfaces.length; i++) {
+            interfaces[i] = readClass(readUnsignedShort(pos + 8 + 2 * i));
+        }
+        visitor.visit(readUnsignedShort(4) << 16 | readUnsignedShort(6), classAccess, name, null, superIndex == 0 ? null : readClass(superIndex), interfaces);
+
+        // in the same order as ASM
+        if (nestHostOffset != 0) {
+            visitor.visitNestHost(readClass(readUnsignedShort(nestHostOffset)));
+        }
+        if (nestMembersOffset != 0) {
+            int count = readUnsignedShort(nestMembersOffset);
+            for (int i = 0; i < count; i++) {
+                visitor.visitNestMember(readClass(readUnsignedShort(nestMembersOffset + 2 + 2 * i)));
+            }
+        }
+        if (permittedSubclassesOffset != 0) {
+            int count = readUnsignedShort(permittedSubclassesOffset);
+            for (int i = 0; i < count; i++) {
+                visitor.visitPermittedSubclass(readClass(readUnsignedShort(permittedSubclassesOffset + 2 + 2 * i)));
+            }
+        }
+
+        pos = membersStart;
+        for (int memberType = 0; memberType < 2; memberType++) {
+            int memberCount = readUnsignedShort(pos);
+            pos += 2;
+            for (int i = 0; i < memberCount; i++) {
+                int access = readUnsignedShort(pos);
+                String memberName = readUtf8(readUnsignedShort(pos + 2));
+                String descriptor = readUtf8(readUnsignedShort(pos + 4));
+                int attributeCount = readUnsignedShort(pos + 6);
+                pos += 8;
+                for (int j = 0; j < attributeCount; j++) {
+                    int nameIndex = readUnsignedShort(pos);
+                    if (utf8Equals(nameIndex, DEPRECATED)) {
+                        access |= Opcodes.ACC_DEPRECATED;
+                    } else if (utf8Equals(nameIndex, SYNTHETIC)) {
+                        access |= Opcodes.ACC_SYNTHETIC;
+                    }
+                    pos += 6 + readInt(pos + 2);
+                }
+                if (memberType == 0) {
+                    visitor.visitField(access, memberName, descriptor, null, null);
+                } else {
+                    visitor.visitMethod(access, memberName, descriptor, null, null);
+                }
+            }
+        }
+
+        visitor.visitEnd();
+        return name;
+    }
+
+    private boolean isUtf8(int index) {
+        return index > 0 && index < constantOffsets.length && constantOffsets[index] != 0 && bytes[constantOffsets[index] - 1] == CONSTANT_UTF8;
+    }
+
+    private boolean isClass(int index) {
+        return index > 0 && index < constantOffsets.length && constantOffsets[index] != 0 && bytes[constantOffsets[index] - 1] == CONSTANT_CLASS && isUtf8(readUnsignedShort(constantOffsets[index]));
+    }
+
+    private boolean utf8Equals(int index, byte[] expected) {
+        int offset = constantOffsets[index];
+        if (readUnsignedShort(offset) != expected.length) {
+            return false;
+        }
+        for (int i = 0; i < expected.length; i++) {
+            if (bytes[offset + 2 + i] != expected[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private String readClass(int index) {
+        return readUtf8(readUnsignedShort(constantOffsets[index]));
+    }
+
+    private String readUtf8(int index) {
+        String value = utf8Cache[index];
+        if (value == null) {
+            value = utf8Cache[index] = decodeUtf8(constantOffsets[index] + 2, readUnsignedShort(constantOffsets[index]));
+        }
+        return value;
+    }
+
+    // decodes modified UTF-8 the same way as ASM, which in practice is almost always plain ASCII
+    private String decodeUtf8(int offset, int length) {
+        int end = offset + length;
+        for (int i = offset; i < end; i++) {
+            if (bytes[i] < 0) {
+                char[] chars = new char[length];
+                int charCount = 0;
+                int pos = offset;
+                while (pos < end) {
+                    int b = bytes[pos++];
+                    if ((b & 0x80) == 0) {
+                        chars[charCount++] = (char) (b & 0x7f);
+                    } else if ((b & 0xe0) == 0xc0) {
+                        chars[charCount++] = (char) (((b & 0x1f) << 6) + (bytes[pos++] & 0x3f));
+                    } else {
+                        chars[charCount++] = (char) (((b & 0xf) << 12) + ((bytes[pos++] & 0x3f) << 6) + (bytes[pos++] & 0x3f));
+                    }
+                }
+                return new String(chars, 0, charCount);
+            }
+        }
+        return new String(bytes, offset, length, StandardCharsets.ISO_8859_1);
+    }
+
+    private int readUnsignedShort(int offset) {
+        return readUnsignedShort(bytes, offset);
+    }
+
+    private static int readUnsignedShort(byte[] bytes, int offset) {
+        return (bytes[offset] & 0xff) << 8 | bytes[offset + 1] & 0xff;
+    }
+
+    private int readInt(int offset) {
+        return (bytes[offset] & 0xff) << 24 | (bytes[offset + 1] & 0xff) << 16 | (bytes[offset + 2] & 0xff) << 8 | bytes[offset + 3] & 0xff;
+    }
+
+    private static byte[] ascii(String name) {
+        return name.getBytes(StandardCharsets.US_ASCII);
+    }
+}
@@ -0,0 +1,185 @@
+package net.earthcomputer.modcompatchecker.indexer;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// The resolved ancestors of a class, flattened into lists so that hierarchy walks don't have to recurse through
+// Index.findClass and revisit interfaces shared by several parents. Ancestors which can't be resolved are left out of
+// the lists, exactly like the recursive walks skip them, and are recorded by hasMissingAncestors.
+//
+// When an index snapshot is built, the classes it was built from are numbered in pre-order and post-order over the tree
+// formed by their superclasses, so that a subclass check between two of them is two comparisons. Classes decoded
+// afterwards aren't numbered and are checked against the superclass chain instead.
+//
+// Hierarchies of JDK classes don't keep the class they were computed from, and look it up again in the JDK index
+// instead, so that they don't keep it in memory after it's evicted from the JDK class cache.
+public final class ClassHierarchy {
+    private final String name;
+    private final int packageId;
+    @Nullable
+    private final IResolvedClass resolvedClass;
+    @Nullable
+    private final JdkIndex jdk;
+    private final List<ClassHierarchy> superclassChain;
+    private final List<ClassHierarchy> superinterfaces;
+    private final List<ClassHierarchy> ancestors;
+    private final boolean missingAncestors;
+    private int preOrder = -1;
+    private int postOrder = -1;
+
+    /**
+     * Creates the hierarchy of a class, where {@code jdk} is the JDK index the class was found in, or {@code null} if it
+     * isn't a JDK class.
+     */
+    ClassHierarchy(String name, int packageId, IResolvedClass resolvedClass, @Nullable JdkIndex jdk, @Nullable ClassHierarchy superclass, List<ClassHierarchy> interfaces, boolean missingAncestors) {
+        this.name = name;
+        this.packageId = packageId;
+        this.resolvedClass = jdk == null ? resolvedClass : null;
+        this.jdk = jdk;
+
+        List<ClassHierarchy> superclassChain = new ArrayList<>();
+        superclassChain.add(this);
+        if (superclass != null) {
+            superclassChain.addAll(superclass.superclassChain);
+        }
+        this.superclassChain = List.copyOf(superclassChain);
+
+        // the order the interfaces of each class in the superclass chain are searched in during method resolution
+        Map<String, ClassHierarchy> superinterfaces = new LinkedHashMap<>();
+        for (ClassHierarchy itf : interfaces) {
+            addWithAll(superinterfaces, itf, itf.superinterfaces);
+        }
+        if (superclass != null) {
+            superclass.superinterfaces.forEach(itf -> superinterfaces.putIfAbsent(itf.name, itf));
+        }
+        this.superinterfaces = List.copyOf(superinterfaces.values());
+
+        // depth first, superclass before interfaces, in the order each ancestor is first reached
+        Map<String, ClassHierarchy> ancestors = new LinkedHashMap<>();
+        if (superclass != null) {
+            addWithAll(ancestors, superclass, superclass.ancestors);
+            missingAncestors |= superclass.missingAncestors;
+        }
+        for (ClassHierarchy itf : interfaces) {
+            addWithAll(ancestors, itf, itf.ancestors);
+            missingAncestors |= itf.missingAncestors;
+        }
+        this.ancestors = List.copyOf(ancestors.values());
+
+        this.missingAncestors = missingAncestors;
+    }
+
+    private static void addWithAll(Map<String, ClassHierarchy> map, ClassHierarchy hierarchy, List<ClassHierarchy> others) {
+        map.putIfAbsent(hierarchy.name, hierarchy);
+        for (ClassHierarchy other : others) {
+            map.putIfAbsent(other.name, other);
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Returns a number identifying the package of this class, which is the same for all classes in the same package of
+     * the same index.
+     */
+    public int getPackageId() {
+        return packageId;
+    }
+
+    public IResolvedClass getResolvedClass() {
+        if (resolvedClass != null) {
+            return resolvedClass;
+        }
+        ClassIndex jdkClass = jdk.findClass(name);
+        if (jdkClass == null) {
+            throw new IllegalStateException("JDK class " + name + " could no longer be found");
+        }
+        return jdkClass;
+    }
+
+    /**
+     * Returns this class followed by its superclasses, nearest first.
+     */
+    public List<ClassHierarchy> getSuperclassChain() {
+        return superclassChain;
+    }
+
+    /**
+     * Returns the transitive superinterfaces of this class without duplicates. The direct interfaces of each class in
+     * the superclass chain come before those of its superclass, and each interface is followed by its own
+     * superinterfaces.
+     */
+    public List<ClassHierarchy> getSuperinterfaces() {
+        return superinterfaces;
+    }
+
+    /**
+     * Returns all transitive superclasses and superinterfaces of this class without duplicates, in depth first
+     * pre-order where each class's superclass is visited before its interfaces.
+     */
+    public List<ClassHierarchy> getAncestors() {
+        return ancestors;
+    }
+
+    public boolean hasMissingAncestors() {
+        return missingAncestors;
+    }
+
+    public boolean isSubclassOf(String className) {
+        for (ClassHierarchy clazz : superclassChain) {
+            if (clazz.name.equals(className)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public boolean isSubclassOf(ClassHierarchy other) {
+        if (preOrder >= 0 && other.preOrder >= 0) {
+            return other.preOrder <= preOrder && postOrder <= other.postOrder;
+        }
+        return isSubclassOf(other.name);
+    }
+
+    public boolean isSamePackage(ClassHierarchy other) {
+        return packageId == other.packageId;
+    }
+
+    static void numberSubclassTree(Collection<ClassHierarchy> hierarchies) {
+        Map<ClassHierarchy, List<ClassHierarchy>> subclasses = new HashMap<>();
+        List<ClassHierarchy> roots = new ArrayList<>();
+        for (ClassHierarchy hierarchy : hierarchies) {
+            if (hierarchy.superclassChain.size() > 1) {
+                subclasses.computeIfAbsent(hierarchy.superclassChain.get(1), k -> new ArrayList<>()).add(hierarchy);
+            } else {
+                roots.add(hierarchy);
+            }
+        }
+
+        int[] counters = new int[2];
+        for (ClassHierarchy root : roots) {
+            root.number(subclasses, counters);
+        }
+    }
+
+    private void number(Map<ClassHierarchy, List<ClassHierarchy>> subclasses, int[] counters) {
+        preOrder = counters[0]++;
+        for (ClassHierarchy subclass : subclasses.getOrDefault(this, List.of())) {
+            subclass.number(subclasses, counters);
+        }
+        postOrder = counters[1]++;
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
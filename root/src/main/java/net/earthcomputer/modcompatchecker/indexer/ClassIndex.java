@@ -18,12 +18,23 @@ public final class ClassIndex implements IResolvedClass {
     private AccessFlags access;
     private final String superclass;
     private final List<String> interfaces;
-    private final Set<ClassMember> fields = new TreeSet<>();
-    private final Set<ClassMember> methods = new TreeSet<>();
+    // Members are collected in sorted sets while the class is being indexed, and then packed into member tables by
+    // finish(). Adding more members afterwards unpacks them again. While a class is being indexed, a table is only
+    // built when it's looked up, and is kept until another member is added, which sets it back to null.
+    @Nullable
+    private Set<ClassMember> fieldBuilder = new TreeSet<>();
+    @Nullable
+    private Set<ClassMember> methodBuilder = new TreeSet<>();
+    @Nullable
+    private MemberTable fieldTable = MemberTable.EMPTY;
+    @Nullable
+    private MemberTable methodTable = MemberTable.EMPTY;
     private final Set<String> permittedSubclasses = new TreeSet<>();
     @Nullable
     private String nestHost;
     private final Set<String> nestMembers = new TreeSet<>();
+    @Nullable
+    private String source;
 
     public ClassIndex(AccessFlags access, String superclass, List<String> interfaces) {
         this.access = access;
@@ -58,7 +69,20 @@ public final class ClassIndex implements IResolvedClass {
                 return;
             }
         }
-        fields.add(field);
+        putField(field);
+    }
+
+    void putField(ClassMember field) {
+        if (fieldBuilder().add(field)) {
+            fieldTable = null;
+        }
+    }
+
+    private Set<ClassMember> fieldBuilder() {
+        if (fieldBuilder == null) {
+            fieldBuilder = new TreeSet<>(fieldTable.asList());
+        }
+        return fieldBuilder;
     }
 
     public void addMethod(String className, AccessFlags access, String name, String descriptor) {
@@ -69,7 +93,28 @@ public final class ClassIndex implements IResolvedClass {
                 return;
             }
         }
-        methods.add(method);
+        putMethod(method);
+    }
+
+    void putMethod(ClassMember method) {
+        if (methodBuilder().add(method)) {
+            methodTable = null;
+        }
+    }
+
+    private Set<ClassMember> methodBuilder() {
+        if (methodBuilder == null) {
+            methodBuilder = new TreeSet<>(methodTable.asList());
+        }
+        return methodBuilder;
+    }
+
+    // called once all members have been added
+    void finish() {
+        getFieldTable();
+        fieldBuilder = null;
+        getMethodTable();
+        methodBuilder = null;
     }
 
     public void addPermittedSubclass(String className, String permittedSubclass) {
@@ -82,6 +127,10 @@ public final class ClassIndex implements IResolvedClass {
         permittedSubclasses.add(permittedSubclass);
     }
 
+    void putPermittedSubclass(String permittedSubclass) {
+        permittedSubclasses.add(permittedSubclass);
+    }
+
     public void setNestHost(@Nullable String nestHost) {
         this.nestHost = nestHost;
     }
@@ -92,12 +141,28 @@ public final class ClassIndex implements IResolvedClass {
 
     @Override
     public Collection<ClassMember> getFields() {
-        return fields;
+        return fieldBuilder != null ? fieldBuilder : fieldTable.asList();
+    }
+
+    @Override
+    public MemberTable getFieldTable() {
+        if (fieldTable == null) {
+            fieldTable = MemberTable.of(fieldBuilder);
+        }
+        return fieldTable;
     }
 
     @Override
     public Collection<ClassMember> getMethods() {
-        return methods;
+        return methodBuilder != null ? methodBuilder : methodTable.asList();
+    }
+
+    @Override
+    public MemberTable getMethodTable() {
+        if (methodTable == null) {
+            methodTable = MemberTable.of(methodBuilder);
+        }
+        return methodTable;
     }
 
     @Override
@@ -116,7 +181,20 @@ public final class ClassIndex implements IResolvedClass {
         return nestMembers;
     }
 
+    @Override
+    @Nullable
+    public String getSource() {
+        return source;
+    }
+
+    public void setSource(@Nullable String source) {
+        this.source = source;
+    }
+
     public void serialize(PrintWriter writer) {
+        if (source != null) {
+            writer.printf("  source %s\n", source);
+        }
         if (nestHost != null) {
             writer.printf("  nestHost %s\n", nestHost);
         }
@@ -126,15 +204,19 @@ public final class ClassIndex implements IResolvedClass {
         for (String permittedSubclass : permittedSubclasses) {
             writer.printf("  permits %s\n", permittedSubclass);
         }
-        for (ClassMember field : fields) {
+        for (ClassMember field : getFields()) {
             writer.printf("  field %s %s %s\n", field.access(), field.name(), field.descriptor());
         }
-        for (ClassMember method : methods) {
+        for (ClassMember method : getMethods()) {
             writer.printf("  method %s %s %s\n", method.access(), method.name(), method.descriptor());
         }
     }
 
     public void deserializeFrom(String className, BufferedReader reader) throws IOException {
+        deserializeFrom(className, reader, true, new SymbolTable());
+    }
+
+    void deserializeFrom(String className, BufferedReader reader, boolean runPlugins, SymbolTable symbols) throws IOException {
         while (true) {
             reader.mark(2);
             if (reader.read() != ' ') {
@@ -161,34 +243,54 @@ public final class ClassIndex implements IResolvedClass {
                         throw new IOException("Invalid access flags: " + parts[1]);
                     }
 
-                    String name = parts[2];
-                    String descriptor = parts[3];
+                    String name = symbols.intern(parts[2]);
+                    String descriptor = symbols.intern(parts[3]);
 
                     if ("field".equals(parts[0])) {
-                        addField(className, access, name, descriptor);
+                        if (runPlugins) {
+                            addField(className, access, name, descriptor);
+                        } else {
+                            putField(new ClassMember(access, name, descriptor));
+                        }
                     } else {
-                        addMethod(className, access, name, descriptor);
+                        if (runPlugins) {
+                            addMethod(className, access, name, descriptor);
+                        } else {
+                            putMethod(new ClassMember(access, name, descriptor));
+                        }
                     }
                 }
                 case "permits" -> {
                     if (parts.length < 2) {
                         throw new IOException("Invalid input line: Expected format - 'permits <subclass>'");
                     }
-                    addPermittedSubclass(className, parts[1]);
+                    String permittedSubclass = symbols.intern(parts[1]);
+                    if (runPlugins) {
+                        addPermittedSubclass(className, permittedSubclass);
+                    } else {
+                        putPermittedSubclass(permittedSubclass);
+                    }
+                }
+                case "source" -> {
+                    if (parts.length < 2) {
+                        throw new IOException("Invalid input line: Expected format - 'source <source>'");
+                    }
+                    // the source is a file name, which may contain spaces
+                    setSource(symbols.intern(line.trim().substring("source ".length())));
                 }
                 case "nestHost" -> {
                     if (parts.length < 2) {
                         throw new IOException("Invalid input line: Expected format - 'nestHost <host>'");
                     }
-                    setNestHost(parts[1]);
+                    setNestHost(symbols.intern(parts[1]));
                 }
                 case "nestMember" -> {
                     if (parts.length < 2) {
                         throw new IOException("Invalid input line: Expected format - 'nestMember <member>'");
                     }
-                    addNestMember(parts[1]);
+                    addNestMember(symbols.intern(parts[1]));
                 }
-                default -> throw new IOException("Invalid type: " + parts[0] + ". Expected field, method, permits, nestHost or nestMembers");
+                default -> throw new IOException("Invalid type: " + parts[0] + ". Expected field, method, permits, source, nestHost or nestMembers");
             }
         }
     }
@@ -7,15 +7,43 @@ import org.jetbrains.annotations.Nullable;
 import java.util.Collection;
 import java.util.List;
 
-public sealed interface IResolvedClass permits ClassIndex, ClasspathClass {
+public sealed interface IResolvedClass permits ClassIndex {
     AccessFlags getAccess();
     @Nullable
     String getSuperclass();
     List<String> getInterfaces();
     Collection<ClassMember> getFields();
+    MemberTable getFieldTable();
     Collection<ClassMember> getMethods();
+    MemberTable getMethodTable();
+
+    @Nullable
+    default ClassMember findField(String name, String descriptor) {
+        return getFieldTable().find(name, descriptor);
+    }
+
+    default List<ClassMember> findFieldsByName(String name) {
+        return getFieldTable().findByName(name);
+    }
+
+    @Nullable
+    default ClassMember findMethod(String name, String descriptor) {
+        return getMethodTable().find(name, descriptor);
+    }
+
+    default List<ClassMember> findMethodsByName(String name) {
+        return getMethodTable().findByName(name);
+    }
+
     Collection<String> getPermittedSubclasses();
     @Nullable
     String getNestHost();
     Collection<String> getNestMembers();
+
+    /**
+     * The jar or index that this class was bundled from, if it came from a bundle, so that problems involving it can be
+     * attributed to the library it came from.
+     */
+    @Nullable
+    String getSource();
 }
@@ -1,37 +1,71 @@
 package net.earthcomputer.modcompatchecker.indexer;
 
-import net.earthcomputer.modcompatchecker.config.Plugin;
-import net.earthcomputer.modcompatchecker.config.PluginLoader;
-import net.earthcomputer.modcompatchecker.util.AccessFlags;
+import net.earthcomputer.modcompatchecker.checker.VerdictCache;
 import net.earthcomputer.modcompatchecker.util.AsmUtil;
 import org.jetbrains.annotations.Nullable;
-import org.objectweb.asm.Type;
 
-import java.io.BufferedReader;
 import java.io.IOException;
-import java.io.PrintWriter;
+import java.io.UncheckedIOException;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
+// An immutable snapshot of the classes collected by an IndexBuilder, shared by all the checker threads. The classes
+// which were indexed up front, and the hierarchies of those classes, are held in maps which are never modified after
+// construction, so looking them up takes no locks or volatile reads. The final fields publish them safely to other
+// threads. Only classes decoded on demand from attached indexes and the JDK go through concurrent maps.
 public final class Index {
-    private final Map<String, ClassIndex> classes = new HashMap<>();
-    private final Map<String, ClasspathClass> classpathClassCache = new ConcurrentHashMap<>();
-
-    @Nullable
-    public ClassIndex addClass(String name, AccessFlags access, String superclass, List<String> interfaces) {
-        ClassIndex classIndex = new ClassIndex(access, superclass, interfaces);
-        for (Plugin plugin : PluginLoader.plugins()) {
-            classIndex = plugin.onIndexClass(this, name, classIndex);
-            if (classIndex == null) {
-                return null;
-            }
+    private final Map<String, ClassIndex> classes;
+    private final List<AttachedIndex> attachedIndexes;
+    private final SymbolTable symbols;
+    private final JdkIndex jdk;
+    private final Map<String, ClassIndex> decodedClasses = new ConcurrentHashMap<>();
+    // names which weren't found in this index, its attached indexes or the JDK, so that lookups of classes which have
+    // been removed don't probe each of them again
+    private final Set<String> missingClasses = ConcurrentHashMap.newKeySet();
+    // names which weren't found in the attached indexes, mostly JDK classes, so that each lookup of them doesn't probe
+    // every attached index again on its way to the JDK
+    private final Set<String> notAttachedClasses = ConcurrentHashMap.newKeySet();
+    private final Map<String, ClassHierarchy> hierarchies;
+    private final Map<String, ClassHierarchy> decodedHierarchies = new ConcurrentHashMap<>();
+    private final Map<String, Integer> packageIds = new ConcurrentHashMap<>();
+    private final AtomicInteger nextPackageId = new AtomicInteger();
+    private final ResolutionCache resolutionCache = new ResolutionCache();
+    private final VerdictCache verdictCache = new VerdictCache();
+
+    Index(Map<String, ClassIndex> classes, List<AttachedIndex> attachedIndexes, SymbolTable symbols, JdkIndex jdk) {
+        this.classes = classes;
+        this.attachedIndexes = attachedIndexes;
+        this.symbols = symbols;
+        this.jdk = jdk;
+
+        // Compute the hierarchies of the classes indexed up front and their ancestors, and number them for fast subclass
+        // checks. Those of classes decoded later are computed on the first lookup.
+        this.hierarchies = new HashMap<>();
+        for (String name : classes.keySet()) {
+            computeHierarchy(name, hierarchies);
         }
-        classes.put(name, classIndex);
-        return classIndex;
+        ClassHierarchy.numberSubclassTree(hierarchies.values());
+    }
+
+    public SymbolTable getSymbols() {
+        return symbols;
+    }
+
+    public ResolutionCache getResolutionCache() {
+        return resolutionCache;
+    }
+
+    public VerdictCache getVerdictCache() {
+        return verdictCache;
+    }
+
+    public JdkIndex getJdk() {
+        return jdk;
     }
 
     @Nullable
@@ -41,78 +75,110 @@ public final class Index {
         }
 
         if (AsmUtil.OBJECT.equals(name)) {
-            return ClasspathClass.OBJECT;
+            return jdk.findClass(name);
         }
 
         ClassIndex classIndex = classes.get(name);
         if (classIndex != null) {
             return classIndex;
         }
-
-        ClasspathClass classpathClass = classpathClassCache.get(name);
-        if (classpathClass != null) {
-            return classpathClass;
+        classIndex = decodedClasses.get(name);
+        if (classIndex != null) {
+            return classIndex;
+        }
+        if (missingClasses.contains(name)) {
+            return null;
         }
 
-        try {
-            Class<?> classpathCls = Class.forName(Type.getObjectType(name).getClassName(), false, ClassLoader.getPlatformClassLoader());
-            if (classpathClassCache.size() >= 200) {
-                // periodically clear the cache to stop it getting out of hand
-                classpathClassCache.clear();
+        if (!notAttachedClasses.contains(name)) {
+            classIndex = findAttachedClass(name);
+            if (classIndex != null) {
+                return classIndex;
+            }
+            if (!attachedIndexes.isEmpty()) {
+                notAttachedClasses.add(name);
             }
-            classpathClass = new ClasspathClass(classpathCls);
-            classpathClassCache.put(name, classpathClass);
-            return classpathClass;
-        } catch (ClassNotFoundException e) {
-            return null;
         }
-    }
 
-    public void serialize(PrintWriter writer) {
-        var entries = new ArrayList<>(classes.entrySet());
-        entries.sort(Map.Entry.comparingByKey());
-        for (var entry : entries) {
-            ClassIndex clazz = entry.getValue();
-            writer.printf("class %s %s %s%s%s\n", clazz.getAccess(), entry.getKey(), clazz.getSuperclass(), clazz.getInterfaces().isEmpty() ? "" : " ", String.join(" ", clazz.getInterfaces()));
-            clazz.serialize(writer);
+        classIndex = jdk.findClass(name);
+        if (classIndex == null) {
+            missingClasses.add(name);
         }
+        return classIndex;
     }
 
-    public void deserializeFrom(BufferedReader reader) throws IOException {
-        String line;
-        while ((line = reader.readLine()) != null) {
-            String[] parts = line.split(" ");
-            if (parts.length < 4) {
-                throw new IOException("Incomplete line: " + line);
-            }
-
-            String classType = parts[0];
-            if (!"class".equals(classType)) {
-                throw new IOException("Invalid line start: " + line);
+    @Nullable
+    private ClassIndex findAttachedClass(String name) {
+        for (int i = attachedIndexes.size() - 1; i >= 0; i--) {
+            ClassIndex classIndex;
+            try {
+                classIndex = attachedIndexes.get(i).findClass(name);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
             }
-
-            String key = parts[2];
-            String superclass = parts[3];
-            List<String> interfaces = new ArrayList<>(Arrays.asList(parts).subList(4, parts.length));
-
-            AccessFlags access = AccessFlags.parse(parts[1]);
-            if (access == null) {
-                throw new IOException("Invalid access flags: " + parts[1]);
+            if (classIndex != null) {
+                ClassIndex existing = decodedClasses.putIfAbsent(name, classIndex);
+                return existing != null ? existing : classIndex;
             }
+        }
+        return null;
+    }
 
-            ClassIndex classIndex = new ClassIndex(access, superclass, interfaces);
+    /**
+     * Returns the resolved ancestors of the given class, or {@code null} if the class can't be found. The hierarchy of
+     * each class is only computed once.
+     */
+    @Nullable
+    public ClassHierarchy getHierarchy(@Nullable String name) {
+        if (name == null) {
+            return null;
+        }
+        ClassHierarchy hierarchy = hierarchies.get(name);
+        if (hierarchy != null) {
+            return hierarchy;
+        }
+        return computeHierarchy(name, decodedHierarchies);
+    }
 
-            for (Plugin plugin : PluginLoader.plugins()) {
-                classIndex = plugin.onIndexClass(this, key, classIndex);
-                if (classIndex == null) {
-                    break;
-                }
+    @Nullable
+    private ClassHierarchy computeHierarchy(@Nullable String name, Map<String, ClassHierarchy> computed) {
+        if (name == null) {
+            return null;
+        }
+        // not computeIfAbsent, which doesn't allow the recursive computation of the ancestors
+        ClassHierarchy hierarchy = computed.get(name);
+        if (hierarchy != null) {
+            return hierarchy;
+        }
+        if (computed != hierarchies) {
+            hierarchy = hierarchies.get(name);
+            if (hierarchy != null) {
+                return hierarchy;
             }
+        }
+        IResolvedClass resolvedClass = findClass(name);
+        if (resolvedClass == null) {
+            return null;
+        }
 
-            if (classIndex != null) {
-                classIndex.deserializeFrom(key, reader);
-                classes.put(key, classIndex);
+        String superName = resolvedClass.getSuperclass();
+        ClassHierarchy superclass = computeHierarchy(superName, computed);
+        boolean missingAncestors = superName != null && superclass == null;
+        List<ClassHierarchy> interfaces = new ArrayList<>(resolvedClass.getInterfaces().size());
+        for (String itf : resolvedClass.getInterfaces()) {
+            ClassHierarchy itfHierarchy = computeHierarchy(itf, computed);
+            if (itfHierarchy != null) {
+                interfaces.add(itfHierarchy);
+            } else {
+                missingAncestors = true;
             }
         }
+
+        int packageId = packageIds.computeIfAbsent(AsmUtil.getPackageName(name), k -> nextPackageId.getAndIncrement());
+        // anything not from this index or its attached indexes came from the JDK
+        boolean jdkClass = resolvedClass != classes.get(name) && resolvedClass != decodedClasses.get(name);
+        hierarchy = new ClassHierarchy(name, packageId, resolvedClass, jdkClass ? jdk : null, superclass, interfaces, missingAncestors);
+        ClassHierarchy existing = computed.putIfAbsent(name, hierarchy);
+        return existing != null ? existing : hierarchy;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,214 @@
+package net.earthcomputer.modcompatchecker.indexer;
+
+import net.earthcomputer.modcompatchecker.config.Plugin;
+import net.earthcomputer.modcompatchecker.config.PluginLoader;
+import net.earthcomputer.modcompatchecker.util.AccessFlags;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintWriter;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+// Collects the classes of libraries and mods while they're being indexed. Classes may be added from several threads at
+// once. Once everything is indexed, build() takes an immutable snapshot for the checker to look classes up in.
+public final class IndexBuilder {
+    private final Map<String, ClassIndex> classes = new ConcurrentHashMap<>();
+    private final List<AttachedIndex> attachedIndexes = new CopyOnWriteArrayList<>();
+    private final SymbolTable symbols;
+    private volatile JdkIndex jdk = JdkIndex.runtime();
+
+    public IndexBuilder() {
+        this(new SymbolTable());
+    }
+
+    // for indexes whose classes will end up in another index
+    IndexBuilder(SymbolTable symbols) {
+        this.symbols = symbols;
+    }
+
+    public SymbolTable getSymbols() {
+        return symbols;
+    }
+
+    @Nullable
+    public ClassIndex addClass(String name, AccessFlags access, String superclass, List<String> interfaces) {
+        ClassIndex classIndex = createClass(name, access, superclass, interfaces);
+        if (classIndex != null) {
+            classes.put(name, classIndex);
+        }
+        return classIndex;
+    }
+
+    @Nullable
+    static ClassIndex createClass(String name, AccessFlags access, @Nullable String superclass, List<String> interfaces) {
+        ClassIndex classIndex = new ClassIndex(access, superclass, interfaces);
+        for (Plugin plugin : PluginLoader.plugins()) {
+            classIndex = plugin.onIndexClass(name, classIndex);
+            if (classIndex == null) {
+                return null;
+            }
+        }
+        return classIndex;
+    }
+
+    void putClass(String name, ClassIndex classIndex) {
+        classes.put(name, classIndex);
+    }
+
+    @Nullable
+    ClassIndex getIndexedClass(String name) {
+        return classes.get(name);
+    }
+
+    // looks the class up in the attached indexes, without adding it to this index
+    @Nullable
+    ClassIndex findAttachedClass(String name) throws IOException {
+        for (int i = attachedIndexes.size() - 1; i >= 0; i--) {
+            ClassIndex classIndex = attachedIndexes.get(i).findClass(name);
+            if (classIndex != null) {
+                return classIndex;
+            }
+        }
+        return null;
+    }
+
+    void putClasses(IndexBuilder other) {
+        classes.putAll(other.classes);
+    }
+
+    /**
+     * Adds everything in the other index as if it had been added to this one instead. Any classes in the other index
+     * which are also in one of its attached indexes were added after it was attached, so still take precedence here.
+     */
+    public void putAll(IndexBuilder other) throws IOException {
+        for (AttachedIndex reader : other.attachedIndexes) {
+            attach(reader);
+        }
+        classes.putAll(other.classes);
+    }
+
+    /**
+     * Returns a new builder with everything in this one, which can then have more classes added to it without affecting
+     * this one.
+     */
+    public IndexBuilder copy() throws IOException {
+        IndexBuilder copy = new IndexBuilder(symbols);
+        copy.putAll(this);
+        copy.jdk = jdk;
+        return copy;
+    }
+
+    void putBundledClasses(IndexBuilder other, String source) {
+        other.classes.forEach((name, classIndex) -> {
+            // keep the original source of classes from a bundle which is itself being bundled
+            if (classIndex.getSource() == null) {
+                classIndex.setSource(source);
+            }
+            classes.put(name, classIndex);
+        });
+    }
+
+    /**
+     * Makes the classes in the given binary index available to the built index, without reading them up front.
+     * Each class is decoded the first time it is looked up. Classes in the attached index take precedence over
+     * classes already in this index, and are in turn overridden by classes added to this index afterwards. Attached
+     * classes are not written out by {@link #serialize} or {@link #serializeBinary}.
+     */
+    public void attachBinary(ByteBuffer buffer) throws IOException {
+        attach(BinaryIndexReader.open(buffer, symbols));
+    }
+
+    void attach(AttachedIndex reader) throws IOException {
+        for (var itr = classes.keySet().iterator(); itr.hasNext(); ) {
+            if (reader.containsClass(itr.next())) {
+                itr.remove();
+            }
+        }
+        attachedIndexes.add(reader);
+    }
+
+    /**
+     * Sets where classes that aren't in this index are looked up from. Defaults to the JDK the checker is running on.
+     */
+    public void setJdk(JdkIndex jdk) {
+        this.jdk = jdk;
+    }
+
+    /**
+     * Takes a snapshot of the classes added so far, which can be shared between threads. Adding classes to this builder
+     * afterwards doesn't affect the snapshot.
+     */
+    public Index build() {
+        return new Index(Map.copyOf(classes), List.copyOf(attachedIndexes), symbols, jdk);
+    }
+
+    private List<Map.Entry<String, ClassIndex>> sortedClasses() {
+        var entries = new ArrayList<>(classes.entrySet());
+        entries.sort(Map.Entry.comparingByKey());
+        return entries;
+    }
+
+    public void serialize(PrintWriter writer) {
+        for (var entry : sortedClasses()) {
+            ClassIndex clazz = entry.getValue();
+            writer.printf("class %s %s %s%s%s\n", clazz.getAccess(), entry.getKey(), clazz.getSuperclass(), clazz.getInterfaces().isEmpty() ? "" : " ", String.join(" ", clazz.getInterfaces()));
+            clazz.serialize(writer);
+        }
+    }
+
+    public void deserializeFrom(BufferedReader reader) throws IOException {
+        deserializeFrom(reader, true);
+    }
+
+    void deserializeFrom(BufferedReader reader, boolean runPlugins) throws IOException {
+        String line;
+        while ((line = reader.readLine()) != null) {
+            String[] parts = line.split(" ");
+            if (parts.length < 4) {
+                throw new IOException("Incomplete line: " + line);
+            }
+
+            String classType = parts[0];
+            if (!"class".equals(classType)) {
+                throw new IOException("Invalid line start: " + line);
+            }
+
+            String key = symbols.intern(parts[2]);
+            String superclass = symbols.intern(parts[3]);
+            List<String> interfaces = symbols.internAll(Arrays.asList(parts).subList(4, parts.length));
+
+            AccessFlags access = AccessFlags.parse(parts[1]);
+            if (access == null) {
+                throw new IOException("Invalid access flags: " + parts[1]);
+            }
+
+            ClassIndex classIndex = runPlugins ? createClass(key, access, superclass, interfaces) : new ClassIndex(access, superclass, interfaces);
+
+            if (classIndex != null) {
+                classIndex.deserializeFrom(key, reader, runPlugins, symbols);
+                classIndex.finish();
+                classes.put(key, classIndex);
+            }
+        }
+    }
+
+    public void serializeBinary(OutputStream output) throws IOException {
+        BinaryIndexWriter.write(sortedClasses(), output);
+    }
+
+    public void deserializeBinaryFrom(ByteBuffer buffer) throws IOException {
+        deserializeBinaryFrom(buffer, true);
+    }
+
+    void deserializeBinaryFrom(ByteBuffer buffer, boolean runPlugins) throws IOException {
+        (runPlugins ? BinaryIndexReader.open(buffer, symbols) : BinaryIndexReader.openRaw(buffer, symbols)).readAll(this);
+    }
+}
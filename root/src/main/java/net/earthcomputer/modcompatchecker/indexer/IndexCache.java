@@ -0,0 +1,208 @@
+package net.earthcomputer.modcompatchecker.indexer;
+
+import net.earthcomputer.modcompatchecker.config.Config;
+import net.earthcomputer.modcompatchecker.config.Plugin;
+import net.earthcomputer.modcompatchecker.config.PluginLoader;
+import net.earthcomputer.modcompatchecker.util.JarSession;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.URISyntaxException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.CodeSource;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HexFormat;
+import java.util.concurrent.Executor;
+
+// A directory of binary indexes of library jars, named after a hash of everything that affects the indexed result: the
+// jar contents, the plugins that are loaded, and whatever state each plugin reports in Plugin.getIndexCacheKey. Cached
+// indexes contain the classes as they were after the plugins processed them, so they are loaded without running the
+// plugins again.
+//
+// The directory may be shared between processes. Entries are written to a temporary file first and then atomically
+// renamed into place, so readers only ever see complete entries. Two processes indexing the same jar at once both
+// write the same contents, and whichever rename happens last wins. No locks are taken, so nothing is left behind if a
+// process dies, other than a temporary file which is cleaned up by a later run.
+public final class IndexCache {
+    private static final int CACHE_VERSION = 1;
+    private static final String ENTRY_EXTENSION = ".idx";
+    private static final String TEMP_EXTENSION = ".tmp";
+    private static final Duration STALE_TEMP_FILE_AGE = Duration.ofDays(1);
+
+    private final Path directory;
+
+    public IndexCache(Path directory) throws IOException {
+        this.directory = directory;
+        Files.createDirectories(directory);
+        deleteStaleTempFiles();
+    }
+
+    public void indexJar(Path jarFile, Config config, IndexBuilder outIndex) throws IOException {
+        try (JarSession jar = JarSession.open(jarFile)) {
+            indexJar(jar, config, outIndex, Runnable::run);
+        }
+    }
+
+    public void indexJar(JarSession jar, Config config, IndexBuilder outIndex, Executor executor) throws IOException {
+        String key = computeKey(jar, config);
+        Path entry = directory.resolve(key + ENTRY_EXTENSION);
+
+        BinaryIndexReader cached = tryOpen(entry, outIndex.getSymbols());
+        if (cached != null) {
+            outIndex.attach(cached);
+            return;
+        }
+
+        IndexBuilder index = new IndexBuilder(outIndex.getSymbols());
+        Indexer.indexJar(jar, index, executor);
+        publish(entry, index);
+        outIndex.putClasses(index);
+    }
+
+    // Indexing the whole JDK up front takes a few seconds, but only needs doing once per JDK. After that, JDK classes are
+    // decoded from the cached index rather than parsed from class files.
+    public JdkIndex indexJdk(JdkIndex jdk) throws IOException {
+        MessageDigest digest = sha256();
+        updateString(digest, "ModCompatChecker JDK index cache v" + CACHE_VERSION + "." + BinaryIndexFormat.VERSION);
+        updateString(digest, getCodeVersion(IndexCache.class));
+        updateString(digest, jdk.getDescription());
+        Path entry = directory.resolve(HexFormat.of().formatHex(digest.digest()) + ENTRY_EXTENSION);
+
+        BinaryIndexReader cached = tryOpen(entry, jdk.getSymbols());
+        if (cached == null) {
+            IndexBuilder index = new IndexBuilder(jdk.getSymbols());
+            jdk.indexAll(index);
+            publish(entry, index);
+            cached = tryOpen(entry, jdk.getSymbols());
+            if (cached == null) {
+                return jdk;
+            }
+        }
+        return jdk.withPrebuiltIndex(cached);
+    }
+
+    @Nullable
+    private static BinaryIndexReader tryOpen(Path entry, SymbolTable symbols) {
+        ByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(entry)) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException e) {
+            System.err.println("Failed to read cached index " + entry + ": " + e);
+            return null;
+        }
+        try {
+            return BinaryIndexReader.openRaw(buffer, symbols);
+        } catch (IOException e) {
+            // a corrupt entry is overwritten by the freshly indexed one
+            System.err.println("Ignoring invalid cached index " + entry + ": " + e);
+            return null;
+        }
+    }
+
+    private void publish(Path entry, IndexBuilder index) throws IOException {
+        Path tempFile = Files.createTempFile(directory, entry.getFileName().toString(), TEMP_EXTENSION);
+        try {
+            try (OutputStream output = new BufferedOutputStream(Files.newOutputStream(tempFile))) {
+                index.serializeBinary(output);
+            }
+            try {
+                Files.move(tempFile, entry, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                // never publish a partially written entry, just go without caching instead
+                System.err.println("Cache directory " + directory + " does not support atomic moves, not caching index");
+            }
+        } finally {
+            Files.deleteIfExists(tempFile);
+        }
+    }
+
+    private void deleteStaleTempFiles() throws IOException {
+        Instant staleBefore = Instant.now().minus(STALE_TEMP_FILE_AGE);
+        try (DirectoryStream<Path> tempFiles = Files.newDirectoryStream(directory, "*" + TEMP_EXTENSION)) {
+            for (Path tempFile : tempFiles) {
+                try {
+                    if (Files.getLastModifiedTime(tempFile).toInstant().isBefore(staleBefore)) {
+                        Files.deleteIfExists(tempFile);
+                    }
+                } catch (NoSuchFileException ignore) {
+                    // another process got there first
+                }
+            }
+        }
+    }
+
+    private static String computeKey(JarSession jar, Config config) {
+        MessageDigest digest = sha256();
+        updateString(digest, "ModCompatChecker index cache v" + CACHE_VERSION + "." + BinaryIndexFormat.VERSION);
+        updateString(digest, computeEnvironmentKey(config));
+        digest.update(jar.getContents());
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    // identifies everything other than the jar itself that affects the classes in the index of a jar
+    static String computeEnvironmentKey(Config config) {
+        MessageDigest digest = sha256();
+        updateString(digest, getCodeVersion(IndexCache.class));
+        for (Plugin plugin : PluginLoader.plugins()) {
+            updateString(digest, plugin.id());
+            updateString(digest, getCodeVersion(plugin.getClass()));
+            updateString(digest, plugin.getIndexCacheKey(config));
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    private static void updateString(MessageDigest digest, String str) {
+        byte[] bytes = str.getBytes(StandardCharsets.UTF_8);
+        digest.update(ByteBuffer.allocate(Integer.BYTES).putInt(bytes.length).flip());
+        digest.update(bytes);
+    }
+
+    // Release builds carry a version in their manifest. Otherwise fall back to the modification time of the jar or
+    // class file the code was loaded from, so that rebuilding a plugin during development invalidates the cache.
+    private static String getCodeVersion(Class<?> clazz) {
+        String version = clazz.getPackage().getImplementationVersion();
+        if (version != null) {
+            return version;
+        }
+
+        CodeSource codeSource = clazz.getProtectionDomain().getCodeSource();
+        if (codeSource == null || codeSource.getLocation() == null) {
+            return "unknown";
+        }
+        try {
+            Path location = Path.of(codeSource.getLocation().toURI());
+            if (Files.isDirectory(location)) {
+                location = location.resolve(clazz.getName().replace('.', '/') + ".class");
+            }
+            return location + "@" + Files.getLastModifiedTime(location).toMillis();
+        } catch (URISyntaxException | IllegalArgumentException e) {
+            return codeSource.getLocation().toString();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
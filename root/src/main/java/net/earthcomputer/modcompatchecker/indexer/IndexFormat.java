@@ -0,0 +1,86 @@
+package net.earthcomputer.modcompatchecker.indexer;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintWriter;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+public enum IndexFormat {
+    TEXT {
+        @Override
+        public void write(IndexBuilder index, Path path) throws IOException {
+            try (BufferedWriter writer = Files.newBufferedWriter(path)) {
+                PrintWriter pw = new PrintWriter(writer);
+                index.serialize(pw);
+                if (pw.checkError()) {
+                    throw new IOException("Error writing text index");
+                }
+            }
+        }
+
+        @Override
+        void read(IndexBuilder index, Path path, boolean runPlugins) throws IOException {
+            try (BufferedReader reader = Files.newBufferedReader(path)) {
+                index.deserializeFrom(reader, runPlugins);
+            }
+        }
+    },
+    BINARY {
+        @Override
+        public void write(IndexBuilder index, Path path) throws IOException {
+            try (OutputStream output = new BufferedOutputStream(Files.newOutputStream(path))) {
+                index.serializeBinary(output);
+            }
+        }
+
+        @Override
+        void read(IndexBuilder index, Path path, boolean runPlugins) throws IOException {
+            index.deserializeBinaryFrom(map(path), runPlugins);
+        }
+
+        @Override
+        public void load(IndexBuilder index, Path path) throws IOException {
+            index.attachBinary(map(path));
+        }
+    },
+    ;
+
+    public abstract void write(IndexBuilder index, Path path) throws IOException;
+
+    public void read(IndexBuilder index, Path path) throws IOException {
+        read(index, path, true);
+    }
+
+    // Plugins have already processed the classes in an index file by the time it's written. Reading without running
+    // them again gives back exactly what was written.
+    abstract void read(IndexBuilder index, Path path, boolean runPlugins) throws IOException;
+
+    /**
+     * Makes the classes in the given index file available to the given index for checking. Unlike {@link #read}, this
+     * may defer decoding each class until it is first looked up.
+     */
+    public void load(IndexBuilder index, Path path) throws IOException {
+        read(index, path);
+    }
+
+    private static ByteBuffer map(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path)) {
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+    }
+
+    public static IndexFormat detect(Path path) throws IOException {
+        try (InputStream input = Files.newInputStream(path)) {
+            byte[] magic = input.readNBytes(BinaryIndexFormat.MAGIC.length);
+            return Arrays.equals(magic, BinaryIndexFormat.MAGIC) ? BINARY : TEXT;
+        }
+    }
+}
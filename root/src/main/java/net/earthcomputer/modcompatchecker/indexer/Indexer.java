@@ -1,28 +1,356 @@
 package net.earthcomputer.modcompatchecker.indexer;
 
-import org.objectweb.asm.ClassReader;
+import net.earthcomputer.modcompatchecker.config.Config;
+import net.earthcomputer.modcompatchecker.config.Plugin;
+import net.earthcomputer.modcompatchecker.config.PluginLoader;
+import net.earthcomputer.modcompatchecker.util.JarSession;
+import org.jetbrains.annotations.Nullable;
 
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.nio.file.Path;
-import java.util.Enumeration;
-import java.util.jar.JarEntry;
-import java.util.jar.JarFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
 
 public final class Indexer {
+    // the number of jar entries each task parses, large enough to make up for the cost of merging the results
+    private static final int CHUNK_SIZE = 64;
+
     private Indexer() {
     }
 
-    public static void indexJar(Path jarFile, Index outIndex) throws IOException {
-        try (JarFile jar = new JarFile(jarFile.toFile())) {
-            Enumeration<JarEntry> entries = jar.entries();
+    public static void indexJar(Path jarFile, IndexBuilder outIndex) throws IOException {
+        indexJar(jarFile, outIndex, Runnable::run);
+    }
+
+    /**
+     * Indexes the given jar, parsing its class files on the given executor. The result is the same as indexing the
+     * entries one by one.
+     */
+    public static void indexJar(Path jarFile, IndexBuilder outIndex, Executor executor) throws IOException {
+        try (JarSession jar = JarSession.open(jarFile)) {
+            indexJar(jar, outIndex, executor);
+        }
+    }
+
+    public static void indexJar(JarSession jar, IndexBuilder outIndex, Executor executor) throws IOException {
+        indexEntries(classEntries(jar), outIndex, executor, (entry, index) -> parseClass(jar, entry, index));
+    }
+
+    /**
+     * Makes the classes of the given jar available to the index without reading any of them up front. Each class is
+     * parsed from the jar the first time it's looked up in an index built from the output index. The jar must stay open
+     * for as long as the index is used.
+     */
+    public static void indexJarOnDemand(JarSession jar, IndexBuilder outIndex) throws IOException {
+        outIndex.attach(new OnDemandJarIndex(jar, outIndex.getSymbols()));
+    }
+
+    /**
+     * Adds the classes which the given mods refer to, and their supertypes, permitted subclasses and nest hosts, from the
+     * indexes attached to the given index to the index itself. This parses the classes a check of the mods is going to
+     * look up from jars which are indexed on demand in parallel up front, rather than one at a time during the check.
+     */
+    public static void indexReferencedClasses(List<JarSession> modJars, IndexBuilder outIndex, Executor executor) throws IOException {
+        List<CompletableFuture<Set<String>>> scans = new ArrayList<>();
+        for (JarSession modJar : modJars) {
+            List<JarSession.Entry> entries = classEntries(modJar);
+            for (int start = 0; start < entries.size(); start += CHUNK_SIZE) {
+                List<JarSession.Entry> chunk = entries.subList(start, Math.min(start + CHUNK_SIZE, entries.size()));
+                scans.add(CompletableFuture.supplyAsync(() -> {
+                    Set<String> classNames = new HashSet<>();
+                    try {
+                        for (JarSession.Entry entry : chunk) {
+                            ClassHeaderReader.addReferencedClasses(modJar.getBytes(entry), classNames);
+                        }
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                    return classNames;
+                }, executor));
+            }
+        }
+        Set<String> seen = new HashSet<>();
+        List<String> level = new ArrayList<>();
+        for (CompletableFuture<Set<String>> scan : scans) {
+            for (String className : join(scan)) {
+                if (seen.add(className)) {
+                    level.add(className);
+                }
+            }
+        }
+
+        // a level at a time, so that each level's classes are parsed in parallel
+        while (!level.isEmpty()) {
+            List<CompletableFuture<ClassIndex>> lookups = new ArrayList<>(level.size());
+            for (String className : level) {
+                ClassIndex classIndex = outIndex.getIndexedClass(className);
+                lookups.add(classIndex != null ? CompletableFuture.completedFuture(classIndex) : CompletableFuture.supplyAsync(() -> {
+                    try {
+                        return outIndex.findAttachedClass(className);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }, executor));
+            }
+            List<String> nextLevel = new ArrayList<>();
+            for (int i = 0; i < level.size(); i++) {
+                ClassIndex classIndex = join(lookups.get(i));
+                if (classIndex == null) {
+                    // from the JDK, or missing
+                    continue;
+                }
+                if (outIndex.getIndexedClass(level.get(i)) == null) {
+                    outIndex.putClass(level.get(i), classIndex);
+                }
+                List<String> related = new ArrayList<>(classIndex.getInterfaces());
+                related.add(classIndex.getSuperclass());
+                related.addAll(classIndex.getPermittedSubclasses());
+                related.add(classIndex.getNestHost());
+                for (String relatedClass : related) {
+                    if (relatedClass != null && seen.add(relatedClass)) {
+                        nextLevel.add(relatedClass);
+                    }
+                }
+            }
+            level = nextLevel;
+        }
+    }
+
+    /**
+     * Returns the jars nested in the given jar, as reported by the plugins, and the jars nested in those, followed by the
+     * given jar itself. Each jar comes after the jars nested in it, so that its own classes take precedence over theirs.
+     */
+    public static List<JarSession> withNestedJars(JarSession jar) throws IOException {
+        List<JarSession> result = new ArrayList<>();
+        addWithNestedJars(jar, result);
+        return result;
+    }
+
+    private static void addWithNestedJars(JarSession jar, List<JarSession> result) throws IOException {
+        for (Plugin plugin : PluginLoader.plugins()) {
+            for (String nestedJarName : plugin.getNestedJars(jar)) {
+                JarSession.Entry entry = jar.getEntry(nestedJarName);
+                if (entry == null) {
+                    throw new IOException("Could not find nested jar \"" + nestedJarName + "\" in " + jar);
+                }
+                addWithNestedJars(jar.openNested(entry), result);
+            }
+        }
+        result.add(jar);
+    }
+
+    /**
+     * Indexes each of the given sources into a separate index on the given executor, and then adds them to the output
+     * index in order, so that where several sources contain the same class, the last one wins.
+     */
+    public static void indexAll(List<Source> sources, IndexBuilder outIndex, Executor executor) throws IOException {
+        for (CompletableFuture<IndexBuilder> result : indexSeparately(sources, outIndex.getSymbols(), executor)) {
+            outIndex.putAll(join(result));
+        }
+    }
+
+    /**
+     * Indexes the given jar, copying classes across from a previous index of an older version of the jar where the jar
+     * entry they came from is unchanged. The previous index is only used if its {@link JarManifest} sidecar exists and
+     * it was indexed with the same plugins and plugin state. Returns the manifest to write next to the new index.
+     */
+    public static JarManifest indexJarIncrementally(Path jarFile, Config config, IndexBuilder outIndex, @Nullable Path previousIndexPath) throws IOException {
+        try (JarSession jar = JarSession.open(jarFile)) {
+            return indexJarIncrementally(jar, config, outIndex, previousIndexPath, Runnable::run);
+        }
+    }
+
+    public static JarManifest indexJarIncrementally(JarSession jar, Config config, IndexBuilder outIndex, @Nullable Path previousIndexPath, Executor executor) throws IOException {
+        String environmentKey = IndexCache.computeEnvironmentKey(config);
+
+        JarManifest previousManifest = previousIndexPath == null ? null : JarManifest.read(JarManifest.sidecarPath(previousIndexPath));
+        IndexBuilder previousIndex = new IndexBuilder(outIndex.getSymbols());
+        if (previousManifest != null && previousManifest.getEnvironmentKey().equals(environmentKey)) {
+            IndexFormat.detect(previousIndexPath).read(previousIndex, previousIndexPath, false);
+        }
+        return indexJarIncrementally(jar, environmentKey, outIndex, previousManifest, previousIndex, executor);
+    }
+
+    /**
+     * Indexes the given jar, copying classes across from a previous index of an older version of the jar which is still
+     * in memory, such as when a mod is re-indexed after being rebuilt. The previous index must only contain the classes
+     * of the previous version of the jar.
+     */
+    public static JarManifest indexJarIncrementally(JarSession jar, Config config, IndexBuilder outIndex, @Nullable JarManifest previousManifest, IndexBuilder previousIndex, Executor executor) throws IOException {
+        return indexJarIncrementally(jar, IndexCache.computeEnvironmentKey(config), outIndex, previousManifest, previousIndex, executor);
+    }
+
+    private static JarManifest indexJarIncrementally(JarSession jar, String environmentKey, IndexBuilder outIndex, @Nullable JarManifest previousManifest, IndexBuilder previousIndex, Executor executor) throws IOException {
+        Map<String, JarManifest.Entry> previousEntries = Map.of();
+        if (previousManifest != null && previousManifest.getEnvironmentKey().equals(environmentKey)) {
+            previousEntries = previousManifest.getEntries();
+        }
+
+        // if several entries define the same class, the last one is what ended up in the index
+        Map<String, String> previousOwners = new HashMap<>();
+        previousEntries.forEach((entryName, entry) -> previousOwners.put(entry.className(), entryName));
 
-            while (entries.hasMoreElements()) {
-                JarEntry entry = entries.nextElement();
-                if (entry.getName().endsWith(".class")) {
-                    ClassReader reader = new ClassReader(jar.getInputStream(entry));
-                    reader.accept(new IndexerClassVisitor(outIndex), ClassReader.SKIP_CODE);
+        Map<String, JarManifest.Entry> reusableEntries = previousEntries;
+        List<JarSession.Entry> jarEntries = classEntries(jar);
+        List<String> classNames = indexEntries(jarEntries, outIndex, executor, (entry, index) -> {
+            JarManifest.Entry previousEntry = reusableEntries.get(entry.getName());
+            if (previousEntry != null
+                && entry.getCrc() == previousEntry.crc()
+                && entry.getSize() == previousEntry.size()
+                && entry.getName().equals(previousOwners.get(previousEntry.className()))
+            ) {
+                // may be missing if a plugin removed the class when it was indexed
+                ClassIndex classIndex = previousIndex.getIndexedClass(previousEntry.className());
+                if (classIndex != null) {
+                    index.putClass(previousEntry.className(), classIndex);
                 }
+                return previousEntry.className();
+            }
+            return parseClass(jar, entry, index);
+        });
+        Map<String, JarManifest.Entry> entries = new LinkedHashMap<>();
+        for (int i = 0; i < jarEntries.size(); i++) {
+            JarSession.Entry entry = jarEntries.get(i);
+            entries.put(entry.getName(), new JarManifest.Entry(entry.getCrc(), entry.getSize(), classNames.get(i)));
+        }
+
+        return new JarManifest(environmentKey, entries);
+    }
+
+    /**
+     * Merges the given jars and index files into a single index, recording the file name of the input that each class
+     * came from as its {@link ClassIndex#getSource() source}. Where several inputs contain the same class, the last one
+     * wins, just like when they're checked against as separate libraries.
+     */
+    public static void bundle(List<Path> inputs, IndexBuilder outIndex) throws IOException {
+        bundle(inputs, outIndex, Runnable::run);
+    }
+
+    public static void bundle(List<Path> inputs, IndexBuilder outIndex, Executor executor) throws IOException {
+        bundle(inputs, Map.of(), outIndex, executor);
+    }
+
+    /**
+     * Like {@link #bundle(List, IndexBuilder, Executor)}, but the jar inputs found in the given map are indexed from the
+     * sessions there, which are the jar and the jars nested in it as returned by {@link #withNestedJars}, rather than
+     * being opened again. Those sessions are left open.
+     */
+    public static void bundle(List<Path> inputs, Map<Path, List<JarSession>> openJars, IndexBuilder outIndex, Executor executor) throws IOException {
+        List<Source> sources = new ArrayList<>(inputs.size());
+        for (Path input : inputs) {
+            List<JarSession> jars = openJars.get(input);
+            if (jars != null) {
+                sources.add(index -> {
+                    for (JarSession jar : jars) {
+                        indexJar(jar, index, executor);
+                    }
+                });
+            } else if (input.toString().endsWith(".jar")) {
+                sources.add(index -> {
+                    try (JarSession jar = JarSession.open(input)) {
+                        for (JarSession nestedJar : withNestedJars(jar)) {
+                            indexJar(nestedJar, index, executor);
+                        }
+                    }
+                });
+            } else {
+                sources.add(index -> IndexFormat.detect(input).read(index, input, false));
             }
         }
+        List<CompletableFuture<IndexBuilder>> results = indexSeparately(sources, outIndex.getSymbols(), executor);
+        for (int i = 0; i < inputs.size(); i++) {
+            outIndex.putBundledClasses(join(results.get(i)), inputs.get(i).getFileName().toString());
+        }
+    }
+
+    private static List<CompletableFuture<IndexBuilder>> indexSeparately(List<Source> sources, SymbolTable symbols, Executor executor) {
+        List<CompletableFuture<IndexBuilder>> results = new ArrayList<>(sources.size());
+        for (Source source : sources) {
+            results.add(CompletableFuture.supplyAsync(() -> {
+                IndexBuilder index = new IndexBuilder(symbols);
+                try {
+                    source.index(index);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                return index;
+            }, executor));
+        }
+        return results;
+    }
+
+    private static List<JarSession.Entry> classEntries(JarSession jar) {
+        List<JarSession.Entry> entries = new ArrayList<>();
+        for (JarSession.Entry entry : jar.getEntries()) {
+            if (entry.getName().endsWith(".class")) {
+                entries.add(entry);
+            }
+        }
+        return entries;
+    }
+
+    private static String parseClass(JarSession jar, JarSession.Entry entry, IndexBuilder index) throws IOException {
+        return ClassHeaderReader.accept(jar.getBytes(entry), new IndexerClassVisitor(index));
+    }
+
+    // Indexes the given entries in chunks on the executor, each chunk into its own index, and then adds the chunks to the
+    // output index in order. Where several entries define the same class, the last one wins, just like when the entries
+    // are indexed one by one. Returns the name of the class defined by each entry.
+    private static List<String> indexEntries(List<JarSession.Entry> entries, IndexBuilder outIndex, Executor executor, EntryIndexer entryIndexer) throws IOException {
+        String[] classNames = new String[entries.size()];
+        List<CompletableFuture<IndexBuilder>> chunks = new ArrayList<>();
+        for (int start = 0; start < entries.size(); start += CHUNK_SIZE) {
+            int chunkStart = start;
+            int chunkEnd = Math.min(start + CHUNK_SIZE, entries.size());
+            chunks.add(CompletableFuture.supplyAsync(() -> {
+                IndexBuilder chunk = new IndexBuilder(outIndex.getSymbols());
+                try {
+                    for (int i = chunkStart; i < chunkEnd; i++) {
+                        classNames[i] = entryIndexer.index(entries.get(i), chunk);
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                return chunk;
+            }, executor));
+        }
+        for (CompletableFuture<IndexBuilder> chunk : chunks) {
+            outIndex.putClasses(join(chunk));
+        }
+        return Arrays.asList(classNames);
+    }
+
+    private static <T> T join(CompletableFuture<T> future) throws IOException {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof UncheckedIOException e1) {
+                throw e1.getCause();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Something to index, such as a jar or an index file.
+     */
+    @FunctionalInterface
+    public interface Source {
+        void index(IndexBuilder outIndex) throws IOException;
+    }
+
+    @FunctionalInterface
+    private interface EntryIndexer {
+        String index(JarSession.Entry entry, IndexBuilder index) throws IOException;
     }
 }
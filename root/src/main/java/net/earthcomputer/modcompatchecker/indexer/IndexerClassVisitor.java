@@ -2,35 +2,57 @@ package net.earthcomputer.modcompatchecker.indexer;
 
 import net.earthcomputer.modcompatchecker.util.AccessFlags;
 import net.earthcomputer.modcompatchecker.util.AsmUtil;
+import net.earthcomputer.modcompatchecker.util.ClassMember;
 import org.jetbrains.annotations.Nullable;
 import org.objectweb.asm.ClassVisitor;
 import org.objectweb.asm.FieldVisitor;
 import org.objectweb.asm.MethodVisitor;
 
-import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 
 public final class IndexerClassVisitor extends ClassVisitor {
-    private final Index index;
+    private final IndexBuilder index;
+    private final boolean runPlugins;
+    private final SymbolTable symbols;
     private String className;
     @Nullable
     private ClassIndex classIndex;
 
-    public IndexerClassVisitor(Index index) {
+    public IndexerClassVisitor(IndexBuilder index) {
+        this(index, true);
+    }
+
+    IndexerClassVisitor(IndexBuilder index, boolean runPlugins) {
         super(AsmUtil.API);
         this.index = index;
+        this.runPlugins = runPlugins;
+        this.symbols = index.getSymbols();
     }
 
     @Override
     public void visit(int version, int access, String name, String signature, String superName, String[] interfaces) {
-        className = name;
-        classIndex = index.addClass(name, new AccessFlags(access), superName, new ArrayList<>(Arrays.asList(interfaces)));
+        className = symbols.intern(name);
+        superName = symbols.internNullable(superName);
+        List<String> interfaceList = symbols.internAll(Arrays.asList(interfaces));
+        if (runPlugins) {
+            classIndex = index.addClass(className, new AccessFlags(access), superName, interfaceList);
+        } else {
+            classIndex = new ClassIndex(new AccessFlags(access), superName, interfaceList);
+            index.putClass(className, classIndex);
+        }
     }
 
     @Override
     public FieldVisitor visitField(int access, String name, String descriptor, String signature, Object value) {
         if (classIndex != null) {
-            classIndex.addField(className, new AccessFlags(access), name, descriptor);
+            name = symbols.intern(name);
+            descriptor = symbols.intern(descriptor);
+            if (runPlugins) {
+                classIndex.addField(className, new AccessFlags(access), name, descriptor);
+            } else {
+                classIndex.putField(new ClassMember(new AccessFlags(access), name, descriptor));
+            }
         }
         return null;
     }
@@ -38,7 +60,13 @@ public final class IndexerClassVisitor extends ClassVisitor {
     @Override
     public MethodVisitor visitMethod(int access, String name, String descriptor, String signature, String[] exceptions) {
         if (classIndex != null) {
-            classIndex.addMethod(className, new AccessFlags(access), name, descriptor);
+            name = symbols.intern(name);
+            descriptor = symbols.intern(descriptor);
+            if (runPlugins) {
+                classIndex.addMethod(className, new AccessFlags(access), name, descriptor);
+            } else {
+                classIndex.putMethod(new ClassMember(new AccessFlags(access), name, descriptor));
+            }
         }
         return null;
     }
@@ -46,21 +74,33 @@ public final class IndexerClassVisitor extends ClassVisitor {
     @Override
     public void visitPermittedSubclass(String permittedSubclass) {
         if (classIndex != null) {
-            classIndex.addPermittedSubclass(className, permittedSubclass);
+            permittedSubclass = symbols.intern(permittedSubclass);
+            if (runPlugins) {
+                classIndex.addPermittedSubclass(className, permittedSubclass);
+            } else {
+                classIndex.putPermittedSubclass(permittedSubclass);
+            }
         }
     }
 
     @Override
     public void visitNestHost(String nestHost) {
         if (classIndex != null) {
-            classIndex.setNestHost(nestHost);
+            classIndex.setNestHost(symbols.intern(nestHost));
         }
     }
 
     @Override
     public void visitNestMember(String nestMember) {
         if (classIndex != null) {
-            classIndex.addNestMember(nestMember);
+            classIndex.addNestMember(symbols.intern(nestMember));
+        }
+    }
+
+    @Override
+    public void visitEnd() {
+        if (classIndex != null) {
+            classIndex.finish();
         }
     }
 }
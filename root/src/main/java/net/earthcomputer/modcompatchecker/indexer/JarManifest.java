@@ -0,0 +1,128 @@
+package net.earthcomputer.modcompatchecker.indexer;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+// The sidecar written next to an index of a jar, recording which class each jar entry contained along with the CRC and
+// size of the entry, so that a later re-index of a newer version of the jar only needs to parse the entries that have
+// changed.
+public final class JarManifest {
+    private static final String SIDECAR_EXTENSION = ".entries";
+
+    private final String environmentKey;
+    private final Map<String, Entry> entries;
+
+    JarManifest(String environmentKey, Map<String, Entry> entries) {
+        this.environmentKey = environmentKey;
+        this.entries = entries;
+    }
+
+    public static Path sidecarPath(Path indexPath) {
+        return indexPath.resolveSibling(indexPath.getFileName() + SIDECAR_EXTENSION);
+    }
+
+    String getEnvironmentKey() {
+        return environmentKey;
+    }
+
+    // in jar order
+    Map<String, Entry> getEntries() {
+        return Collections.unmodifiableMap(entries);
+    }
+
+    /**
+     * Returns the name of each class in the jar, mapped to the name of the entry it was indexed from. Where several
+     * entries define the same class, the last one is the one which ended up in the index.
+     */
+    public Map<String, String> getClassEntries() {
+        Map<String, String> classEntries = new LinkedHashMap<>();
+        entries.forEach((entryName, entry) -> classEntries.put(entry.className, entryName));
+        return classEntries;
+    }
+
+    /**
+     * Returns the names of the classes which may have been indexed differently in this version of the jar than in the
+     * given previous version, including classes which were added or removed. If the previous version was indexed with
+     * different plugins or plugin state, that's all of the classes in either version.
+     */
+    public Set<String> getChangedClasses(@Nullable JarManifest previous) {
+        Set<String> changedClasses = new HashSet<>();
+        if (previous == null || !previous.environmentKey.equals(environmentKey)) {
+            entries.values().forEach(entry -> changedClasses.add(entry.className));
+            if (previous != null) {
+                previous.entries.values().forEach(entry -> changedClasses.add(entry.className));
+            }
+            return changedClasses;
+        }
+
+        Map<String, String> classEntries = getClassEntries();
+        Map<String, String> previousClassEntries = previous.getClassEntries();
+        classEntries.forEach((className, entryName) -> {
+            if (!entries.get(entryName).equals(previous.entries.get(previousClassEntries.get(className)))) {
+                changedClasses.add(className);
+            }
+        });
+        previousClassEntries.forEach((className, entryName) -> {
+            if (!classEntries.containsKey(className)) {
+                changedClasses.add(className);
+            }
+        });
+        return changedClasses;
+    }
+
+    public void write(Path path) throws IOException {
+        try (BufferedWriter writer = Files.newBufferedWriter(path)) {
+            PrintWriter pw = new PrintWriter(writer);
+            pw.printf("env %s\n", environmentKey);
+            entries.forEach((entryName, entry) -> pw.printf("%x %d %s %s\n", entry.crc, entry.size, entry.className, entryName));
+            if (pw.checkError()) {
+                throw new IOException("Error writing jar manifest");
+            }
+        }
+    }
+
+    @Nullable
+    public static JarManifest read(Path path) throws IOException {
+        if (!Files.exists(path)) {
+            return null;
+        }
+
+        try (BufferedReader reader = Files.newBufferedReader(path)) {
+            String header = reader.readLine();
+            if (header == null || !header.startsWith("env ")) {
+                throw new IOException("Invalid jar manifest header: " + header);
+            }
+            String environmentKey = header.substring("env ".length());
+
+            Map<String, Entry> entries = new LinkedHashMap<>();
+            String line;
+            while ((line = reader.readLine()) != null) {
+                // the entry name goes last as it's the only part which may contain spaces
+                String[] parts = line.split(" ", 4);
+                if (parts.length != 4) {
+                    throw new IOException("Invalid jar manifest line: " + line);
+                }
+                try {
+                    entries.put(parts[3], new Entry(Long.parseUnsignedLong(parts[0], 16), Long.parseLong(parts[1]), parts[2]));
+                } catch (NumberFormatException e) {
+                    throw new IOException("Invalid jar manifest line: " + line, e);
+                }
+            }
+            return new JarManifest(environmentKey, entries);
+        }
+    }
+
+    record Entry(long crc, long size, String className) {
+    }
+}
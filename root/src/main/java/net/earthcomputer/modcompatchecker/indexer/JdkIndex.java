@@ -0,0 +1,239 @@
+package net.earthcomputer.modcompatchecker.indexer;
+
+import net.earthcomputer.modcompatchecker.util.BoundedCache;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+// Resolves JDK classes, i.e. classes which aren't in any library. Class files are read from the jrt:/ file system of the
+// running JDK, or from its ct.sym for other releases, and are indexed the same way as library classes except that
+// plugins don't see them. Each class is indexed the first time it's looked up, unless a prebuilt index of the whole JDK
+// is available from an IndexCache. Indexed classes are kept in a bounded cache, and indexed again if they are needed
+// after being evicted.
+public final class JdkIndex {
+    public static final int DEFAULT_CACHE_CAPACITY = 4096;
+    private static final String CLASS_EXTENSION = ".class";
+    private static final String SIG_EXTENSION = ".sig";
+
+    private final String description;
+    private final PackageLoader packageLoader;
+    private final String extension;
+    @Nullable
+    private volatile Map<String, List<Path>> packages;
+    private final SymbolTable symbols;
+    @Nullable
+    private final BinaryIndexReader prebuiltIndex;
+    private final BoundedCache<String, ClassIndex> classes;
+
+    private JdkIndex(String description, PackageLoader packageLoader, String extension, SymbolTable symbols, @Nullable BinaryIndexReader prebuiltIndex, int cacheCapacity) {
+        this.description = description;
+        this.packageLoader = packageLoader;
+        this.extension = extension;
+        this.symbols = symbols;
+        this.prebuiltIndex = prebuiltIndex;
+        this.classes = new BoundedCache<>(cacheCapacity);
+    }
+
+    public static JdkIndex runtime() {
+        return RuntimeHolder.INSTANCE;
+    }
+
+    public static JdkIndex forRelease(int release) throws IOException {
+        int currentRelease = Runtime.version().feature();
+        if (release == currentRelease) {
+            return runtime();
+        }
+        if (release > currentRelease) {
+            throw new IOException("Cannot target Java " + release + " when running on Java " + currentRelease);
+        }
+
+        Path ctSym = Path.of(System.getProperty("java.home"), "lib", "ct.sym");
+        if (!Files.exists(ctSym)) {
+            throw new IOException("Cannot target Java " + release + " as this JDK has no ct.sym");
+        }
+        FileSystem fs = FileSystems.newFileSystem(ctSym);
+        // ct.sym has a top level directory for each distinct version of a class, named after the releases it's in
+        char releaseChar = Character.toUpperCase(Character.forDigit(release, Character.MAX_RADIX));
+        List<Path> releaseDirs = new ArrayList<>();
+        try (DirectoryStream<Path> dirs = Files.newDirectoryStream(fs.getPath("/"))) {
+            for (Path dir : dirs) {
+                if (Files.isDirectory(dir) && dir.getFileName().toString().replace("/", "").indexOf(releaseChar) >= 0) {
+                    releaseDirs.add(dir);
+                }
+            }
+        }
+        if (releaseDirs.isEmpty()) {
+            throw new IOException("Java " + release + " is not supported by ct.sym of this JDK");
+        }
+
+        String description = "ct.sym " + System.getProperty("java.home") + " " + Runtime.version() + " release " + release;
+        return new JdkIndex(description, () -> loadCtSymPackages(releaseDirs), SIG_EXTENSION, new SymbolTable(), null, DEFAULT_CACHE_CAPACITY);
+    }
+
+    String getDescription() {
+        return description;
+    }
+
+    SymbolTable getSymbols() {
+        return symbols;
+    }
+
+    JdkIndex withPrebuiltIndex(BinaryIndexReader prebuiltIndex) {
+        return new JdkIndex(description, packageLoader, extension, symbols, prebuiltIndex, classes.capacity());
+    }
+
+    /**
+     * Returns a copy of this JDK index which caches at most the given number of indexed classes.
+     */
+    public JdkIndex withCacheCapacity(int cacheCapacity) {
+        return new JdkIndex(description, packageLoader, extension, symbols, prebuiltIndex, cacheCapacity);
+    }
+
+    public BoundedCache<String, ClassIndex> getClassCache() {
+        return classes;
+    }
+
+    /**
+     * Returns the JDK class with the given name, or {@code null} if there is none. Names which aren't found are looked
+     * up again each time, since the {@link Index} remembers the classes that are missing altogether.
+     */
+    @Nullable
+    public ClassIndex findClass(String name) {
+        ClassIndex classIndex = classes.get(name);
+        if (classIndex != null) {
+            return classIndex;
+        }
+        try {
+            classIndex = prebuiltIndex != null ? prebuiltIndex.findClass(name) : readClass(name);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        if (classIndex == null) {
+            return null;
+        }
+        return classes.putIfAbsent(name, classIndex);
+    }
+
+    @Nullable
+    private ClassIndex readClass(String name) throws IOException {
+        int slashIndex = name.lastIndexOf('/');
+        List<Path> dirs = getPackages().get(slashIndex == -1 ? "" : name.substring(0, slashIndex));
+        if (dirs == null) {
+            return null;
+        }
+        for (Path dir : dirs) {
+            byte[] bytes;
+            try {
+                bytes = Files.readAllBytes(dir.resolve(name.substring(slashIndex + 1) + extension));
+            } catch (NoSuchFileException | InvalidPathException e) {
+                continue;
+            }
+            IndexBuilder index = new IndexBuilder(symbols);
+            ClassHeaderReader.accept(bytes, new IndexerClassVisitor(index, false));
+            return index.getIndexedClass(name);
+        }
+        return null;
+    }
+
+    void indexAll(IndexBuilder outIndex) throws IOException {
+        for (List<Path> dirs : getPackages().values()) {
+            for (Path dir : dirs) {
+                try (Stream<Path> files = Files.list(dir)) {
+                    for (Path file : (Iterable<Path>) files::iterator) {
+                        String fileName = file.getFileName().toString();
+                        if (fileName.endsWith(extension) && !fileName.startsWith("module-info.")) {
+                            ClassHeaderReader.accept(Files.readAllBytes(file), new IndexerClassVisitor(outIndex, false));
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    private Map<String, List<Path>> getPackages() throws IOException {
+        Map<String, List<Path>> packages = this.packages;
+        if (packages == null) {
+            synchronized (this) {
+                packages = this.packages;
+                if (packages == null) {
+                    this.packages = packages = packageLoader.load();
+                }
+            }
+        }
+        return packages;
+    }
+
+    private static Map<String, List<Path>> loadJrtPackages() throws IOException {
+        FileSystem fs = FileSystems.getFileSystem(URI.create("jrt:/"));
+        Map<String, List<Path>> packages = new HashMap<>();
+        // jrt:/packages/<package>/<module> links each package to the modules containing it
+        try (DirectoryStream<Path> packageDirs = Files.newDirectoryStream(fs.getPath("/packages"))) {
+            for (Path packageDir : packageDirs) {
+                String packageName = packageDir.getFileName().toString().replace('.', '/');
+                try (DirectoryStream<Path> modules = Files.newDirectoryStream(packageDir)) {
+                    for (Path module : modules) {
+                        Path dir = fs.getPath("/modules", module.getFileName().toString()).resolve(packageName);
+                        packages.computeIfAbsent(packageName, k -> new ArrayList<>(1)).add(dir);
+                    }
+                }
+            }
+        }
+        return packages;
+    }
+
+    private static Map<String, List<Path>> loadCtSymPackages(List<Path> releaseDirs) throws IOException {
+        Map<String, List<Path>> packages = new HashMap<>();
+        // the layout is <releases>/<module>/<package>/<class>.sig
+        for (Path releaseDir : releaseDirs) {
+            try (DirectoryStream<Path> modules = Files.newDirectoryStream(releaseDir)) {
+                for (Path module : modules) {
+                    if (!Files.isDirectory(module)) {
+                        continue;
+                    }
+                    try (Stream<Path> dirs = Files.walk(module)) {
+                        for (Path dir : (Iterable<Path>) dirs::iterator) {
+                            if (!dir.equals(module) && Files.isDirectory(dir)) {
+                                String packageName = module.relativize(dir).toString().replace("\\", "/");
+                                if (packageName.endsWith("/")) {
+                                    packageName = packageName.substring(0, packageName.length() - 1);
+                                }
+                                packages.computeIfAbsent(packageName, k -> new ArrayList<>(1)).add(dir);
+                            }
+                        }
+                    }
+                }
+            }
+        }
+        return packages;
+    }
+
+    @FunctionalInterface
+    private interface PackageLoader {
+        Map<String, List<Path>> load() throws IOException;
+    }
+
+    private static final class RuntimeHolder {
+        static final JdkIndex INSTANCE = new JdkIndex(
+            "jrt " + System.getProperty("java.home") + " " + Runtime.version(),
+            JdkIndex::loadJrtPackages,
+            CLASS_EXTENSION,
+            new SymbolTable(),
+            null,
+            DEFAULT_CACHE_CAPACITY
+        );
+    }
+}
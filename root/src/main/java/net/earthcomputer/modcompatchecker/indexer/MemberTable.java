@@ -0,0 +1,169 @@
+package net.earthcomputer.modcompatchecker.indexer;
+
+import net.earthcomputer.modcompatchecker.util.AccessFlags;
+import net.earthcomputer.modcompatchecker.util.ClassMember;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.AbstractList;
+import java.util.Collection;
+import java.util.List;
+
+// The fields or methods of a class, packed into parallel arrays sorted by name and then descriptor, the same order as
+// ClassMember.compareTo. A member costs an int and two references to (interned) strings, rather than the tree node,
+// ClassMember and AccessFlags objects it would otherwise take. Accessing members by index avoids allocating anything.
+public final class MemberTable {
+    static final MemberTable EMPTY = new MemberTable(new int[0], new String[0], new String[0]);
+    // below this size, a linear scan is faster than hashing
+    private static final int MIN_HASHED_SIZE = 8;
+
+    private final int[] access;
+    private final String[] names;
+    private final String[] descriptors;
+    // Open addressing hash table from each name to one plus the index of the first member with that name, or 0 for an
+    // empty slot. Members with the same name are adjacent, since they're sorted by name. Built up front like the rest of
+    // the table, so that lookups from the checker threads don't need a volatile read. Null for small tables.
+    @Nullable
+    private final int[] nameSlots;
+
+    private MemberTable(int[] access, String[] names, String[] descriptors) {
+        this.access = access;
+        this.names = names;
+        this.descriptors = descriptors;
+        this.nameSlots = names.length < MIN_HASHED_SIZE ? null : buildNameSlots(names);
+    }
+
+    // the members must already be sorted
+    static MemberTable of(Collection<ClassMember> members) {
+        if (members.isEmpty()) {
+            return EMPTY;
+        }
+        int[] access = new int[members.size()];
+        String[] names = new String[members.size()];
+        String[] descriptors = new String[members.size()];
+        int i = 0;
+        for (ClassMember member : members) {
+            access[i] = member.access().toAsm();
+            names[i] = member.name();
+            descriptors[i] = member.descriptor();
+            i++;
+        }
+        return new MemberTable(access, names, descriptors);
+    }
+
+    public int size() {
+        return names.length;
+    }
+
+    public int access(int index) {
+        return access[index];
+    }
+
+    public String name(int index) {
+        return names[index];
+    }
+
+    public String descriptor(int index) {
+        return descriptors[index];
+    }
+
+    /**
+     * Returns the index of the member with the given name and descriptor, or -1 if there is no such member.
+     */
+    public int indexOf(String name, String descriptor) {
+        int index = indexOfName(name);
+        if (index < 0) {
+            return -1;
+        }
+        for (; index < names.length && names[index].equals(name); index++) {
+            if (descriptors[index].equals(descriptor)) {
+                return index;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the index of the first member with the given name, or -1 if there is no such member. Any other members
+     * with the same name immediately follow it.
+     */
+    public int indexOfName(String name) {
+        int[] slots = nameSlots;
+        if (slots == null) {
+            for (int i = 0; i < names.length; i++) {
+                if (names[i].equals(name)) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        int mask = slots.length - 1;
+        for (int slot = hash(name) & mask; ; slot = (slot + 1) & mask) {
+            int entry = slots[slot];
+            if (entry == 0) {
+                return -1;
+            }
+            if (names[entry - 1].equals(name)) {
+                return entry - 1;
+            }
+        }
+    }
+
+    private static int[] buildNameSlots(String[] names) {
+        // a power of two at least twice the number of members, so the table is at most half full
+        int[] slots = new int[Integer.highestOneBit(names.length * 2 - 1) << 1];
+        int mask = slots.length - 1;
+        for (int i = 0; i < names.length; i++) {
+            if (i > 0 && names[i].equals(names[i - 1])) {
+                continue;
+            }
+            int slot = hash(names[i]) & mask;
+            while (slots[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            slots[slot] = i + 1;
+        }
+        return slots;
+    }
+
+    private static int hash(String name) {
+        int hash = name.hashCode();
+        return hash ^ (hash >>> 16);
+    }
+
+    @Nullable
+    public ClassMember find(String name, String descriptor) {
+        int index = indexOf(name, descriptor);
+        return index < 0 ? null : get(index);
+    }
+
+    public List<ClassMember> findByName(String name) {
+        int start = indexOfName(name);
+        if (start < 0) {
+            return List.of();
+        }
+        int end = start + 1;
+        while (end < names.length && names[end].equals(name)) {
+            end++;
+        }
+        return asList().subList(start, end);
+    }
+
+    public ClassMember get(int index) {
+        return new ClassMember(new AccessFlags(access[index]), names[index], descriptors[index]);
+    }
+
+    public List<ClassMember> asList() {
+        return new AbstractList<>() {
+            @Override
+            public ClassMember get(int index) {
+                return MemberTable.this.get(index);
+            }
+
+            @Override
+            public int size() {
+                return MemberTable.this.size();
+            }
+        };
+    }
+}
@@ -0,0 +1,35 @@
+package net.earthcomputer.modcompatchecker.indexer;
+
+import net.earthcomputer.modcompatchecker.util.JarSession;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+
+// A library jar whose classes are each parsed the first time they're looked up, by going straight to the jar entry for
+// the class through the central directory. Classes stored under a path which doesn't match their name aren't found.
+final class OnDemandJarIndex implements AttachedIndex {
+    private final JarSession jar;
+    private final SymbolTable symbols;
+
+    OnDemandJarIndex(JarSession jar, SymbolTable symbols) {
+        this.jar = jar;
+        this.symbols = symbols;
+    }
+
+    @Override
+    public boolean containsClass(String className) {
+        return jar.getEntry(className + ".class") != null;
+    }
+
+    @Override
+    @Nullable
+    public ClassIndex findClass(String className) throws IOException {
+        JarSession.Entry entry = jar.getEntry(className + ".class");
+        if (entry == null) {
+            return null;
+        }
+        IndexBuilder index = new IndexBuilder(symbols);
+        ClassHeaderReader.accept(jar.getBytes(entry), new IndexerClassVisitor(index));
+        return index.getIndexedClass(className);
+    }
+}
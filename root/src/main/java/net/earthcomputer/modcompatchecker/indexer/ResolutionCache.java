@@ -0,0 +1,101 @@
+package net.earthcomputer.modcompatchecker.indexer;
+
+import net.earthcomputer.modcompatchecker.util.OwnedClassMember;
+import net.earthcomputer.modcompatchecker.util.UnimplementedMethodChecker;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+// Memoized field and method resolution results, including failed resolutions, and the methods a class may leave
+// unimplemented given its parents, for an index snapshot. Since a snapshot never changes, neither can the result of
+// resolving a member in it.
+//
+// Results are computed outside of the maps rather than with computeIfAbsent, so that a slow resolution doesn't block
+// other threads resolving unrelated members. Two threads may occasionally resolve the same member at once, in which
+// case they get equal results and only one is kept.
+public final class ResolutionCache {
+    private final Map<MemberRef, Optional<OwnedClassMember>> fields = new ConcurrentHashMap<>();
+    private final Map<MemberRef, List<OwnedClassMember>> methods = new ConcurrentHashMap<>();
+    private final Map<ParentsRef, List<UnimplementedMethodChecker.InheritedMethod>> inheritedMethods = new ConcurrentHashMap<>();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    ResolutionCache() {
+    }
+
+    @Nullable
+    public OwnedClassMember resolveField(String owner, String name, String desc, Supplier<OwnedClassMember> resolver) {
+        MemberRef ref = new MemberRef(owner, name, desc);
+        Optional<OwnedClassMember> result = fields.get(ref);
+        if (result != null) {
+            hits.increment();
+            return result.orElse(null);
+        }
+        misses.increment();
+        result = Optional.ofNullable(resolver.get());
+        Optional<OwnedClassMember> existing = fields.putIfAbsent(ref, result);
+        return (existing != null ? existing : result).orElse(null);
+    }
+
+    public List<OwnedClassMember> resolveMethod(String owner, String name, String desc, Supplier<List<OwnedClassMember>> resolver) {
+        MemberRef ref = new MemberRef(owner, name, desc);
+        List<OwnedClassMember> result = methods.get(ref);
+        if (result != null) {
+            hits.increment();
+            return result;
+        }
+        misses.increment();
+        result = List.copyOf(resolver.get());
+        List<OwnedClassMember> existing = methods.putIfAbsent(ref, result);
+        return existing != null ? existing : result;
+    }
+
+    /**
+     * Returns the outcomes of checking the methods which may be left unimplemented by a class with the given parents,
+     * accessing them from the given package, or {@code null} if they haven't been {@link #putInheritedMethods stored}.
+     */
+    @Nullable
+    public List<UnimplementedMethodChecker.InheritedMethod> getInheritedMethods(@Nullable String superName, List<String> interfaces, String packageName, boolean directSubclass) {
+        List<UnimplementedMethodChecker.InheritedMethod> result = inheritedMethods.get(new ParentsRef(superName, interfaces, packageName, directSubclass));
+        if (result != null) {
+            hits.increment();
+        } else {
+            misses.increment();
+        }
+        return result;
+    }
+
+    public void putInheritedMethods(@Nullable String superName, List<String> interfaces, String packageName, boolean directSubclass, List<UnimplementedMethodChecker.InheritedMethod> result) {
+        inheritedMethods.putIfAbsent(new ParentsRef(superName, List.copyOf(interfaces), packageName, directSubclass), List.copyOf(result));
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public int size() {
+        return fields.size() + methods.size() + inheritedMethods.size();
+    }
+
+    @Override
+    public String toString() {
+        long hits = getHits();
+        long total = hits + getMisses();
+        return String.format("%d hits, %d misses (%.1f%% hit rate), %d entries", hits, total - hits, total == 0 ? 0.0 : 100.0 * hits / total, size());
+    }
+
+    private record MemberRef(String owner, String name, String desc) {
+    }
+
+    private record ParentsRef(@Nullable String superName, List<String> interfaces, String packageName, boolean directSubclass) {
+    }
+}
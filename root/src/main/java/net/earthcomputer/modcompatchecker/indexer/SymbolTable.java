@@ -0,0 +1,37 @@
+package net.earthcomputer.modcompatchecker.indexer;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Canonical instances of the class names, member names and descriptors in an index. The same few thousand strings
+// appear over and over again in a large index (think java/lang/Object, or ()V), so keeping a single copy of each saves a
+// lot of memory, and makes equality checks between them an identity check in the common case.
+public final class SymbolTable {
+    private final Map<String, String> symbols = new ConcurrentHashMap<>();
+
+    public String intern(String symbol) {
+        String existing = symbols.putIfAbsent(symbol, symbol);
+        return existing != null ? existing : symbol;
+    }
+
+    @Nullable
+    public String internNullable(@Nullable String symbol) {
+        return symbol == null ? null : intern(symbol);
+    }
+
+    public List<String> internAll(List<String> symbols) {
+        List<String> result = new ArrayList<>(symbols.size());
+        for (String symbol : symbols) {
+            result.add(intern(symbol));
+        }
+        return result;
+    }
+
+    public int size() {
+        return symbols.size();
+    }
+}
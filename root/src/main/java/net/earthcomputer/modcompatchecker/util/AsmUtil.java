@@ -1,5 +1,6 @@
 package net.earthcomputer.modcompatchecker.util;
 
+import net.earthcomputer.modcompatchecker.indexer.ClassHierarchy;
 import net.earthcomputer.modcompatchecker.indexer.IResolvedClass;
 import net.earthcomputer.modcompatchecker.indexer.Index;
 import org.jetbrains.annotations.Nullable;
@@ -12,6 +13,8 @@ import java.util.Objects;
 
 public final class AsmUtil {
     public static final int API = getAsmApi();
+    // the newest class file major version the ASM on the classpath can read, found the same way as API
+    public static final int LATEST_CLASS_VERSION = getLatestClassVersion();
 
     public static final String OBJECT = "java/lang/Object";
     public static final String ENUM = "java/lang/Enum";
@@ -35,6 +38,20 @@ public final class AsmUtil {
         }
     }
 
+    private static int getLatestClassVersion() {
+        try {
+            int classVersion = Opcodes.V1_8;
+            for (Field field : Opcodes.class.getFields()) {
+                if (field.getName().matches("V\\d+")) {
+                    classVersion = Math.max(classVersion, field.getInt(null));
+                }
+            }
+            return classVersion;
+        } catch (Exception e) {
+            throw new RuntimeException("Failed to determine latest class version", e);
+        }
+    }
+
     public static boolean isClassAccessible(String fromClass, String targetClass, int accessFlags) {
         return isClassAccessible(fromClass, targetClass, AccessLevel.fromAsm(accessFlags));
     }
@@ -57,7 +74,13 @@ public final class AsmUtil {
                 return true;
             }
             case PROTECTED -> {
-                if (isSubclass(index, fromClass, containingClassName) || areSamePackage(fromClass, containingClassName)) {
+                ClassHierarchy fromHierarchy = index.getHierarchy(fromClass);
+                ClassHierarchy containingHierarchy = index.getHierarchy(containingClassName);
+                if (fromHierarchy != null && containingHierarchy != null) {
+                    if (fromHierarchy.isSubclassOf(containingHierarchy) || fromHierarchy.isSamePackage(containingHierarchy)) {
+                        return true;
+                    }
+                } else if (areSamePackage(fromClass, containingClassName)) {
                     return true;
                 }
             }
@@ -76,22 +99,15 @@ public final class AsmUtil {
         return resolvedNestHost != null && resolvedNestHost.getNestMembers().contains(fromClass);
     }
 
-    private static boolean isSubclass(Index index, String className, String superclass) {
-        IResolvedClass clazz;
-        while ((clazz = index.findClass(className)) != null) {
-            if (superclass.equals(className)) {
-                return true;
-            }
-            className = clazz.getSuperclass();
-        }
-
-        return false;
+    public static String getPackageName(String className) {
+        int slashIndex = className.lastIndexOf('/');
+        return slashIndex == -1 ? "" : className.substring(0, slashIndex);
     }
 
     public static boolean areSamePackage(String a, String b) {
         int slashA = a.lastIndexOf('/');
         int slashB = b.lastIndexOf('/');
-        return slashA == slashB && (slashA == -1 || a.startsWith(b.substring(0, slashB)));
+        return slashA == slashB && a.regionMatches(0, b, 0, slashA + 1);
     }
 
     @Nullable
@@ -0,0 +1,111 @@
+package net.earthcomputer.modcompatchecker.util;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayDeque;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+// A concurrent cache holding at most a fixed number of entries, evicting with the CLOCK (second chance) algorithm.
+// Lookups don't take any locks, they only mark the entry as recently used. Adding an entry takes a lock, and if the
+// cache is full, sweeps over the entries in insertion order, evicting the first one which hasn't been used since the
+// last sweep passed it. The new entry is only added after the sweep, so that it can't be evicted by its own insertion
+// when all the other entries have been used. Entries other threads are currently looking up therefore survive the
+// sweep, and values which have been handed out stay valid after they're evicted, they are merely loaded again on the
+// next lookup.
+public final class BoundedCache<K, V> {
+    private final int capacity;
+    private final Map<K, Entry<K, V>> entries = new ConcurrentHashMap<>();
+    // guarded by this
+    private final ArrayDeque<Entry<K, V>> clock = new ArrayDeque<>();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    public BoundedCache(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Cache capacity must be positive: " + capacity);
+        }
+        this.capacity = capacity;
+    }
+
+    @Nullable
+    public V get(K key) {
+        Entry<K, V> entry = entries.get(key);
+        if (entry == null) {
+            misses.increment();
+            return null;
+        }
+        entry.referenced = true;
+        hits.increment();
+        return entry.value;
+    }
+
+    /**
+     * Adds the given value unless there is already a value for the key, and returns the value which ends up in the
+     * cache.
+     */
+    public V putIfAbsent(K key, V value) {
+        synchronized (this) {
+            Entry<K, V> existing = entries.get(key);
+            if (existing != null) {
+                existing.referenced = true;
+                return existing.value;
+            }
+
+            while (clock.size() >= capacity) {
+                Entry<K, V> candidate = clock.removeFirst();
+                if (candidate.referenced) {
+                    candidate.referenced = false;
+                    clock.addLast(candidate);
+                } else {
+                    entries.remove(candidate.key);
+                    evictions.increment();
+                }
+            }
+            Entry<K, V> entry = new Entry<>(key, value);
+            entries.put(key, entry);
+            clock.addLast(entry);
+            return value;
+        }
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    @Override
+    public String toString() {
+        long hits = getHits();
+        long total = hits + getMisses();
+        return String.format("%d hits, %d misses (%.1f%% hit rate), %d evictions, %d/%d entries", hits, total - hits, total == 0 ? 0.0 : 100.0 * hits / total, getEvictions(), size(), capacity);
+    }
+
+    private static final class Entry<K, V> {
+        final K key;
+        final V value;
+        volatile boolean referenced;
+
+        Entry(K key, V value) {
+            this.key = key;
+            this.value = value;
+        }
+    }
+}
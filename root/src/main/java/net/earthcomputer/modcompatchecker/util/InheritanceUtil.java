@@ -1,8 +1,10 @@
 package net.earthcomputer.modcompatchecker.util;
 
-import net.earthcomputer.modcompatchecker.indexer.IResolvedClass;
+import net.earthcomputer.modcompatchecker.indexer.ClassHierarchy;
 import net.earthcomputer.modcompatchecker.indexer.Index;
+import net.earthcomputer.modcompatchecker.indexer.MemberTable;
 import org.jetbrains.annotations.Nullable;
+import org.objectweb.asm.Opcodes;
 
 import java.util.HashSet;
 import java.util.LinkedHashMap;
@@ -29,12 +31,20 @@ public final class InheritanceUtil {
 
     @Nullable
     public static OwnedClassMember lookupField(Index index, String owner, String name, String desc) {
+        return index.getResolutionCache().resolveField(owner, name, desc, () -> doLookupField(index, owner, name, desc));
+    }
+
+    @Nullable
+    private static OwnedClassMember doLookupField(Index index, String owner, String name, String desc) {
         // JVMS 21 §5.4.3.2 field resolution, 1-4 (field lookup)
-        for (IResolvedClass resolvedClass = index.findClass(owner); resolvedClass != null; resolvedClass = index.findClass(owner = resolvedClass.getSuperclass())) {
-            for (ClassMember field : resolvedClass.getFields()) {
-                if (field.name().equals(name) && field.descriptor().equals(desc)) {
-                    return new OwnedClassMember(owner, field);
-                }
+        ClassHierarchy hierarchy = index.getHierarchy(owner);
+        if (hierarchy == null) {
+            return null;
+        }
+        for (ClassHierarchy clazz : hierarchy.getSuperclassChain()) {
+            ClassMember field = clazz.getResolvedClass().findField(name, desc);
+            if (field != null) {
+                return new OwnedClassMember(clazz.getName(), field);
             }
         }
         return null;
@@ -51,40 +61,51 @@ public final class InheritanceUtil {
     }
 
     public static List<OwnedClassMember> multiLookupMethod(Index index, String owner, List<String> additionalInterfaces, String name, String desc) {
+        if (additionalInterfaces.isEmpty()) {
+            return index.getResolutionCache().resolveMethod(owner, name, desc, () -> doMultiLookupMethod(index, owner, additionalInterfaces, name, desc));
+        }
+        return doMultiLookupMethod(index, owner, additionalInterfaces, name, desc);
+    }
+
+    private static List<OwnedClassMember> doMultiLookupMethod(Index index, String owner, List<String> additionalInterfaces, String name, String desc) {
         // JVMS 21 §5.4.3.3 method resolution, 1-3 (method lookup)
         // JVMS 21 §5.4.3.4 interface method resolution, 1-6 (interface method lookup)
         // the below algorithm implements §5.4.3.3 if `owner` is a class and §5.4.3.4 if `owner` is an interface.
 
+        ClassHierarchy hierarchy = index.getHierarchy(owner);
+
         // search superclasses first
-        String className = owner;
-        for (IResolvedClass resolvedClass = index.findClass(className); resolvedClass != null; resolvedClass = index.findClass(className = resolvedClass.getSuperclass())) {
-            for (ClassMember method : resolvedClass.getMethods()) {
-                if (method.name().equals(name)) {
-                    if (isSignaturePolymorphic(className, method.descriptor(), method.access())) {
-                        return List.of(new OwnedClassMember(className, method));
-                    }
-                    if (method.descriptor().equals(desc)) {
-                        return List.of(new OwnedClassMember(className, method));
+        if (hierarchy != null) {
+            for (ClassHierarchy clazz : hierarchy.getSuperclassChain()) {
+                // go through the table by index, so that only the method found is allocated
+                MemberTable methods = clazz.getResolvedClass().getMethodTable();
+                int start = methods.indexOfName(name);
+                if (start < 0) {
+                    continue;
+                }
+                for (int i = start; i < methods.size() && methods.name(i).equals(name); i++) {
+                    if (isSignaturePolymorphic(clazz.getName(), methods.descriptor(i), methods.access(i)) || methods.descriptor(i).equals(desc)) {
+                        return List.of(new OwnedClassMember(clazz.getName(), methods.get(i)));
                     }
                 }
             }
         }
 
-        // search for maximally specific methods
+        // search for maximally specific methods, visiting superinterfaces in the order of a depth first search
         Map<String, ClassMember> maximallySpecificMethods = new LinkedHashMap<>();
         Set<String> superinterfacesOfMaximallySpecificMethods = new HashSet<>();
         for (String additionalInterface : additionalInterfaces) {
-            IResolvedClass resolvedItf = index.findClass(additionalInterface);
-            if (resolvedItf != null) {
-                searchForMaximallySpecificMethods(index, additionalInterface, resolvedItf, name, desc, maximallySpecificMethods, superinterfacesOfMaximallySpecificMethods);
+            ClassHierarchy itf = index.getHierarchy(additionalInterface);
+            if (itf != null) {
+                checkMaximallySpecificMethod(itf, name, desc, maximallySpecificMethods, superinterfacesOfMaximallySpecificMethods);
+                for (ClassHierarchy superinterface : itf.getSuperinterfaces()) {
+                    checkMaximallySpecificMethod(superinterface, name, desc, maximallySpecificMethods, superinterfacesOfMaximallySpecificMethods);
+                }
             }
         }
-        for (IResolvedClass resolvedClass = index.findClass(owner); resolvedClass != null; resolvedClass = index.findClass(resolvedClass.getSuperclass())) {
-            for (String itf : resolvedClass.getInterfaces()) {
-                IResolvedClass resolvedItf = index.findClass(itf);
-                if (resolvedItf != null) {
-                    searchForMaximallySpecificMethods(index, itf, resolvedItf, name, desc, maximallySpecificMethods, superinterfacesOfMaximallySpecificMethods);
-                }
+        if (hierarchy != null) {
+            for (ClassHierarchy itf : hierarchy.getSuperinterfaces()) {
+                checkMaximallySpecificMethod(itf, name, desc, maximallySpecificMethods, superinterfacesOfMaximallySpecificMethods);
             }
         }
 
@@ -112,45 +133,24 @@ public final class InheritanceUtil {
         return maximallySpecificMethods.entrySet().stream().map(entry -> new OwnedClassMember(entry.getKey(), entry.getValue())).toList();
     }
 
-    private static void searchForMaximallySpecificMethods(Index index, String itf, IResolvedClass resolvedInterface, String name, String desc, Map<String, ClassMember> maximallySpecificMethods, Set<String> superinterfacesOfMaximallySpecificMethods) {
-        if (maximallySpecificMethods.containsKey(itf) || superinterfacesOfMaximallySpecificMethods.contains(itf)) {
+    private static void checkMaximallySpecificMethod(ClassHierarchy itf, String name, String desc, Map<String, ClassMember> maximallySpecificMethods, Set<String> superinterfacesOfMaximallySpecificMethods) {
+        // a superinterface of a maximally specific method can't have one itself, neither can any of its superinterfaces
+        if (maximallySpecificMethods.containsKey(itf.getName()) || superinterfacesOfMaximallySpecificMethods.contains(itf.getName())) {
             return;
         }
 
-        for (ClassMember method : resolvedInterface.getMethods()) {
-            if (!method.name().equals(name) || !method.descriptor().equals(desc)) {
-                continue;
-            }
-            if (method.access().isStatic() || method.access().accessLevel() == AccessLevel.PRIVATE) {
-                continue;
-            }
-
-            maximallySpecificMethods.put(itf, method);
-            findSuperinterfacesOfMaximallySpecificMethod(index, resolvedInterface, maximallySpecificMethods, superinterfacesOfMaximallySpecificMethods);
-            return;
-        }
-
-        for (String superinterface : resolvedInterface.getInterfaces()) {
-            IResolvedClass resolvedSuperinterface = index.findClass(superinterface);
-            if (resolvedSuperinterface != null) {
-                searchForMaximallySpecificMethods(index, superinterface, resolvedSuperinterface, name, desc, maximallySpecificMethods, superinterfacesOfMaximallySpecificMethods);
-            }
-        }
-    }
-
-    private static void findSuperinterfacesOfMaximallySpecificMethod(Index index, IResolvedClass resolvedInterface, Map<String, ClassMember> maximallySpecificMethods, Set<String> superinterfacesOfMaximallySpecificMethods) {
-        for (String superinterface : resolvedInterface.getInterfaces()) {
-            if (superinterfacesOfMaximallySpecificMethods.add(superinterface)) {
-                maximallySpecificMethods.remove(superinterface);
-                IResolvedClass resolvedSuperinterface = index.findClass(superinterface);
-                if (resolvedSuperinterface != null) {
-                    findSuperinterfacesOfMaximallySpecificMethod(index, resolvedSuperinterface, maximallySpecificMethods, superinterfacesOfMaximallySpecificMethods);
+        ClassMember method = itf.getResolvedClass().findMethod(name, desc);
+        if (method != null && !method.access().isStatic() && method.access().accessLevel() != AccessLevel.PRIVATE) {
+            maximallySpecificMethods.put(itf.getName(), method);
+            for (ClassHierarchy superinterface : itf.getSuperinterfaces()) {
+                if (superinterfacesOfMaximallySpecificMethods.add(superinterface.getName())) {
+                    maximallySpecificMethods.remove(superinterface.getName());
                 }
             }
         }
     }
 
-    private static boolean isSignaturePolymorphic(String owner, String desc, AccessFlags flags) {
+    private static boolean isSignaturePolymorphic(String owner, String desc, int access) {
         // JVMS 21 §2.9.3 - signature polymorphic methods
         if (!"java/lang/invoke/MethodHandle".equals(owner) && !"java/lang/invoke/VarHandle".equals(owner)) {
             return false;
@@ -158,6 +158,6 @@ public final class InheritanceUtil {
         if (!desc.startsWith("([Ljava/lang/Object;)")) {
             return false;
         }
-        return flags.isVarArgs() && flags.isNative();
+        return (access & Opcodes.ACC_VARARGS) != 0 && (access & Opcodes.ACC_NATIVE) != 0;
     }
 }
@@ -0,0 +1,405 @@
+package net.earthcomputer.modcompatchecker.util;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.StringJoiner;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+// A jar which stays open for everything that reads it during a run, so that the plugins, the indexer and the checker
+// don't each open it and scan its central directory again. Sessions which retain their entries also keep the inflated
+// contents of each entry once it has been read, so that the class files of a mod are only inflated once for both
+// indexing and checking. Sessions may be read from several threads at once.
+//
+// The jar is memory mapped and its central directory parsed here rather than going through JarFile, so reading an entry
+// takes no system calls or stream buffers. Stored entries are slices of the mapping, and deflated entries are inflated
+// straight from the mapping into an array of exactly the right size, with an inflater reused by each thread. Jars nested
+// inside another jar are read the same way, from a slice of the outer jar if they're stored, or else from their contents
+// inflated once.
+public final class JarSession implements Closeable {
+    private static final int LOCAL_HEADER_SIGNATURE = 0x04034b50;
+    private static final int LOCAL_HEADER_SIZE = 30;
+    private static final int CENTRAL_HEADER_SIGNATURE = 0x02014b50;
+    private static final int CENTRAL_HEADER_SIZE = 46;
+    private static final int END_SIGNATURE = 0x06054b50;
+    private static final int END_SIZE = 22;
+    private static final int ZIP64_END_LOCATOR_SIGNATURE = 0x07064b50;
+    private static final int ZIP64_END_LOCATOR_SIZE = 20;
+    private static final int ZIP64_END_SIGNATURE = 0x06064b50;
+    private static final int ZIP64_EXTRA_ID = 0x0001;
+    private static final int STORED = 0;
+    private static final int DEFLATED = 8;
+    private static final long MAX_DEFLATE_RATIO = 1032;
+
+    private static final ThreadLocal<Inflater> INFLATERS = ThreadLocal.withInitial(() -> new Inflater(true));
+
+    private final String name;
+    private final ByteBuffer data;
+    private final List<Entry> entries;
+    private final Map<String, Entry> entriesByName;
+    @Nullable
+    private final Map<String, byte[]> retainedBytes;
+
+    private JarSession(String name, ByteBuffer data, boolean retainEntries) throws IOException {
+        this.name = name;
+        this.data = data.order(ByteOrder.LITTLE_ENDIAN);
+
+        List<Entry> entries = readCentralDirectory();
+        // where a name appears more than once, the later entry in the central directory wins, as in JarFile
+        Map<String, Entry> entriesByName = new HashMap<>();
+        for (Entry entry : entries) {
+            entriesByName.put(entry.name, entry);
+        }
+        // serve the entries in the order they're stored in, so that reading all of them goes through the mapping once
+        entries.sort(Comparator.comparingLong(entry -> entry.localHeaderOffset));
+        this.entries = Collections.unmodifiableList(entries);
+        this.entriesByName = entriesByName;
+        this.retainedBytes = retainEntries ? new ConcurrentHashMap<>() : null;
+    }
+
+    /**
+     * Opens a jar whose entries are each only read once, such as a library.
+     */
+    public static JarSession open(Path path) throws IOException {
+        return new JarSession(path.toString(), map(path), false);
+    }
+
+    /**
+     * Opens a jar whose entries will be read more than once, such as a mod which is indexed and then checked. The
+     * contents of the entries are kept in memory until the session is closed.
+     */
+    public static JarSession openRetaining(Path path) throws IOException {
+        return new JarSession(path.toString(), map(path), true);
+    }
+
+    /**
+     * Reads a jar, or a directory of class files such as the output of a build, fully into memory and retains its
+     * entries. Unlike a mapped jar, the session is unaffected by the files being rewritten while it's open. A directory
+     * is read as if it were a jar of the files in it, with each file stored uncompressed.
+     */
+    public static JarSession read(Path path) throws IOException {
+        byte[] data = Files.isDirectory(path) ? zipDirectory(path) : Files.readAllBytes(path);
+        return new JarSession(path.toString(), ByteBuffer.wrap(data), true);
+    }
+
+    /**
+     * Opens a jar stored in an entry of this jar. The nested jar retains its entries if this jar does.
+     */
+    public JarSession openNested(Entry entry) throws IOException {
+        ByteBuffer nestedData = entry.method == STORED ? compressedData(entry) : ByteBuffer.wrap(readBytes(entry));
+        return new JarSession(name + "!/" + entry.name, nestedData, retainedBytes != null);
+    }
+
+    private static byte[] zipDirectory(Path dir) throws IOException {
+        List<Path> files;
+        try (Stream<Path> stream = Files.walk(dir)) {
+            files = stream.filter(Files::isRegularFile).sorted().toList();
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ZipOutputStream zip = new ZipOutputStream(bytes)) {
+            CRC32 crc = new CRC32();
+            for (Path file : files) {
+                byte[] contents = Files.readAllBytes(file);
+                StringJoiner entryName = new StringJoiner("/");
+                for (Path part : dir.relativize(file)) {
+                    entryName.add(part.toString());
+                }
+                ZipEntry entry = new ZipEntry(entryName.toString());
+                entry.setMethod(ZipEntry.STORED);
+                entry.setSize(contents.length);
+                crc.reset();
+                crc.update(contents);
+                entry.setCrc(crc.getValue());
+                zip.putNextEntry(entry);
+                zip.write(contents);
+                zip.closeEntry();
+            }
+        }
+        return bytes.toByteArray();
+    }
+
+    private static ByteBuffer map(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Jar file too large: " + path);
+            }
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+    }
+
+    private List<Entry> readCentralDirectory() throws IOException {
+        int end = findEnd();
+        long entryCount = data.getShort(end + 10) & 0xffff;
+        long centralDirectoryOffset = data.getInt(end + 16) & 0xffffffffL;
+
+        int locator = end - ZIP64_END_LOCATOR_SIZE;
+        if (locator >= 0 && data.getInt(locator) == ZIP64_END_LOCATOR_SIGNATURE) {
+            long zip64End = data.getLong(locator + 8);
+            if (zip64End < 0 || zip64End > data.limit() - 56 || data.getInt((int) zip64End) != ZIP64_END_SIGNATURE) {
+                throw new IOException("Invalid jar file: bad zip64 end of central directory in " + name);
+            }
+            entryCount = data.getLong((int) zip64End + 32);
+            centralDirectoryOffset = data.getLong((int) zip64End + 48);
+        }
+        if (centralDirectoryOffset < 0 || centralDirectoryOffset > end || entryCount < 0 || entryCount > (end - centralDirectoryOffset) / CENTRAL_HEADER_SIZE) {
+            throw new IOException("Invalid jar file: bad central directory in " + name);
+        }
+
+        List<Entry> entries = new ArrayList<>((int) entryCount);
+        int pos = (int) centralDirectoryOffset;
+        for (long i = 0; i < entryCount; i++) {
+            if (pos + CENTRAL_HEADER_SIZE > end || data.getInt(pos) != CENTRAL_HEADER_SIGNATURE) {
+                throw new IOException("Invalid jar file: bad central directory entry in " + name);
+            }
+            int method = data.getShort(pos + 10) & 0xffff;
+            long crc = data.getInt(pos + 16) & 0xffffffffL;
+            long compressedSize = data.getInt(pos + 20) & 0xffffffffL;
+            long size = data.getInt(pos + 24) & 0xffffffffL;
+            int nameLength = data.getShort(pos + 28) & 0xffff;
+            int extraLength = data.getShort(pos + 30) & 0xffff;
+            int commentLength = data.getShort(pos + 32) & 0xffff;
+            long localHeaderOffset = data.getInt(pos + 42) & 0xffffffffL;
+            int namePos = pos + CENTRAL_HEADER_SIZE;
+            int extraPos = namePos + nameLength;
+            if (extraPos + extraLength + commentLength > end) {
+                throw new IOException("Invalid jar file: bad central directory entry in " + name);
+            }
+
+            // the real values of any fields which didn't fit are in the zip64 extra field, in this order
+            if (size == 0xffffffffL || compressedSize == 0xffffffffL || localHeaderOffset == 0xffffffffL) {
+                for (int extra = extraPos; extra + 4 <= extraPos + extraLength; ) {
+                    int id = data.getShort(extra) & 0xffff;
+                    int length = data.getShort(extra + 2) & 0xffff;
+                    int extraEnd = Math.min(extra + 4 + length, extraPos + extraLength);
+                    if (id == ZIP64_EXTRA_ID) {
+                        int field = extra + 4;
+                        if (size == 0xffffffffL && field + 8 <= extraEnd) {
+                            size = data.getLong(field);
+                            field += 8;
+                        }
+                        if (compressedSize == 0xffffffffL && field + 8 <= extraEnd) {
+                            compressedSize = data.getLong(field);
+                            field += 8;
+                        }
+                        if (localHeaderOffset == 0xffffffffL && field + 8 <= extraEnd) {
+                            localHeaderOffset = data.getLong(field);
+                        }
+                        break;
+                    }
+                    extra += 4 + length;
+                }
+                if (size < 0 || compressedSize < 0 || localHeaderOffset < 0) {
+                    throw new IOException("Invalid jar file: bad zip64 extra field in " + name);
+                }
+            }
+
+            byte[] name = new byte[nameLength];
+            data.get(namePos, name);
+            entries.add(new Entry(new String(name, StandardCharsets.UTF_8), method, crc, compressedSize, size, localHeaderOffset));
+            pos = extraPos + extraLength + commentLength;
+        }
+        return entries;
+    }
+
+    private int findEnd() throws IOException {
+        // the end of central directory record is followed by a comment of at most 65535 bytes
+        int minPos = Math.max(0, data.limit() - END_SIZE - 0xffff);
+        for (int pos = data.limit() - END_SIZE; pos >= minPos; pos--) {
+            if (data.getInt(pos) == END_SIGNATURE && pos + END_SIZE + (data.getShort(pos + 20) & 0xffff) == data.limit()) {
+                return pos;
+            }
+        }
+        throw new IOException("Invalid jar file: no end of central directory in " + name);
+    }
+
+    /**
+     * Returns the path of this jar, followed by the path of each jar it is nested in.
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Returns the raw bytes of the whole jar.
+     */
+    public ByteBuffer getContents() {
+        return data.asReadOnlyBuffer();
+    }
+
+    /**
+     * Returns the entries of the jar in the order their contents are stored in.
+     */
+    public List<Entry> getEntries() {
+        return entries;
+    }
+
+    @Nullable
+    public Entry getEntry(String name) {
+        return entriesByName.get(name);
+    }
+
+    /**
+     * Returns the contents of the given entry. Stored entries are returned without copying, deflated entries are
+     * inflated first. The returned buffer must not be modified.
+     */
+    public ByteBuffer getBuffer(Entry entry) throws IOException {
+        if (retainedBytes != null) {
+            return ByteBuffer.wrap(getBytes(entry));
+        }
+        if (entry.method == STORED) {
+            return compressedData(entry);
+        }
+        return ByteBuffer.wrap(readBytes(entry));
+    }
+
+    /**
+     * Returns the contents of the given entry in an array. The returned array must not be modified.
+     */
+    public byte[] getBytes(Entry entry) throws IOException {
+        if (retainedBytes == null) {
+            return readBytes(entry);
+        }
+        byte[] bytes = retainedBytes.get(entry.name);
+        if (bytes == null) {
+            bytes = readBytes(entry);
+            byte[] existing = retainedBytes.putIfAbsent(entry.name, bytes);
+            if (existing != null) {
+                bytes = existing;
+            }
+        }
+        return bytes;
+    }
+
+    public InputStream getInputStream(Entry entry) throws IOException {
+        return new ByteArrayInputStream(getBytes(entry));
+    }
+
+    private byte[] readBytes(Entry entry) throws IOException {
+        if (entry.size > Integer.MAX_VALUE - 8) {
+            throw new IOException("Jar entry too large: " + entry.name + " in " + name);
+        }
+        ByteBuffer compressed = compressedData(entry);
+        if (entry.method == STORED) {
+            byte[] result = new byte[(int) entry.size];
+            compressed.get(result);
+            return result;
+        }
+        if (entry.method != DEFLATED) {
+            throw new IOException("Unsupported compression method " + entry.method + " for " + entry.name + " in " + name);
+        }
+        // deflate can't expand its input more than about 1032 times, so don't allocate for a size that can't be right
+        if (entry.size > MAX_DEFLATE_RATIO * compressed.remaining() + MAX_DEFLATE_RATIO) {
+            throw new IOException("Invalid jar file: bad size for " + entry.name + " in " + name);
+        }
+        byte[] result = new byte[(int) entry.size];
+
+        Inflater inflater = INFLATERS.get();
+        try {
+            inflater.setInput(compressed);
+            int len = 0;
+            while (len < result.length && !inflater.finished()) {
+                int inflated = inflater.inflate(result, len, result.length - len);
+                if (inflated == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                len += inflated;
+            }
+            if (len != result.length) {
+                throw new IOException("Invalid jar file: " + entry.name + " is shorter than expected in " + name);
+            }
+            return result;
+        } catch (DataFormatException e) {
+            throw new IOException("Invalid jar file: corrupt entry " + entry.name + " in " + name, e);
+        } finally {
+            inflater.reset();
+        }
+    }
+
+    private ByteBuffer compressedData(Entry entry) throws IOException {
+        long header = entry.localHeaderOffset;
+        if (header < 0 || header > data.limit() - LOCAL_HEADER_SIZE || data.getInt((int) header) != LOCAL_HEADER_SIGNATURE) {
+            throw new IOException("Invalid jar file: bad local header for " + entry.name + " in " + name);
+        }
+        // the local header has its own copy of the name and extra field, which may differ in length from the central one
+        long start = header + LOCAL_HEADER_SIZE + (data.getShort((int) header + 26) & 0xffff) + (data.getShort((int) header + 28) & 0xffff);
+        long length = entry.method == STORED ? entry.size : entry.compressedSize;
+        if (length > data.limit() - start) {
+            throw new IOException("Invalid jar file: " + entry.name + " extends past the end of " + name);
+        }
+        return data.slice((int) start, (int) length);
+    }
+
+    @Override
+    public void close() {
+        // the mapping is released once it's no longer reachable
+        if (retainedBytes != null) {
+            retainedBytes.clear();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+
+    public static final class Entry {
+        private final String name;
+        private final int method;
+        private final long crc;
+        private final long compressedSize;
+        private final long size;
+        private final long localHeaderOffset;
+
+        private Entry(String name, int method, long crc, long compressedSize, long size, long localHeaderOffset) {
+            this.name = name;
+            this.method = method;
+            this.crc = crc;
+            this.compressedSize = compressedSize;
+            this.size = size;
+            this.localHeaderOffset = localHeaderOffset;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public long getCrc() {
+            return crc;
+        }
+
+        public long getCompressedSize() {
+            return compressedSize;
+        }
+
+        public long getSize() {
+            return size;
+        }
+
+        @Override
+        public String toString() {
+            return name;
+        }
+    }
+}
@@ -1,12 +1,21 @@
 package net.earthcomputer.modcompatchecker.util;
 
+import net.earthcomputer.modcompatchecker.indexer.ClassHierarchy;
 import net.earthcomputer.modcompatchecker.indexer.IResolvedClass;
 import net.earthcomputer.modcompatchecker.indexer.Index;
+import net.earthcomputer.modcompatchecker.indexer.MemberTable;
+import net.earthcomputer.modcompatchecker.indexer.ResolutionCache;
 import org.jetbrains.annotations.Nullable;
+import org.objectweb.asm.Opcodes;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
 
 // Possibly unimplemented methods are all abstract methods from all superclasses and superinterfaces,
 // and all other visible methods from superinterfaces.
@@ -16,6 +25,7 @@ public abstract class UnimplementedMethodChecker {
     protected final Index index;
     protected final String superName;
     protected final String @Nullable[] interfaces;
+    private boolean accessibilityDependsOnClass;
 
     protected UnimplementedMethodChecker(Index index, String superName, String @Nullable [] interfaces) {
         this.index = index;
@@ -24,104 +34,203 @@ public abstract class UnimplementedMethodChecker {
     }
 
     public void run() {
-        Map<NameAndDesc, PossiblyUnimplementedMethod> possiblyUnimplementedMethods = new LinkedHashMap<>();
+        ResolutionCache cache = index.getResolutionCache();
 
-        searchParentsForPossiblyUnimplementedMethods(possiblyUnimplementedMethods);
+        // The outcome for each inherited method only depends on the parents, unless this class declares a method with
+        // the same name which the lookup could find instead. Outcomes for the latter are worked out again below, the
+        // rest can be shared between all classes with the same parents in the same package, as long as no accessibility
+        // check depended on anything more specific about this class than that.
+        List<String> interfaceList = interfaces == null ? List.of() : Arrays.asList(interfaces);
+        String packageName = AsmUtil.getPackageName(getAccessingClassName());
+        boolean directSubclass = isAccessingClassDirectSubclass();
+        List<InheritedMethod> inheritedMethods = cache.getInheritedMethods(superName, interfaceList, packageName, directSubclass);
+        if (inheritedMethods == null) {
+            accessibilityDependsOnClass = false;
+            inheritedMethods = findInheritedMethods((name, desc) -> InheritanceUtil.multiLookupMethod(index, superName, interfaceList, name, desc));
+            if (!accessibilityDependsOnClass) {
+                cache.putInheritedMethods(superName, interfaceList, packageName, directSubclass, inheritedMethods);
+            }
+        }
 
-        // remove the possibly unimplemented methods which are actually implemented and visible
-        possiblyUnimplementedMethods.entrySet().removeIf(abstractMethod -> {
-            List<OwnedClassMember> lookupResult = multiLookupMethod(abstractMethod.getKey().name(), abstractMethod.getKey().desc());
-            List<OwnedClassMember> nonAbstractMethods = lookupResult.stream().filter(method -> !method.member().access().isAbstract()).toList();
-            if (nonAbstractMethods.size() != 1) {
-                return false;
+        for (InheritedMethod inheritedMethod : inheritedMethods) {
+            if (mayDeclareMethod(inheritedMethod.name())) {
+                inheritedMethod = checkInheritedMethod(inheritedMethod.name(), inheritedMethod.desc(), inheritedMethod.owner(), inheritedMethod.access(), this::multiLookupMethod);
             }
-            OwnedClassMember concreteMethod = nonAbstractMethods.get(0);
-            if (concreteMethod.member().access().isStatic()) {
-                return false;
+            report(inheritedMethod);
+        }
+    }
+
+    private void report(InheritedMethod inheritedMethod) {
+        switch (inheritedMethod.outcome()) {
+            case IMPLEMENTED -> {
             }
-            if (abstractMethod.getValue().access.accessLevel().isHigherVisibility(concreteMethod.member().access().accessLevel())) {
-                return false;
+            case DIAMOND_PROBLEM -> onDiamondProblem(inheritedMethod.name(), inheritedMethod.desc());
+            case ABSTRACT_METHOD_UNIMPLEMENTED -> onAbstractMethodUnimplemented(inheritedMethod.owner(), inheritedMethod.name(), inheritedMethod.desc());
+            case INCORRECT_INTERFACE_METHOD_LOOKUP -> {
+                assert inheritedMethod.resolvedClassName() != null && inheritedMethod.problematicAccessModifier() != null;
+                onIncorrectInterfaceMethodLookup(inheritedMethod.owner(), inheritedMethod.name(), inheritedMethod.desc(), inheritedMethod.resolvedClassName(), inheritedMethod.problematicAccessModifier());
             }
-            return isMethodAccessible(concreteMethod.owner(), concreteMethod.member().access().accessLevel())
-                && AsmUtil.isMemberAccessible(index, abstractMethod.getValue().owner(), concreteMethod.owner(), concreteMethod.member().access().accessLevel());
-        });
+        }
+    }
+
+    private List<InheritedMethod> findInheritedMethods(MethodLookup lookup) {
+        Map<NameAndDesc, PossiblyUnimplementedMethod> possiblyUnimplementedMethods = new LinkedHashMap<>();
+
+        searchParentsForPossiblyUnimplementedMethods(possiblyUnimplementedMethods);
 
+        List<InheritedMethod> inheritedMethods = new ArrayList<>(possiblyUnimplementedMethods.size());
         possiblyUnimplementedMethods.forEach((nameAndDesc, possiblyUnimplementedMethod) -> {
-            List<OwnedClassMember> lookupResult = multiLookupMethod(nameAndDesc.name(), nameAndDesc.desc());
-            List<OwnedClassMember> nonAbstractMethods = lookupResult.stream().filter(method -> !method.member().access().isAbstract()).toList();
-            if (nonAbstractMethods.size() > 1) {
-                onDiamondProblem(nameAndDesc.name(), nameAndDesc.desc());
-            } else if (possiblyUnimplementedMethod.access.isAbstract()) {
-                onAbstractMethodUnimplemented(possiblyUnimplementedMethod.owner, nameAndDesc.name(), nameAndDesc.desc());
+            inheritedMethods.add(checkInheritedMethod(nameAndDesc.name(), nameAndDesc.desc(), possiblyUnimplementedMethod.owner(), possiblyUnimplementedMethod.access(), lookup));
+        });
+        return inheritedMethods;
+    }
+
+    private InheritedMethod checkInheritedMethod(String name, String desc, String owner, AccessFlags access, MethodLookup lookup) {
+        List<OwnedClassMember> lookupResult = lookup.multiLookupMethod(name, desc);
+        List<OwnedClassMember> nonAbstractMethods = lookupResult.stream().filter(method -> !method.member().access().isAbstract()).toList();
+
+        // check whether the possibly unimplemented method is actually implemented and visible
+        if (nonAbstractMethods.size() == 1) {
+            OwnedClassMember concreteMethod = nonAbstractMethods.get(0);
+            if (!concreteMethod.member().access().isStatic()
+                && !access.accessLevel().isHigherVisibility(concreteMethod.member().access().accessLevel())
+                && isMethodAccessible(concreteMethod.owner(), concreteMethod.member().access().accessLevel())
+                && AsmUtil.isMemberAccessible(index, owner, concreteMethod.owner(), concreteMethod.member().access().accessLevel())
+            ) {
+                return new InheritedMethod(name, desc, owner, access, Outcome.IMPLEMENTED, null, null);
+            }
+        }
+
+        if (nonAbstractMethods.size() > 1) {
+            return new InheritedMethod(name, desc, owner, access, Outcome.DIAMOND_PROBLEM, null, null);
+        } else if (access.isAbstract()) {
+            return new InheritedMethod(name, desc, owner, access, Outcome.ABSTRACT_METHOD_UNIMPLEMENTED, null, null);
+        } else {
+            String problematicAccessModifier;
+            String resolvedClassName;
+            if (nonAbstractMethods.isEmpty()) {
+                problematicAccessModifier = "abstract";
+                resolvedClassName = lookupResult.get(0).owner();
             } else {
-                String problematicAccessModifier;
-                String owner;
-                if (nonAbstractMethods.isEmpty()) {
-                    problematicAccessModifier = "abstract";
-                    owner = lookupResult.get(0).owner();
+                OwnedClassMember concreteMethod = nonAbstractMethods.get(0);
+                if (concreteMethod.member().access().isStatic()) {
+                    problematicAccessModifier = "static";
                 } else {
-                    OwnedClassMember concreteMethod = nonAbstractMethods.get(0);
-                    if (concreteMethod.member().access().isStatic()) {
-                        problematicAccessModifier = "static";
-                    } else {
-                        problematicAccessModifier = concreteMethod.member().access().accessLevel().getLowerName();
-                    }
-                    owner = concreteMethod.owner();
+                    problematicAccessModifier = concreteMethod.member().access().accessLevel().getLowerName();
                 }
-                onIncorrectInterfaceMethodLookup(possiblyUnimplementedMethod.owner, nameAndDesc.name(), nameAndDesc.desc(), owner, problematicAccessModifier);
+                resolvedClassName = concreteMethod.owner();
             }
-        });
+            return new InheritedMethod(name, desc, owner, access, Outcome.INCORRECT_INTERFACE_METHOD_LOOKUP, resolvedClassName, problematicAccessModifier);
+        }
     }
 
     private void searchParentsForPossiblyUnimplementedMethods(Map<NameAndDesc, PossiblyUnimplementedMethod> possiblyUnimplementedMethods) {
-        IResolvedClass superClass = index.findClass(superName);
-        if (superClass != null) {
-            searchClassAndParentsForPossiblyUnimplementedMethods(superName, superClass, possiblyUnimplementedMethods);
-        }
+        // visit each ancestor once, in the order a depth first search from the superclass and then each interface would
+        Set<String> visited = new HashSet<>();
+        searchClassAndParentsForPossiblyUnimplementedMethods(index.getHierarchy(superName), visited, possiblyUnimplementedMethods);
         if (interfaces != null) {
             for (String itf : interfaces) {
-                IResolvedClass resolvedClass = index.findClass(itf);
-                if (resolvedClass != null) {
-                    searchClassAndParentsForPossiblyUnimplementedMethods(itf, resolvedClass, possiblyUnimplementedMethods);
-                }
+                searchClassAndParentsForPossiblyUnimplementedMethods(index.getHierarchy(itf), visited, possiblyUnimplementedMethods);
             }
         }
     }
 
-    private void searchClassAndParentsForPossiblyUnimplementedMethods(String className, IResolvedClass clazz, Map<NameAndDesc, PossiblyUnimplementedMethod> possiblyUnimplementedMethods) {
-        for (ClassMember method : clazz.getMethods()) {
-            NameAndDesc nameAndDesc = new NameAndDesc(method.name(), method.descriptor());
-            if (method.access().isAbstract()
-                || (clazz.getAccess().isInterface() && !method.access().isStatic() && isMethodAccessible(className, clazz, method.access().accessLevel()))) {
-                possiblyUnimplementedMethods.merge(nameAndDesc, new PossiblyUnimplementedMethod(className, method.access()), PossiblyUnimplementedMethod::maxVisibility);
+    private void searchClassAndParentsForPossiblyUnimplementedMethods(@Nullable ClassHierarchy hierarchy, Set<String> visited, Map<NameAndDesc, PossiblyUnimplementedMethod> possiblyUnimplementedMethods) {
+        if (hierarchy == null) {
+            return;
+        }
+        if (visited.add(hierarchy.getName())) {
+            searchClassForPossiblyUnimplementedMethods(hierarchy.getName(), hierarchy.getResolvedClass(), possiblyUnimplementedMethods);
+        }
+        for (ClassHierarchy ancestor : hierarchy.getAncestors()) {
+            if (visited.add(ancestor.getName())) {
+                searchClassForPossiblyUnimplementedMethods(ancestor.getName(), ancestor.getResolvedClass(), possiblyUnimplementedMethods);
             }
         }
+    }
 
-        IResolvedClass resolvedSuperClass = index.findClass(clazz.getSuperclass());
-        if (resolvedSuperClass != null) {
-            searchClassAndParentsForPossiblyUnimplementedMethods(clazz.getSuperclass(), resolvedSuperClass, possiblyUnimplementedMethods);
-        }
-        for (String itf : clazz.getInterfaces()) {
-            IResolvedClass resolvedInterface = index.findClass(itf);
-            if (resolvedInterface != null) {
-                searchClassAndParentsForPossiblyUnimplementedMethods(itf, resolvedInterface, possiblyUnimplementedMethods);
+    private void searchClassForPossiblyUnimplementedMethods(String className, IResolvedClass clazz, Map<NameAndDesc, PossiblyUnimplementedMethod> possiblyUnimplementedMethods) {
+        // go through the table by index, so that only the possibly unimplemented methods are allocated
+        MemberTable methods = clazz.getMethodTable();
+        boolean isInterface = clazz.getAccess().isInterface();
+        for (int i = 0; i < methods.size(); i++) {
+            int access = methods.access(i);
+            if ((access & Opcodes.ACC_ABSTRACT) != 0
+                || (isInterface && (access & Opcodes.ACC_STATIC) == 0 && checkMethodAccessible(className, clazz, AccessLevel.fromAsm(access)))) {
+                NameAndDesc nameAndDesc = new NameAndDesc(methods.name(i), methods.descriptor(i));
+                possiblyUnimplementedMethods.merge(nameAndDesc, new PossiblyUnimplementedMethod(className, new AccessFlags(access)), PossiblyUnimplementedMethod::maxVisibility);
             }
         }
     }
 
     protected boolean isMethodAccessible(String containingClassName, AccessLevel accessLevel) {
         IResolvedClass containingClass = index.findClass(containingClassName);
-        return containingClass != null && isMethodAccessible(containingClassName, containingClass, accessLevel);
+        return containingClass != null && checkMethodAccessible(containingClassName, containingClass, accessLevel);
+    }
+
+    private boolean checkMethodAccessible(String containingClassName, IResolvedClass containingClass, AccessLevel accessLevel) {
+        if (!isAccessibilitySharedByPackage(containingClassName, accessLevel)) {
+            accessibilityDependsOnClass = true;
+        }
+        return isMethodAccessible(containingClassName, containingClass, accessLevel);
     }
 
     protected abstract boolean isMethodAccessible(String containingClassName, IResolvedClass containingClass, AccessLevel accessLevel);
 
+    // whether a method with the given access level in the given class is accessible to every class which shares the
+    // cached inherited methods with this one, or inaccessible to all of them
+    private boolean isAccessibilitySharedByPackage(String containingClassName, AccessLevel accessLevel) {
+        if (accessLevel == AccessLevel.PUBLIC || (accessLevel != AccessLevel.PRIVATE && AsmUtil.areSamePackage(getAccessingClassName(), containingClassName))) {
+            return true;
+        }
+        if (accessLevel == AccessLevel.PROTECTED && isAccessingClassDirectSubclass()) {
+            ClassHierarchy superHierarchy = index.getHierarchy(superName);
+            return superHierarchy != null && superHierarchy.isSubclassOf(containingClassName);
+        }
+        return false;
+    }
+
+    protected abstract String getAccessingClassName();
+
+    /**
+     * Returns whether the accessing class is known to have this checker's superclass as its direct superclass.
+     */
+    protected boolean isAccessingClassDirectSubclass() {
+        return false;
+    }
+
+    /**
+     * Returns whether {@link #multiLookupMethod} may find a method with the given name which isn't inherited from the
+     * parents.
+     */
+    protected abstract boolean mayDeclareMethod(String name);
+
     protected abstract List<OwnedClassMember> multiLookupMethod(String name, String desc);
 
     protected abstract void onDiamondProblem(String methodName, String methodDesc);
     protected abstract void onAbstractMethodUnimplemented(String methodOwner, String methodName, String methodDesc);
     protected abstract void onIncorrectInterfaceMethodLookup(String interfaceName, String methodName, String methodDesc, String resolvedClassName, String problematicAccessModifier);
 
+    @FunctionalInterface
+    private interface MethodLookup {
+        List<OwnedClassMember> multiLookupMethod(String name, String desc);
+    }
+
+    public enum Outcome {
+        IMPLEMENTED, DIAMOND_PROBLEM, ABSTRACT_METHOD_UNIMPLEMENTED, INCORRECT_INTERFACE_METHOD_LOOKUP
+    }
+
+    public record InheritedMethod(
+        String name,
+        String desc,
+        String owner,
+        AccessFlags access,
+        Outcome outcome,
+        @Nullable String resolvedClassName,
+        @Nullable String problematicAccessModifier
+    ) {
+    }
+
     private record PossiblyUnimplementedMethod(String owner, AccessFlags access) {
         static PossiblyUnimplementedMethod maxVisibility(PossiblyUnimplementedMethod a, PossiblyUnimplementedMethod b) {
             return b.access.accessLevel().isHigherVisibility(a.access().accessLevel()) ? b : a;
@@ -130,6 +239,9 @@ public abstract class UnimplementedMethodChecker {
 
     public static abstract class Simple extends UnimplementedMethodChecker {
         protected final String className;
+        @Nullable
+        private IResolvedClass resolvedClass;
+        private boolean resolvedClassComputed;
 
         protected Simple(Index index, String className, String superName, String @Nullable [] interfaces) {
             super(index, superName, interfaces);
@@ -141,6 +253,39 @@ public abstract class UnimplementedMethodChecker {
             return AsmUtil.isMemberAccessible(index, className, containingClassName, containingClass, accessLevel);
         }
 
+        @Override
+        protected String getAccessingClassName() {
+            return className;
+        }
+
+        @Override
+        protected boolean isAccessingClassDirectSubclass() {
+            return getResolvedClass() != null;
+        }
+
+        @Override
+        protected boolean mayDeclareMethod(String name) {
+            IResolvedClass resolvedClass = getResolvedClass();
+            return resolvedClass == null || resolvedClass.getMethodTable().indexOfName(name) >= 0;
+        }
+
+        // the class being checked as it's indexed, if its lookups are the same as those from its parents besides its
+        // own methods
+        @Nullable
+        private IResolvedClass getResolvedClass() {
+            if (!resolvedClassComputed) {
+                IResolvedClass clazz = index.findClass(className);
+                if (clazz != null
+                    && Objects.equals(clazz.getSuperclass(), superName)
+                    && clazz.getInterfaces().equals(interfaces == null ? List.of() : Arrays.asList(interfaces))
+                ) {
+                    resolvedClass = clazz;
+                }
+                resolvedClassComputed = true;
+            }
+            return resolvedClass;
+        }
+
         @Override
         protected List<OwnedClassMember> multiLookupMethod(String name, String desc) {
             return InheritanceUtil.multiLookupMethod(index, className, name, desc);
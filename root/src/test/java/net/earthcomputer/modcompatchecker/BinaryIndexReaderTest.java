@@ -0,0 +1,29 @@
+package net.earthcomputer.modcompatchecker;
+
+import net.earthcomputer.modcompatchecker.indexer.Index;
+import net.earthcomputer.modcompatchecker.indexer.IndexBuilder;
+import net.earthcomputer.modcompatchecker.indexer.IndexFormat;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+public class BinaryIndexReaderTest {
+    @TempDir
+    Path tempDir;
+
+    @Test
+    public void testLazyBinaryLoad() throws IOException {
+        IndexBuilder index = IndexTestUtil.indexTestLib();
+        Path path = tempDir.resolve("index.bin");
+        IndexFormat.BINARY.write(index, path);
+
+        IndexBuilder lazyBuilder = new IndexBuilder();
+        IndexFormat.BINARY.load(lazyBuilder, path);
+        Index lazyIndex = lazyBuilder.build();
+        Assertions.assertNull(lazyIndex.findClass("testLib/DoesNotExist"));
+        IndexTestUtil.assertSameClasses(index, lazyIndex);
+    }
+}
@@ -0,0 +1,125 @@
+package net.earthcomputer.modcompatchecker;
+
+import net.earthcomputer.modcompatchecker.util.BoundedCache;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+public class BoundedCacheTest {
+    @Test
+    public void testCapacity() {
+        Assertions.assertThrows(IllegalArgumentException.class, () -> new BoundedCache<String, String>(0));
+
+        BoundedCache<Integer, Integer> cache = new BoundedCache<>(4);
+        for (int i = 0; i < 10; i++) {
+            cache.putIfAbsent(i, i);
+            Assertions.assertTrue(cache.size() <= 4);
+        }
+        Assertions.assertEquals(4, cache.size());
+        Assertions.assertEquals(4, cache.capacity());
+    }
+
+    @Test
+    public void testPutIfAbsentKeepsExisting() {
+        BoundedCache<String, String> cache = new BoundedCache<>(2);
+        Assertions.assertEquals("a1", cache.putIfAbsent("a", "a1"));
+        Assertions.assertEquals("a1", cache.putIfAbsent("a", "a2"));
+        Assertions.assertEquals("a1", cache.get("a"));
+        Assertions.assertEquals(1, cache.size());
+    }
+
+    @Test
+    public void testEvictionOrder() {
+        BoundedCache<String, String> cache = new BoundedCache<>(3);
+        cache.putIfAbsent("a", "a");
+        cache.putIfAbsent("b", "b");
+        cache.putIfAbsent("c", "c");
+
+        // a has been used since it was added, so it gets a second chance and b is evicted instead
+        Assertions.assertEquals("a", cache.get("a"));
+        cache.putIfAbsent("d", "d");
+        Assertions.assertEquals("a", cache.get("a"));
+        Assertions.assertNull(cache.get("b"));
+        Assertions.assertEquals("c", cache.get("c"));
+        Assertions.assertEquals("d", cache.get("d"));
+
+        // every entry is now used, so the sweep clears them all and evicts the first one in the clock, c, since a was
+        // moved behind it when it got its second chance
+        cache.putIfAbsent("e", "e");
+        Assertions.assertNull(cache.get("c"));
+        Assertions.assertEquals("a", cache.get("a"));
+        Assertions.assertEquals("d", cache.get("d"));
+        Assertions.assertEquals("e", cache.get("e"));
+    }
+
+    @Test
+    public void testNewEntrySurvivesInsertion() {
+        BoundedCache<Integer, Integer> cache = new BoundedCache<>(8);
+        for (int i = 0; i < 8; i++) {
+            cache.putIfAbsent(i, i);
+        }
+
+        // with every entry in use, each new entry must still be in the cache after it's added
+        for (int i = 8; i < 100; i++) {
+            for (int j = i - 7; j < i; j++) {
+                cache.get(j);
+            }
+            cache.putIfAbsent(i, i);
+            Assertions.assertEquals(i, cache.get(i), "entry " + i);
+        }
+    }
+
+    @Test
+    public void testStatistics() {
+        BoundedCache<String, String> cache = new BoundedCache<>(2);
+        Assertions.assertNull(cache.get("a"));
+        cache.putIfAbsent("a", "a");
+        cache.putIfAbsent("b", "b");
+        cache.get("a");
+        cache.get("a");
+        cache.putIfAbsent("c", "c");
+        Assertions.assertNull(cache.get("b"));
+
+        Assertions.assertEquals(2, cache.getHits());
+        Assertions.assertEquals(2, cache.getMisses());
+        Assertions.assertEquals(1, cache.getEvictions());
+        Assertions.assertEquals("2 hits, 2 misses (50.0% hit rate), 1 evictions, 2/2 entries", cache.toString());
+    }
+
+    @Test
+    public void testConcurrentAccess() throws InterruptedException, ExecutionException {
+        BoundedCache<Integer, Integer> cache = new BoundedCache<>(16);
+        ForkJoinPool executor = new ForkJoinPool(4);
+        try {
+            // the assertions fail on the pool threads, so the failures are rethrown by Future.get
+            List<Future<?>> futures = new ArrayList<>();
+            for (int thread = 0; thread < 4; thread++) {
+                int seed = thread;
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < 10000; i++) {
+                        int key = (i * 31 + seed) % 64;
+                        Integer value = cache.get(key);
+                        if (value == null) {
+                            value = cache.putIfAbsent(key, key);
+                        }
+                        Assertions.assertEquals(key, value);
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+            Assertions.assertTrue(executor.awaitTermination(1, TimeUnit.MINUTES));
+        }
+        Assertions.assertTrue(cache.size() <= 16);
+        Assertions.assertEquals(40000, cache.getHits() + cache.getMisses());
+    }
+}
@@ -0,0 +1,102 @@
+package net.earthcomputer.modcompatchecker;
+
+import net.earthcomputer.modcompatchecker.indexer.IndexBuilder;
+import net.earthcomputer.modcompatchecker.indexer.Indexer;
+import net.earthcomputer.modcompatchecker.indexer.IndexerClassVisitor;
+import net.earthcomputer.modcompatchecker.util.AsmUtil;
+import net.earthcomputer.modcompatchecker.util.JarSession;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.objectweb.asm.ClassReader;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CompletionException;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+
+public class ClassHeaderReaderTest {
+    @TempDir
+    Path tempDir;
+
+    @Test
+    public void testHeaderReaderMatchesAsm() throws IOException {
+        for (String jarProperty : List.of("testNewLib.jar", "testMod.jar")) {
+            try (JarSession jar = JarSession.open(Path.of(System.getProperty(jarProperty)))) {
+                IndexBuilder headerIndex = new IndexBuilder();
+                Indexer.indexJar(jar, headerIndex, Runnable::run);
+
+                IndexBuilder asmIndex = new IndexBuilder();
+                for (JarSession.Entry entry : jar.getEntries()) {
+                    if (entry.getName().endsWith(".class")) {
+                        new ClassReader(jar.getBytes(entry)).accept(new IndexerClassVisitor(asmIndex), ClassReader.SKIP_CODE);
+                    }
+                }
+
+                Assertions.assertEquals(IndexTestUtil.toText(asmIndex), IndexTestUtil.toText(headerIndex), jarProperty);
+            }
+        }
+    }
+
+    @Test
+    public void testHeaderReaderFallback() throws IOException {
+        byte[] classBytes;
+        try (JarSession jar = JarSession.open(Path.of(System.getProperty("testNewLib.jar")))) {
+            JarSession.Entry entry = jar.getEntries().stream().filter(e -> e.getName().endsWith(".class")).findFirst().orElseThrow();
+            classBytes = jar.getBytes(entry);
+        }
+        assertSameOutcomeAsAsm(classBytes);
+
+        // a constant pool tag which doesn't exist
+        byte[] unknownTag = classBytes.clone();
+        unknownTag[10] = 2;
+        assertSameOutcomeAsAsm(unknownTag);
+
+        // a class file version newer than the header reader knows about
+        byte[] newVersion = classBytes.clone();
+        newVersion[6] = 0;
+        newVersion[7] = (byte) (AsmUtil.LATEST_CLASS_VERSION + 1);
+        assertSameOutcomeAsAsm(newVersion);
+
+        for (int length = 0; length < classBytes.length; length++) {
+            byte[] truncated = new byte[length];
+            System.arraycopy(classBytes, 0, truncated, 0, length);
+            assertSameOutcomeAsAsm(truncated);
+        }
+    }
+
+    // indexes the class file both through the indexer and through ASM directly, expecting either the same index or the
+    // same type of exception (the JIT may leave out the message of a hot implicit exception)
+    private void assertSameOutcomeAsAsm(byte[] classBytes) throws IOException {
+        Path jar = tempDir.resolve("single.jar");
+        try (JarOutputStream output = new JarOutputStream(Files.newOutputStream(jar))) {
+            output.putNextEntry(new JarEntry("Test.class"));
+            output.write(classBytes);
+            output.closeEntry();
+        }
+        String headerOutcome;
+        try {
+            IndexBuilder index = new IndexBuilder();
+            Indexer.indexJar(jar, index);
+            headerOutcome = IndexTestUtil.toText(index);
+        } catch (CompletionException e) {
+            headerOutcome = e.getCause().getClass().getName();
+        } catch (RuntimeException e) {
+            headerOutcome = e.getClass().getName();
+        }
+
+        String asmOutcome;
+        try {
+            IndexBuilder index = new IndexBuilder();
+            new ClassReader(classBytes).accept(new IndexerClassVisitor(index), ClassReader.SKIP_CODE);
+            asmOutcome = IndexTestUtil.toText(index);
+        } catch (RuntimeException e) {
+            asmOutcome = e.getClass().getName();
+        }
+
+        Assertions.assertEquals(asmOutcome, headerOutcome, "length " + classBytes.length);
+    }
+}
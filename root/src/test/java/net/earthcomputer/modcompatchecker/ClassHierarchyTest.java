@@ -0,0 +1,42 @@
+package net.earthcomputer.modcompatchecker;
+
+import net.earthcomputer.modcompatchecker.indexer.ClassHierarchy;
+import net.earthcomputer.modcompatchecker.indexer.IResolvedClass;
+import net.earthcomputer.modcompatchecker.indexer.Index;
+import net.earthcomputer.modcompatchecker.indexer.IndexBuilder;
+import net.earthcomputer.modcompatchecker.indexer.JdkIndex;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+
+public class ClassHierarchyTest {
+    @Test
+    public void testJdkClassesNotKept() {
+        // a cache too small for the ancestors of ArrayList, so that computing its hierarchy evicts them
+        JdkIndex jdk = JdkIndex.runtime().withCacheCapacity(1);
+        IndexBuilder builder = new IndexBuilder();
+        builder.setJdk(jdk);
+        Index index = builder.build();
+
+        ClassHierarchy arrayList = index.getHierarchy("java/util/ArrayList");
+        Assertions.assertNotNull(arrayList);
+        Assertions.assertTrue(jdk.getClassCache().getEvictions() > 0);
+        ClassHierarchy abstractList = arrayList.getAncestors().stream().filter(ancestor -> ancestor.getName().equals("java/util/AbstractList")).findFirst().orElseThrow();
+
+        // the evicted class is indexed again rather than kept by the hierarchy
+        IResolvedClass resolvedClass = abstractList.getResolvedClass();
+        Assertions.assertSame(jdk.findClass("java/util/AbstractList"), resolvedClass);
+        Assertions.assertEquals("java/util/AbstractCollection", resolvedClass.getSuperclass());
+    }
+
+    @Test
+    public void testIndexedClassesKept() throws IOException {
+        Index index = IndexTestUtil.indexTestLib().build();
+        for (String className : IndexTestUtil.toText(IndexTestUtil.indexTestLib()).lines().filter(line -> line.startsWith("class ")).map(line -> line.split(" ")[2]).toList()) {
+            ClassHierarchy hierarchy = index.getHierarchy(className);
+            Assertions.assertNotNull(hierarchy, className);
+            Assertions.assertSame(index.findClass(className), hierarchy.getResolvedClass(), className);
+        }
+    }
+}
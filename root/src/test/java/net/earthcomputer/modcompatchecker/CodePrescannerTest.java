@@ -0,0 +1,247 @@
+package net.earthcomputer.modcompatchecker;
+
+import net.earthcomputer.modcompatchecker.checker.BinaryCompatChecker;
+import net.earthcomputer.modcompatchecker.checker.CheckerConfig;
+import net.earthcomputer.modcompatchecker.config.Config;
+import net.earthcomputer.modcompatchecker.config.ConfigLoader;
+import net.earthcomputer.modcompatchecker.indexer.Index;
+import net.earthcomputer.modcompatchecker.indexer.IndexBuilder;
+import net.earthcomputer.modcompatchecker.indexer.Indexer;
+import net.earthcomputer.modcompatchecker.util.JarSession;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.ConstantDynamic;
+import org.objectweb.asm.Handle;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.Consumer;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+
+// Checks classes with the code prescan, which skips visiting the code of classes it finds no problems in, and with their
+// code always visited in full, and expects the same problems either way.
+public class CodePrescannerTest {
+    private static final String REMOVED_CLASS = "testLib/RemovedClass";
+    private static final Handle LAMBDA_METAFACTORY = new Handle(Opcodes.H_INVOKESTATIC, "java/lang/invoke/LambdaMetafactory", "metafactory", "(Ljava/lang/invoke/MethodHandles$Lookup;Ljava/lang/String;Ljava/lang/invoke/MethodType;Ljava/lang/invoke/MethodType;Ljava/lang/invoke/MethodHandle;Ljava/lang/invoke/MethodType;)Ljava/lang/invoke/CallSite;", false);
+    private static final Handle STRING_CONCAT_FACTORY = new Handle(Opcodes.H_INVOKESTATIC, "java/lang/invoke/StringConcatFactory", "makeConcatWithConstants", "(Ljava/lang/invoke/MethodHandles$Lookup;Ljava/lang/String;Ljava/lang/invoke/MethodType;Ljava/lang/String;[Ljava/lang/Object;)Ljava/lang/invoke/CallSite;", false);
+
+    @TempDir
+    static Path tempDir;
+    private static Path generatedJar;
+    private static final List<String> generatedClasses = new ArrayList<>();
+    private static Config config;
+
+    @BeforeAll
+    public static void setup() throws IOException {
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(Objects.requireNonNull(CodePrescannerTest.class.getResourceAsStream("/all_classes_loaded_by_reflection.cfg")), StandardCharsets.UTF_8))) {
+            config = ConfigLoader.load(reader);
+        }
+
+        generatedJar = tempDir.resolve("generated.jar");
+        try (JarOutputStream output = new JarOutputStream(Files.newOutputStream(generatedJar))) {
+            // a problem after each kind of instruction whose length the prescan works out differently, so that getting
+            // the length wrong would miss it
+            for (int padding = 0; padding < 4; padding++) {
+                int nops = padding;
+                writeClass(output, "gen/TableSwitch" + padding, "(I)V", method -> {
+                    for (int i = 0; i < nops; i++) {
+                        method.visitInsn(Opcodes.NOP);
+                    }
+                    Label end = new Label();
+                    method.visitVarInsn(Opcodes.ILOAD, 0);
+                    method.visitTableSwitchInsn(0, 4, end, end, end, end, end, end);
+                    method.visitLabel(end);
+                    referenceRemovedClass(method);
+                });
+                writeClass(output, "gen/LookupSwitch" + padding, "(I)V", method -> {
+                    for (int i = 0; i < nops; i++) {
+                        method.visitInsn(Opcodes.NOP);
+                    }
+                    Label end = new Label();
+                    method.visitVarInsn(Opcodes.ILOAD, 0);
+                    method.visitLookupSwitchInsn(end, new int[] {1, 1000, 100000}, new Label[] {end, end, end});
+                    method.visitLabel(end);
+                    referenceRemovedClass(method);
+                });
+            }
+            // the operands end in 0x11 (sipush), so that reading them as an instruction would skip over the next one
+            writeClass(output, "gen/WideStore", "()V", method -> {
+                method.visitInsn(Opcodes.ICONST_0);
+                method.visitVarInsn(Opcodes.ISTORE, 0x111);
+                referenceRemovedClass(method);
+            });
+            writeClass(output, "gen/WideIinc", "()V", method -> {
+                method.visitInsn(Opcodes.ICONST_0);
+                method.visitVarInsn(Opcodes.ISTORE, 0x111);
+                method.visitIincInsn(0x111, 0x111);
+                referenceRemovedClass(method);
+            });
+            writeClass(output, "gen/WideConstants", "()V", method -> {
+                // enough constants that the last ones need ldc_w
+                for (int i = 0; i < 300; i++) {
+                    method.visitLdcInsn("constant" + i);
+                    method.visitInsn(Opcodes.POP);
+                }
+                method.visitLdcInsn(1234567890123L);
+                method.visitInsn(Opcodes.POP2);
+                method.visitLdcInsn(Type.getObjectType(REMOVED_CLASS));
+                method.visitInsn(Opcodes.POP);
+            });
+            writeClass(output, "gen/InvokeDynamic", "()V", method -> {
+                method.visitLdcInsn("a");
+                method.visitInvokeDynamicInsn("makeConcatWithConstants", "(Ljava/lang/String;)Ljava/lang/String;", STRING_CONCAT_FACTORY, "\u0001!");
+                method.visitInsn(Opcodes.POP);
+                referenceRemovedClass(method);
+            });
+            writeClass(output, "gen/Lambda", "()V", method -> {
+                method.visitInvokeDynamicInsn("run", "()LtestLib/RemovedFunctionalInterface;", LAMBDA_METAFACTORY, Type.getMethodType("()V"), new Handle(Opcodes.H_INVOKESTATIC, "gen/Lambda", "run", "()V", false), Type.getMethodType("()V"));
+                method.visitInsn(Opcodes.POP);
+            });
+            // a bootstrap method without its own checker, where the arguments are checked as constants
+            String bootstrapDesc = "(Ljava/lang/invoke/MethodHandles$Lookup;Ljava/lang/String;Ljava/lang/invoke/MethodType;Ljava/lang/invoke/MethodHandle;)Ljava/lang/invoke/CallSite;";
+            ClassWriter indyArgument = newClass("gen/InvokeDynamicArgument");
+            indyArgument.visitMethod(Opcodes.ACC_PUBLIC | Opcodes.ACC_STATIC | Opcodes.ACC_NATIVE, "bootstrap", bootstrapDesc, null, null).visitEnd();
+            addMethod(indyArgument, "run", "()V", method -> {
+                method.visitInvokeDynamicInsn("run", "()V", new Handle(Opcodes.H_INVOKESTATIC, "gen/InvokeDynamicArgument", "bootstrap", bootstrapDesc, false), new Handle(Opcodes.H_INVOKESTATIC, REMOVED_CLASS, "run", "()V", false));
+            });
+            writeClass(output, "gen/InvokeDynamicArgument", indyArgument);
+            Handle nullConstant = new Handle(Opcodes.H_INVOKESTATIC, "java/lang/invoke/ConstantBootstraps", "nullConstant", "(Ljava/lang/invoke/MethodHandles$Lookup;Ljava/lang/String;Ljava/lang/Class;)Ljava/lang/Object;", false);
+            writeClass(output, "gen/ConstantDynamic", "()V", method -> {
+                method.visitLdcInsn(new ConstantDynamic("constant", "Ljava/lang/Object;", nullConstant));
+                method.visitInsn(Opcodes.POP);
+                referenceRemovedClass(method);
+            });
+            writeClass(output, "gen/ConstantDynamicType", "()V", method -> {
+                method.visitLdcInsn(new ConstantDynamic("constant", "L" + REMOVED_CLASS + ";", nullConstant));
+                method.visitInsn(Opcodes.POP);
+            });
+
+            // problems only in the second method, after the same instructions have been seen in the first
+            ClassWriter secondMethod = newClass("gen/SecondMethod");
+            secondMethod.visitField(Opcodes.ACC_PUBLIC | Opcodes.ACC_FINAL, "value", "I", null, null).visitEnd();
+            addMethod(secondMethod, "<init>", "()V", method -> {
+                method.visitVarInsn(Opcodes.ALOAD, 0);
+                method.visitMethodInsn(Opcodes.INVOKESPECIAL, "java/lang/Object", "<init>", "()V", false);
+                method.visitVarInsn(Opcodes.ALOAD, 0);
+                method.visitInsn(Opcodes.ICONST_1);
+                method.visitFieldInsn(Opcodes.PUTFIELD, "gen/SecondMethod", "value", "I");
+            });
+            addMethod(secondMethod, "second", "()V", method -> {
+                method.visitVarInsn(Opcodes.ALOAD, 0);
+                method.visitInsn(Opcodes.ICONST_1);
+                method.visitFieldInsn(Opcodes.PUTFIELD, "gen/SecondMethod", "value", "I");
+            });
+            writeClass(output, "gen/SecondMethod", secondMethod);
+            ClassWriter secondMethodRemoved = newClass("gen/SecondMethodRemoved");
+            addMethod(secondMethodRemoved, "first", "()V", method -> {
+                method.visitTypeInsn(Opcodes.NEW, "java/lang/Object");
+                method.visitInsn(Opcodes.POP);
+            });
+            addMethod(secondMethodRemoved, "second", "()V", CodePrescannerTest::referenceRemovedClass);
+            writeClass(output, "gen/SecondMethodRemoved", secondMethodRemoved);
+        }
+    }
+
+    @Test
+    public void testModClasses() throws IOException {
+        Path modJar = Path.of(System.getProperty("testMod.jar"));
+        Index index = buildIndex(modJar);
+        int withProblems = 0;
+        int withoutProblems = 0;
+        try (JarSession jar = JarSession.open(modJar)) {
+            for (JarSession.Entry entry : jar.getEntries()) {
+                if (entry.getName().endsWith(".class")) {
+                    if (assertSameProblems(index, jar, entry).isEmpty()) {
+                        withoutProblems++;
+                    } else {
+                        withProblems++;
+                    }
+                }
+            }
+        }
+        // both the skipped and the visited paths have been taken
+        Assertions.assertNotEquals(0, withProblems);
+        Assertions.assertNotEquals(0, withoutProblems);
+    }
+
+    @Test
+    public void testInstructionForms() throws IOException {
+        Index index = buildIndex(generatedJar);
+        try (JarSession jar = JarSession.open(generatedJar)) {
+            for (String className : generatedClasses) {
+                JarSession.Entry entry = jar.getEntry(className + ".class");
+                Assertions.assertNotNull(entry, className);
+                Assertions.assertNotEquals(List.of(), assertSameProblems(index, jar, entry), className);
+            }
+        }
+    }
+
+    private static Index buildIndex(Path modJar) throws IOException {
+        IndexBuilder builder = new IndexBuilder();
+        Indexer.indexJar(Path.of(System.getProperty("testNewLib.jar")), builder);
+        Indexer.indexJar(modJar, builder);
+        return builder.build();
+    }
+
+    private static List<String> assertSameProblems(Index index, JarSession jar, JarSession.Entry entry) {
+        ErrorCollectingProblemCollector prescanned = new ErrorCollectingProblemCollector();
+        BinaryCompatChecker.checkClass(index, new CheckerConfig(config), jar, entry, prescanned, true);
+        ErrorCollectingProblemCollector visited = new ErrorCollectingProblemCollector();
+        BinaryCompatChecker.checkClass(index, new CheckerConfig(config), jar, entry, visited, false);
+        Assertions.assertEquals(visited.getMessages(), prescanned.getMessages(), entry.getName());
+        return visited.getMessages();
+    }
+
+    private static void referenceRemovedClass(MethodVisitor method) {
+        method.visitTypeInsn(Opcodes.NEW, REMOVED_CLASS);
+        method.visitInsn(Opcodes.POP);
+    }
+
+    private static ClassWriter newClass(String className) {
+        ClassWriter writer = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+        writer.visit(Opcodes.V17, Opcodes.ACC_PUBLIC | Opcodes.ACC_SUPER, className, null, "java/lang/Object", null);
+        return writer;
+    }
+
+    private static void addMethod(ClassWriter writer, String name, String desc, Consumer<MethodVisitor> code) {
+        MethodVisitor method = writer.visitMethod(name.equals("<init>") ? Opcodes.ACC_PUBLIC : Opcodes.ACC_PUBLIC | Opcodes.ACC_STATIC, name, desc, null, null);
+        method.visitCode();
+        Label start = new Label();
+        method.visitLabel(start);
+        method.visitLineNumber(1, start);
+        code.accept(method);
+        method.visitInsn(Opcodes.RETURN);
+        method.visitMaxs(0, 0);
+        method.visitEnd();
+    }
+
+    // a class with a single static run method
+    private static void writeClass(JarOutputStream output, String className, String desc, Consumer<MethodVisitor> code) throws IOException {
+        ClassWriter writer = newClass(className);
+        addMethod(writer, "run", desc, code);
+        writeClass(output, className, writer);
+    }
+
+    private static void writeClass(JarOutputStream output, String className, ClassWriter writer) throws IOException {
+        writer.visitEnd();
+        output.putNextEntry(new JarEntry(className + ".class"));
+        output.write(writer.toByteArray());
+        output.closeEntry();
+        generatedClasses.add(className);
+    }
+}
@@ -0,0 +1,25 @@
+package net.earthcomputer.modcompatchecker;
+
+import net.earthcomputer.modcompatchecker.indexer.Index;
+import net.earthcomputer.modcompatchecker.indexer.IndexBuilder;
+import net.earthcomputer.modcompatchecker.indexer.Indexer;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+public class IndexBuilderTest {
+    @Test
+    public void testSnapshotIsolation() throws IOException {
+        String className = IndexTestUtil.toText(IndexTestUtil.indexTestLib()).lines().filter(line -> line.startsWith("class ")).findFirst().orElseThrow().split(" ")[2];
+
+        // a snapshot doesn't see classes added to the builder afterwards, even ones it already failed to find
+        IndexBuilder builder = new IndexBuilder();
+        Index before = builder.build();
+        Assertions.assertNull(before.findClass(className));
+        Indexer.indexJar(Path.of(System.getProperty("testNewLib.jar")), builder);
+        Assertions.assertNull(before.findClass(className));
+        Assertions.assertNotNull(builder.build().findClass(className));
+    }
+}
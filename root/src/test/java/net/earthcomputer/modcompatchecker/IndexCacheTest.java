@@ -0,0 +1,41 @@
+package net.earthcomputer.modcompatchecker;
+
+import net.earthcomputer.modcompatchecker.config.Config;
+import net.earthcomputer.modcompatchecker.indexer.IndexBuilder;
+import net.earthcomputer.modcompatchecker.indexer.IndexCache;
+import net.earthcomputer.modcompatchecker.indexer.IndexFormat;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Stream;
+
+public class IndexCacheTest {
+    @TempDir
+    Path tempDir;
+
+    @Test
+    public void testIndexCache() throws IOException {
+        Path jar = Path.of(System.getProperty("testNewLib.jar"));
+        String expected = IndexTestUtil.toText(IndexTestUtil.indexTestLib());
+        Path cacheDir = tempDir.resolve("cache");
+
+        IndexBuilder missIndex = new IndexBuilder();
+        new IndexCache(cacheDir).indexJar(jar, Config.empty(), missIndex);
+        Assertions.assertEquals(expected, IndexTestUtil.toText(missIndex));
+        List<Path> entries;
+        try (Stream<Path> files = Files.list(cacheDir)) {
+            entries = files.toList();
+        }
+        Assertions.assertEquals(1, entries.size());
+        Assertions.assertEquals(IndexFormat.BINARY, IndexFormat.detect(entries.get(0)));
+
+        IndexBuilder hitIndex = new IndexBuilder();
+        new IndexCache(cacheDir).indexJar(jar, Config.empty(), hitIndex);
+        IndexTestUtil.assertSameClasses(IndexTestUtil.indexTestLib(), hitIndex.build());
+    }
+}
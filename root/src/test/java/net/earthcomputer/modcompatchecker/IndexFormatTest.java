@@ -0,0 +1,42 @@
+package net.earthcomputer.modcompatchecker;
+
+import net.earthcomputer.modcompatchecker.indexer.IndexBuilder;
+import net.earthcomputer.modcompatchecker.indexer.IndexFormat;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+public class IndexFormatTest {
+    @TempDir
+    Path tempDir;
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        IndexBuilder index = IndexTestUtil.indexTestLib();
+        String expected = IndexTestUtil.toText(index);
+
+        for (IndexFormat format : IndexFormat.values()) {
+            Path path = tempDir.resolve("index." + format.name().toLowerCase());
+            format.write(index, path);
+            Assertions.assertEquals(format, IndexFormat.detect(path));
+
+            IndexBuilder readIndex = new IndexBuilder();
+            format.read(readIndex, path);
+            Assertions.assertEquals(expected, IndexTestUtil.toText(readIndex), format.name());
+        }
+    }
+
+    @Test
+    public void testBinarySmallerThanText() throws IOException {
+        IndexBuilder index = IndexTestUtil.indexTestLib();
+        Path textPath = tempDir.resolve("index.txt");
+        Path binaryPath = tempDir.resolve("index.bin");
+        IndexFormat.TEXT.write(index, textPath);
+        IndexFormat.BINARY.write(index, binaryPath);
+        Assertions.assertTrue(Files.size(binaryPath) < Files.size(textPath));
+    }
+}
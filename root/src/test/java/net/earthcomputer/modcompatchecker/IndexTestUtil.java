@@ -0,0 +1,91 @@
+package net.earthcomputer.modcompatchecker;
+
+import net.earthcomputer.modcompatchecker.checker.Checker;
+import net.earthcomputer.modcompatchecker.config.Config;
+import net.earthcomputer.modcompatchecker.indexer.IResolvedClass;
+import net.earthcomputer.modcompatchecker.indexer.Index;
+import net.earthcomputer.modcompatchecker.indexer.IndexBuilder;
+import net.earthcomputer.modcompatchecker.indexer.Indexer;
+import net.earthcomputer.modcompatchecker.util.ClassMember;
+import net.earthcomputer.modcompatchecker.util.JarSession;
+import org.junit.jupiter.api.Assertions;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Opcodes;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+
+// Helpers shared by the tests of the indexer
+final class IndexTestUtil {
+    private IndexTestUtil() {
+    }
+
+    static IndexBuilder indexTestLib() throws IOException {
+        IndexBuilder index = new IndexBuilder();
+        Indexer.indexJar(Path.of(System.getProperty("testNewLib.jar")), index);
+        return index;
+    }
+
+    static String toText(IndexBuilder index) {
+        StringWriter writer = new StringWriter();
+        index.serialize(new PrintWriter(writer));
+        return writer.toString();
+    }
+
+    static void assertSameClasses(IndexBuilder expectedIndex, Index actualIndex) {
+        Index expectedSnapshot = expectedIndex.build();
+        for (String line : toText(expectedIndex).split("\n")) {
+            if (line.startsWith("class ")) {
+                String className = line.split(" ")[2];
+                IResolvedClass expected = expectedSnapshot.findClass(className);
+                IResolvedClass actual = actualIndex.findClass(className);
+                Assertions.assertNotNull(expected);
+                Assertions.assertNotNull(actual, className);
+                Assertions.assertEquals(expected.getAccess(), actual.getAccess(), className);
+                Assertions.assertEquals(expected.getSuperclass(), actual.getSuperclass(), className);
+                Assertions.assertEquals(expected.getInterfaces(), actual.getInterfaces(), className);
+                Assertions.assertEquals(List.copyOf(expected.getFields()), List.copyOf(actual.getFields()), className);
+                Assertions.assertEquals(List.copyOf(expected.getMethods()), List.copyOf(actual.getMethods()), className);
+            }
+        }
+    }
+
+    static void writeClass(JarOutputStream output, String entryName, String className, String fieldName) throws IOException {
+        ClassWriter writer = new ClassWriter(0);
+        writer.visit(Opcodes.V17, Opcodes.ACC_PUBLIC, className, null, "java/lang/Object", null);
+        writer.visitField(Opcodes.ACC_PUBLIC, fieldName, "I", null, null).visitEnd();
+        writer.visitEnd();
+        output.putNextEntry(new JarEntry(entryName));
+        output.write(writer.toByteArray());
+        output.closeEntry();
+    }
+
+    static void writeClass(JarOutputStream output, ClassWriter writer) throws IOException {
+        writer.visitEnd();
+        byte[] bytes = writer.toByteArray();
+        output.putNextEntry(new JarEntry(new ClassReader(bytes).getClassName() + ".class"));
+        output.write(bytes);
+        output.closeEntry();
+    }
+
+    static void assertOnlyField(Index index, String className, String fieldName) {
+        IResolvedClass clazz = index.findClass(className);
+        Assertions.assertNotNull(clazz, className);
+        Assertions.assertEquals(List.of(fieldName), clazz.getFields().stream().map(ClassMember::name).toList(), className);
+    }
+
+    static List<String> checkProblems(Index index, JarSession modJar) throws IOException {
+        ErrorCollectingProblemCollector problems = new ErrorCollectingProblemCollector();
+        Checker.check(index, Config.empty(), List.of(modJar), problems);
+        List<String> messages = new ArrayList<>(problems.getMessages());
+        messages.sort(null);
+        return messages;
+    }
+}
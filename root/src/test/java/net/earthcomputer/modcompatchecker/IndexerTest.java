@@ -0,0 +1,154 @@
+package net.earthcomputer.modcompatchecker;
+
+import net.earthcomputer.modcompatchecker.indexer.IResolvedClass;
+import net.earthcomputer.modcompatchecker.indexer.Index;
+import net.earthcomputer.modcompatchecker.indexer.IndexBuilder;
+import net.earthcomputer.modcompatchecker.indexer.IndexFormat;
+import net.earthcomputer.modcompatchecker.indexer.Indexer;
+import net.earthcomputer.modcompatchecker.util.JarSession;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.jar.JarOutputStream;
+
+public class IndexerTest {
+    @TempDir
+    Path tempDir;
+
+    @Test
+    public void testParallelIndex() throws IOException {
+        Path jar = Path.of(System.getProperty("testNewLib.jar"));
+        String expected = IndexTestUtil.toText(IndexTestUtil.indexTestLib());
+        ForkJoinPool executor = new ForkJoinPool(4);
+        try {
+            IndexBuilder index = new IndexBuilder();
+            Indexer.indexJar(jar, index, executor);
+            Assertions.assertEquals(expected, IndexTestUtil.toText(index));
+
+            IndexBuilder multiIndex = new IndexBuilder();
+            Indexer.indexAll(List.of(out -> Indexer.indexJar(jar, out, executor), out -> Indexer.indexJar(jar, out, executor)), multiIndex, executor);
+            Assertions.assertEquals(expected, IndexTestUtil.toText(multiIndex));
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testParallelIndexPrecedence() throws IOException {
+        // more entries than fit in one chunk, where some classes are defined again by a later entry in the same chunk
+        // and some by an entry in a later chunk
+        Path jar = tempDir.resolve("generated.jar");
+        try (JarOutputStream output = new JarOutputStream(Files.newOutputStream(jar))) {
+            for (int i = 0; i < 200; i++) {
+                IndexTestUtil.writeClass(output, "gen/C" + i + ".class", "gen/C" + i, "first");
+                if (i % 50 == 1) {
+                    IndexTestUtil.writeClass(output, "gen/early/C" + (i - 1) + ".class", "gen/C" + (i - 1), "early");
+                }
+            }
+            for (int i = 0; i < 200; i += 3) {
+                IndexTestUtil.writeClass(output, "gen/late/C" + i + ".class", "gen/C" + i, "late");
+            }
+        }
+
+        ForkJoinPool executor = new ForkJoinPool(4);
+        try {
+            IndexBuilder sequential = new IndexBuilder();
+            Indexer.indexJar(jar, sequential);
+            IndexBuilder parallel = new IndexBuilder();
+            Indexer.indexJar(jar, parallel, executor);
+            Assertions.assertEquals(IndexTestUtil.toText(sequential), IndexTestUtil.toText(parallel));
+
+            Index snapshot = parallel.build();
+            for (int i = 0; i < 200; i++) {
+                String expected = i % 3 == 0 ? "late" : i % 50 == 0 ? "early" : "first";
+                IndexTestUtil.assertOnlyField(snapshot, "gen/C" + i, expected);
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testIndexAllPrecedence() throws IOException {
+        // two different jars defining some of the same classes
+        Path jarA = tempDir.resolve("a.jar");
+        Path jarB = tempDir.resolve("b.jar");
+        try (JarOutputStream outputA = new JarOutputStream(Files.newOutputStream(jarA)); JarOutputStream outputB = new JarOutputStream(Files.newOutputStream(jarB))) {
+            for (int i = 0; i < 100; i++) {
+                IndexTestUtil.writeClass(outputA, "gen/C" + i + ".class", "gen/C" + i, "a");
+                IndexTestUtil.writeClass(outputB, "gen/C" + (i + 50) + ".class", "gen/C" + (i + 50), "b");
+            }
+        }
+
+        ForkJoinPool executor = new ForkJoinPool(4);
+        try {
+            IndexBuilder aThenB = new IndexBuilder();
+            Indexer.indexAll(List.of(out -> Indexer.indexJar(jarA, out, executor), out -> Indexer.indexJar(jarB, out, executor)), aThenB, executor);
+            IndexBuilder bThenA = new IndexBuilder();
+            Indexer.indexAll(List.of(out -> Indexer.indexJar(jarB, out, executor), out -> Indexer.indexJar(jarA, out, executor)), bThenA, executor);
+
+            Index aThenBSnapshot = aThenB.build();
+            Index bThenASnapshot = bThenA.build();
+            for (int i = 0; i < 150; i++) {
+                IndexTestUtil.assertOnlyField(aThenBSnapshot, "gen/C" + i, i < 50 ? "a" : "b");
+                IndexTestUtil.assertOnlyField(bThenASnapshot, "gen/C" + i, i < 100 ? "a" : "b");
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testBundle() throws IOException {
+        Path jar = Path.of(System.getProperty("testNewLib.jar"));
+        Path textIndex = tempDir.resolve("lib.txt");
+        IndexFormat.TEXT.write(IndexTestUtil.indexTestLib(), textIndex);
+        List<String> classNames = IndexTestUtil.toText(IndexTestUtil.indexTestLib()).lines().filter(line -> line.startsWith("class ")).map(line -> line.split(" ")[2]).toList();
+
+        for (IndexFormat format : IndexFormat.values()) {
+            // the later input takes precedence
+            IndexBuilder bundle = new IndexBuilder();
+            Indexer.bundle(List.of(jar, textIndex), bundle);
+            Path bundlePath = tempDir.resolve("bundle." + format.name().toLowerCase());
+            format.write(bundle, bundlePath);
+
+            IndexBuilder readBundle = new IndexBuilder();
+            format.read(readBundle, bundlePath);
+            Index readBundleSnapshot = readBundle.build();
+            for (String className : classNames) {
+                IResolvedClass clazz = readBundleSnapshot.findClass(className);
+                Assertions.assertNotNull(clazz, className);
+                Assertions.assertEquals("lib.txt", clazz.getSource(), className);
+            }
+
+            // bundling a bundle keeps the original sources
+            IndexBuilder rebundle = new IndexBuilder();
+            Indexer.bundle(List.of(jar, bundlePath), rebundle);
+            Index rebundleSnapshot = rebundle.build();
+            for (String className : classNames) {
+                IResolvedClass clazz = rebundleSnapshot.findClass(className);
+                Assertions.assertNotNull(clazz, className);
+                Assertions.assertEquals("lib.txt", clazz.getSource(), className);
+            }
+        }
+
+        // a jar which is already open is indexed from its session, the same as if it was opened by path
+        IndexBuilder fromPaths = new IndexBuilder();
+        Indexer.bundle(List.of(textIndex, jar), fromPaths);
+        try (JarSession session = JarSession.open(jar)) {
+            IndexBuilder fromSessions = new IndexBuilder();
+            Indexer.bundle(List.of(textIndex, jar), Map.of(jar, List.of(session)), fromSessions, Runnable::run);
+            Assertions.assertEquals(IndexTestUtil.toText(fromPaths), IndexTestUtil.toText(fromSessions));
+            Assertions.assertEquals(jar.getFileName().toString(), fromSessions.build().findClass(classNames.get(0)).getSource());
+            // and left open
+            Assertions.assertNotNull(session.getBytes(session.getEntries().iterator().next()));
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package net.earthcomputer.modcompatchecker;
+
+import net.earthcomputer.modcompatchecker.config.Config;
+import net.earthcomputer.modcompatchecker.indexer.Index;
+import net.earthcomputer.modcompatchecker.indexer.IndexBuilder;
+import net.earthcomputer.modcompatchecker.indexer.IndexFormat;
+import net.earthcomputer.modcompatchecker.indexer.Indexer;
+import net.earthcomputer.modcompatchecker.indexer.JarManifest;
+import net.earthcomputer.modcompatchecker.util.JarSession;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Set;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.jar.JarOutputStream;
+
+public class JarManifestTest {
+    private static final String REUSED_MARKER = "reusedMarker";
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    public void testIncrementalIndex() throws IOException {
+        Path jar = Path.of(System.getProperty("testNewLib.jar"));
+        String expected = IndexTestUtil.toText(IndexTestUtil.indexTestLib());
+
+        // make an "older version" of the jar with one class missing and one class with different contents
+        Path oldJar = tempDir.resolve("old.jar");
+        List<String> classNames;
+        try (JarFile input = new JarFile(jar.toFile()); JarOutputStream output = new JarOutputStream(Files.newOutputStream(oldJar))) {
+            List<JarEntry> classEntries = input.stream().filter(entry -> entry.getName().endsWith(".class")).toList();
+            Assertions.assertTrue(classEntries.size() >= 3);
+            classNames = classEntries.stream().map(entry -> entry.getName().substring(0, entry.getName().length() - ".class".length())).toList();
+            for (int i = 1; i < classEntries.size(); i++) {
+                output.putNextEntry(new JarEntry(classEntries.get(i).getName()));
+                JarEntry contents = classEntries.get(i == 1 ? 2 : i);
+                try (InputStream in = input.getInputStream(contents)) {
+                    in.transferTo(output);
+                }
+                output.closeEntry();
+            }
+        }
+
+        Path oldIndexPath = tempDir.resolve("old.txt");
+        IndexBuilder oldIndex = new IndexBuilder();
+        Indexer.indexJarIncrementally(oldJar, Config.empty(), oldIndex, null).write(JarManifest.sidecarPath(oldIndexPath));
+        IndexFormat.TEXT.write(oldIndex, oldIndexPath);
+        // mark each class in the old index, so that the classes copied across from it can be told apart from the ones
+        // which were parsed again
+        Files.writeString(oldIndexPath, Files.readString(oldIndexPath).replaceAll("(?m)^(class .*)$", "$1\n  field public " + REUSED_MARKER + " I"));
+
+        IndexBuilder newIndex = new IndexBuilder();
+        JarManifest manifest = Indexer.indexJarIncrementally(jar, Config.empty(), newIndex, oldIndexPath);
+        Index newSnapshot = newIndex.build();
+        for (int i = 0; i < classNames.size(); i++) {
+            // the added and the changed class are parsed, the rest are reused
+            boolean reused = newSnapshot.findClass(classNames.get(i)).findField(REUSED_MARKER, "I") != null;
+            Assertions.assertEquals(i >= 2, reused, classNames.get(i));
+        }
+        Assertions.assertEquals(expected, IndexTestUtil.toText(newIndex).replace("  field public " + REUSED_MARKER + " I\n", ""));
+
+        Path newIndexPath = tempDir.resolve("new.txt");
+        manifest.write(JarManifest.sidecarPath(newIndexPath));
+        IndexFormat.TEXT.write(newIndex, newIndexPath);
+        // nothing has changed, so every class is reused, marked or not
+        IndexBuilder reindexed = new IndexBuilder();
+        Indexer.indexJarIncrementally(jar, Config.empty(), reindexed, newIndexPath);
+        Assertions.assertEquals(IndexTestUtil.toText(newIndex), IndexTestUtil.toText(reindexed));
+    }
+
+    @Test
+    public void testDirectoryIncrementalIndex() throws IOException {
+        Path jar = Path.of(System.getProperty("testNewLib.jar"));
+        IndexBuilder expected = IndexTestUtil.indexTestLib();
+        List<String> classNames = IndexTestUtil.toText(expected).lines().filter(line -> line.startsWith("class ")).map(line -> line.split(" ")[2]).toList();
+
+        Path classesDir = tempDir.resolve("classes");
+        try (JarFile input = new JarFile(jar.toFile())) {
+            for (JarEntry entry : input.stream().filter(entry -> entry.getName().endsWith(".class")).toList()) {
+                Path file = classesDir.resolve(entry.getName());
+                Files.createDirectories(file.getParent());
+                try (InputStream in = input.getInputStream(entry)) {
+                    Files.copy(in, file);
+                }
+            }
+        }
+
+        IndexBuilder firstIndex = new IndexBuilder();
+        JarManifest firstManifest;
+        try (JarSession session = JarSession.read(classesDir)) {
+            firstManifest = Indexer.indexJarIncrementally(session, Config.empty(), firstIndex, null, new IndexBuilder(), Runnable::run);
+        }
+        Assertions.assertEquals(IndexTestUtil.toText(expected), IndexTestUtil.toText(firstIndex));
+        Assertions.assertEquals(Set.copyOf(classNames), firstManifest.getChangedClasses(null));
+
+        // only the removed class has changed in the next build
+        String removedClass = classNames.get(0);
+        Files.delete(classesDir.resolve(removedClass + ".class"));
+        IndexBuilder secondIndex = new IndexBuilder();
+        JarManifest secondManifest;
+        try (JarSession session = JarSession.read(classesDir)) {
+            secondManifest = Indexer.indexJarIncrementally(session, Config.empty(), secondIndex, firstManifest, firstIndex, Runnable::run);
+        }
+        Assertions.assertEquals(Set.of(removedClass), secondManifest.getChangedClasses(firstManifest));
+        Index secondSnapshot = secondIndex.build();
+        Assertions.assertNull(secondSnapshot.findClass(removedClass));
+        for (String className : classNames.subList(1, classNames.size())) {
+            Assertions.assertSame(firstIndex.build().findClass(className), secondSnapshot.findClass(className), className);
+        }
+    }
+}
@@ -0,0 +1,280 @@
+package net.earthcomputer.modcompatchecker;
+
+import net.earthcomputer.modcompatchecker.util.JarSession;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+
+public class JarSessionTest {
+    @TempDir
+    Path tempDir;
+
+    @Test
+    public void testMatchesZipFile() throws IOException {
+        assertMatchesZipFile(Path.of(System.getProperty("testNewLib.jar")));
+        assertMatchesZipFile(Path.of(System.getProperty("testMod.jar")));
+    }
+
+    @Test
+    public void testStoredAndDeflatedEntries() throws IOException {
+        Path jar = tempDir.resolve("mixed.jar");
+        try (ZipOutputStream output = new ZipOutputStream(Files.newOutputStream(jar))) {
+            for (int i = 0; i < 10; i++) {
+                byte[] contents = ("entry " + i + " ").repeat(i * 100).getBytes(StandardCharsets.UTF_8);
+                ZipEntry entry = new ZipEntry("dir/entry" + i + ".txt");
+                if (i % 2 == 0) {
+                    entry.setMethod(ZipEntry.STORED);
+                    entry.setSize(contents.length);
+                    entry.setCrc(crc(contents));
+                }
+                output.putNextEntry(entry);
+                output.write(contents);
+                output.closeEntry();
+            }
+        }
+        assertMatchesZipFile(jar);
+    }
+
+    @Test
+    public void testZip64() throws IOException {
+        List<RawEntry> entries = List.of(
+            new RawEntry("a.txt", "stored contents".getBytes(StandardCharsets.UTF_8), false),
+            new RawEntry("b.txt", "deflated contents ".repeat(50).getBytes(StandardCharsets.UTF_8), true)
+        );
+        Path jar = tempDir.resolve("zip64.jar");
+        Files.write(jar, writeZip(entries, List.of(0, 1), true));
+        assertMatchesZipFile(jar);
+        try (JarSession session = JarSession.open(jar)) {
+            Assertions.assertEquals("stored contents", new String(session.getBytes(session.getEntry("a.txt")), StandardCharsets.UTF_8));
+        }
+    }
+
+    @Test
+    public void testZip64EndOfCentralDirectory() throws IOException {
+        // more entries than fit in the normal end of central directory record
+        Path jar = tempDir.resolve("many.jar");
+        try (ZipOutputStream output = new ZipOutputStream(Files.newOutputStream(jar))) {
+            output.setLevel(Deflater.NO_COMPRESSION);
+            for (int i = 0; i < 0x10005; i++) {
+                output.putNextEntry(new ZipEntry("e" + i));
+                output.closeEntry();
+            }
+        }
+        try (JarSession session = JarSession.open(jar)) {
+            Assertions.assertEquals(0x10005, session.getEntries().size());
+            Assertions.assertNotNull(session.getEntry("e" + 0x10004));
+        }
+    }
+
+    @Test
+    public void testDuplicateNames() throws IOException {
+        List<RawEntry> entries = List.of(
+            new RawEntry("dup.txt", "first".getBytes(StandardCharsets.UTF_8), false),
+            new RawEntry("other.txt", "other".getBytes(StandardCharsets.UTF_8), true),
+            new RawEntry("dup.txt", "second".getBytes(StandardCharsets.UTF_8), true)
+        );
+        // the central directory lists the first copy last, so that one takes precedence
+        Path jar = tempDir.resolve("dup.jar");
+        Files.write(jar, writeZip(entries, List.of(2, 1, 0), false));
+
+        try (JarSession session = JarSession.open(jar); ZipFile zipFile = new ZipFile(jar.toFile())) {
+            Assertions.assertEquals("first", new String(session.getBytes(session.getEntry("dup.txt")), StandardCharsets.UTF_8));
+            try (InputStream in = zipFile.getInputStream(zipFile.getEntry("dup.txt"))) {
+                Assertions.assertEquals("first", new String(in.readAllBytes(), StandardCharsets.UTF_8));
+            }
+
+            // all the entries are listed, in the order their contents are stored in
+            List<String> contents = new ArrayList<>();
+            for (JarSession.Entry entry : session.getEntries()) {
+                contents.add(entry.getName() + "=" + new String(session.getBytes(entry), StandardCharsets.UTF_8));
+            }
+            Assertions.assertEquals(List.of("dup.txt=first", "other.txt=other", "dup.txt=second"), contents);
+        }
+    }
+
+    @Test
+    public void testTruncated() throws IOException {
+        byte[] original = Files.readAllBytes(Path.of(System.getProperty("testNewLib.jar")));
+        Path jar = tempDir.resolve("truncated.jar");
+        for (int length = 0; length < original.length; length += Math.max(1, length / 8)) {
+            byte[] truncated = new byte[length];
+            System.arraycopy(original, 0, truncated, 0, length);
+            Files.write(jar, truncated);
+            // without its end of central directory record, it can't be opened
+            Assertions.assertThrows(IOException.class, () -> JarSession.open(jar).close(), "length " + length);
+            Assertions.assertThrows(IOException.class, () -> JarSession.read(jar).close(), "length " + length);
+        }
+
+        // a central directory which points past the end of the truncated data
+        List<RawEntry> entries = List.of(new RawEntry("a.txt", "contents ".repeat(100).getBytes(StandardCharsets.UTF_8), true));
+        byte[] zip = writeZip(entries, List.of(0), false);
+        byte[] cut = new byte[zip.length - 40];
+        System.arraycopy(zip, 0, cut, 0, 20);
+        System.arraycopy(zip, 60, cut, 20, cut.length - 20);
+        Files.write(jar, cut);
+        assertReadFailsCleanly(jar);
+    }
+
+    @Test
+    public void testCorrupt() throws IOException {
+        byte[] original = Files.readAllBytes(Path.of(System.getProperty("testNewLib.jar")));
+        byte[] zip64 = writeZip(List.of(
+            new RawEntry("a.txt", "stored contents".getBytes(StandardCharsets.UTF_8), false),
+            new RawEntry("b.txt", "deflated contents ".repeat(50).getBytes(StandardCharsets.UTF_8), true)
+        ), List.of(0, 1), true);
+        Path jar = tempDir.resolve("corrupt.jar");
+        Random random = new Random(0);
+        for (byte[] base : List.of(original, zip64)) {
+            for (int i = 0; i < 500; i++) {
+                byte[] corrupt = base.clone();
+                for (int j = 0; j < 4; j++) {
+                    corrupt[random.nextInt(corrupt.length)] = (byte) random.nextInt();
+                }
+                Files.write(jar, corrupt);
+                assertReadFailsCleanly(jar);
+            }
+        }
+    }
+
+    // reads every entry, which may succeed if the corruption didn't hit anything that matters, but must not fail with
+    // anything other than an IOException
+    private static void assertReadFailsCleanly(Path jar) {
+        try (JarSession session = JarSession.open(jar)) {
+            for (JarSession.Entry entry : session.getEntries()) {
+                try {
+                    session.getBytes(entry);
+                    session.getBuffer(entry);
+                } catch (IOException ignore) {
+                }
+            }
+        } catch (IOException ignore) {
+        } catch (RuntimeException e) {
+            Assertions.fail("Reading a corrupt jar threw " + e, e);
+        }
+    }
+
+    private static void assertMatchesZipFile(Path jar) throws IOException {
+        try (ZipFile zipFile = new ZipFile(jar.toFile()); JarSession mapped = JarSession.open(jar); JarSession read = JarSession.read(jar)) {
+            List<String> expectedNames = new ArrayList<>(zipFile.stream().map(ZipEntry::getName).toList());
+            Collections.sort(expectedNames);
+            for (JarSession session : List.of(mapped, read)) {
+                List<String> actualNames = new ArrayList<>(session.getEntries().stream().map(JarSession.Entry::getName).toList());
+                Collections.sort(actualNames);
+                Assertions.assertEquals(expectedNames, actualNames);
+
+                for (String name : expectedNames) {
+                    ZipEntry expectedEntry = zipFile.getEntry(name);
+                    JarSession.Entry entry = session.getEntry(name);
+                    Assertions.assertNotNull(entry, name);
+                    Assertions.assertEquals(expectedEntry.getSize(), entry.getSize(), name);
+                    Assertions.assertEquals(expectedEntry.getCrc(), entry.getCrc(), name);
+                    byte[] expected;
+                    try (InputStream in = zipFile.getInputStream(expectedEntry)) {
+                        expected = in.readAllBytes();
+                    }
+                    Assertions.assertArrayEquals(expected, session.getBytes(entry), name);
+                    ByteBuffer buffer = session.getBuffer(entry);
+                    byte[] bufferBytes = new byte[buffer.remaining()];
+                    buffer.get(bufferBytes);
+                    Assertions.assertArrayEquals(expected, bufferBytes, name);
+                }
+            }
+        }
+    }
+
+    private static long crc(byte[] contents) {
+        CRC32 crc = new CRC32();
+        crc.update(contents);
+        return crc.getValue();
+    }
+
+    private record RawEntry(String name, byte[] contents, boolean deflate) {
+    }
+
+    // Writes a zip file by hand, for the layouts ZipOutputStream won't write: duplicate names, a central directory in a
+    // different order from the entries, and zip64 extra fields on small entries.
+    private static byte[] writeZip(List<RawEntry> entries, List<Integer> centralOrder, boolean zip64) {
+        ByteBuffer out = ByteBuffer.allocate(1 << 16).order(ByteOrder.LITTLE_ENDIAN);
+        long[] offsets = new long[entries.size()];
+        byte[][] compressed = new byte[entries.size()][];
+        for (int i = 0; i < entries.size(); i++) {
+            RawEntry entry = entries.get(i);
+            compressed[i] = entry.deflate ? deflate(entry.contents) : entry.contents;
+            byte[] name = entry.name.getBytes(StandardCharsets.UTF_8);
+            offsets[i] = out.position();
+            out.putInt(0x04034b50).putShort((short) (zip64 ? 45 : 20)).putShort((short) 0).putShort((short) (entry.deflate ? 8 : 0));
+            out.putInt(0).putInt((int) crc(entry.contents));
+            if (zip64) {
+                out.putInt(-1).putInt(-1).putShort((short) name.length).putShort((short) 20).put(name);
+                out.putShort((short) 1).putShort((short) 16).putLong(entry.contents.length).putLong(compressed[i].length);
+            } else {
+                out.putInt(compressed[i].length).putInt(entry.contents.length).putShort((short) name.length).putShort((short) 0).put(name);
+            }
+            out.put(compressed[i]);
+        }
+
+        int centralStart = out.position();
+        for (int i : centralOrder) {
+            RawEntry entry = entries.get(i);
+            byte[] name = entry.name.getBytes(StandardCharsets.UTF_8);
+            out.putInt(0x02014b50).putShort((short) 45).putShort((short) (zip64 ? 45 : 20)).putShort((short) 0).putShort((short) (entry.deflate ? 8 : 0));
+            out.putInt(0).putInt((int) crc(entry.contents));
+            if (zip64) {
+                out.putInt(-1).putInt(-1).putShort((short) name.length).putShort((short) 28).putShort((short) 0);
+                out.putShort((short) 0).putShort((short) 0).putInt(0).putInt(-1).put(name);
+                out.putShort((short) 1).putShort((short) 24).putLong(entry.contents.length).putLong(compressed[i].length).putLong(offsets[i]);
+            } else {
+                out.putInt(compressed[i].length).putInt(entry.contents.length).putShort((short) name.length).putShort((short) 0).putShort((short) 0);
+                out.putShort((short) 0).putShort((short) 0).putInt(0).putInt((int) offsets[i]).put(name);
+            }
+        }
+        int centralSize = out.position() - centralStart;
+
+        if (zip64) {
+            int zip64End = out.position();
+            out.putInt(0x06064b50).putLong(44).putShort((short) 45).putShort((short) 45).putInt(0).putInt(0);
+            out.putLong(centralOrder.size()).putLong(centralOrder.size()).putLong(centralSize).putLong(centralStart);
+            out.putInt(0x07064b50).putInt(0).putLong(zip64End).putInt(1);
+            out.putInt(0x06054b50).putShort((short) 0).putShort((short) 0).putShort((short) -1).putShort((short) -1);
+            out.putInt(-1).putInt(-1).putShort((short) 0);
+        } else {
+            out.putInt(0x06054b50).putShort((short) 0).putShort((short) 0).putShort((short) centralOrder.size()).putShort((short) centralOrder.size());
+            out.putInt(centralSize).putInt(centralStart).putShort((short) 0);
+        }
+
+        byte[] result = new byte[out.position()];
+        out.flip().get(result);
+        return result;
+    }
+
+    private static byte[] deflate(byte[] contents) {
+        Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+        deflater.setInput(contents);
+        deflater.finish();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[1024];
+        while (!deflater.finished()) {
+            out.write(buffer, 0, deflater.deflate(buffer));
+        }
+        deflater.end();
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,148 @@
+package net.earthcomputer.modcompatchecker;
+
+import net.earthcomputer.modcompatchecker.indexer.Index;
+import net.earthcomputer.modcompatchecker.indexer.IndexBuilder;
+import net.earthcomputer.modcompatchecker.indexer.Indexer;
+import net.earthcomputer.modcompatchecker.util.JarSession;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.jar.JarOutputStream;
+import java.util.stream.Collectors;
+
+public class OnDemandIndexTest {
+    @TempDir
+    Path tempDir;
+
+    @Test
+    public void testOnDemandIndex() throws IOException {
+        try (JarSession jar = JarSession.open(Path.of(System.getProperty("testNewLib.jar")))) {
+            IndexBuilder index = new IndexBuilder();
+            Indexer.indexJarOnDemand(jar, index);
+            Index snapshot = index.build();
+            Assertions.assertNull(snapshot.findClass("testLib/DoesNotExist"));
+            IndexTestUtil.assertSameClasses(IndexTestUtil.indexTestLib(), snapshot);
+        }
+    }
+
+    @Test
+    public void testReferencedClassesMatchFullIndex() throws IOException {
+        try (JarSession libJar = JarSession.open(Path.of(System.getProperty("testNewLib.jar"))); JarSession modJar = JarSession.open(Path.of(System.getProperty("testMod.jar")))) {
+            IndexBuilder full = new IndexBuilder();
+            Indexer.indexJar(libJar, full, Runnable::run);
+            Indexer.indexJar(modJar, full, Runnable::run);
+            List<String> expected = IndexTestUtil.checkProblems(full.build(), modJar);
+            Assertions.assertFalse(expected.isEmpty());
+
+            IndexBuilder onDemand = indexOnDemand(libJar, modJar);
+            Assertions.assertEquals(expected, IndexTestUtil.checkProblems(onDemand.build(), modJar));
+
+            // the classes indexed up front are all the check needs, without falling back to the jar indexed on demand
+            IndexBuilder referencedOnly = new IndexBuilder();
+            referencedOnly.deserializeFrom(new BufferedReader(new StringReader(IndexTestUtil.toText(onDemand))));
+            Assertions.assertEquals(expected, IndexTestUtil.checkProblems(referencedOnly.build(), modJar));
+        }
+    }
+
+    @Test
+    public void testReferencedClasses() throws IOException {
+        Path libPath = tempDir.resolve("lib.jar");
+        try (JarOutputStream output = new JarOutputStream(Files.newOutputStream(libPath))) {
+            IndexTestUtil.writeClass(output, "gen/Shared.class", "gen/Shared", "lib");
+            IndexTestUtil.writeClass(output, "gen/ArrayElement.class", "gen/ArrayElement", "x");
+            IndexTestUtil.writeClass(output, "gen/DescriptorOnly.class", "gen/DescriptorOnly", "x");
+            IndexTestUtil.writeClass(output, "gen/Unreferenced.class", "gen/Unreferenced", "x");
+
+            ClassWriter superInterface = new ClassWriter(0);
+            superInterface.visit(Opcodes.V17, Opcodes.ACC_PUBLIC | Opcodes.ACC_INTERFACE | Opcodes.ACC_ABSTRACT, "gen/SuperInterface", null, "java/lang/Object", null);
+            IndexTestUtil.writeClass(output, superInterface);
+            ClassWriter superclass = new ClassWriter(0);
+            superclass.visit(Opcodes.V17, Opcodes.ACC_PUBLIC, "gen/Super", null, "java/lang/Object", new String[] {"gen/SuperInterface"});
+            IndexTestUtil.writeClass(output, superclass);
+            ClassWriter subclass = new ClassWriter(0);
+            subclass.visit(Opcodes.V17, Opcodes.ACC_PUBLIC, "gen/Sub", null, "gen/Super", null);
+            IndexTestUtil.writeClass(output, subclass);
+
+            ClassWriter host = new ClassWriter(0);
+            host.visit(Opcodes.V17, Opcodes.ACC_PUBLIC, "gen/Host", null, "java/lang/Object", null);
+            host.visitNestMember("gen/Host$Inner");
+            IndexTestUtil.writeClass(output, host);
+            ClassWriter inner = new ClassWriter(0);
+            inner.visit(Opcodes.V17, Opcodes.ACC_PUBLIC, "gen/Host$Inner", null, "java/lang/Object", null);
+            inner.visitNestHost("gen/Host");
+            IndexTestUtil.writeClass(output, inner);
+        }
+
+        Path modPath = tempDir.resolve("mod.jar");
+        try (JarOutputStream output = new JarOutputStream(Files.newOutputStream(modPath))) {
+            // the mod's own copy of a library class, which has a method the library's copy doesn't
+            ClassWriter shared = new ClassWriter(0);
+            shared.visit(Opcodes.V17, Opcodes.ACC_PUBLIC, "gen/Shared", null, "java/lang/Object", null);
+            shared.visitField(Opcodes.ACC_PUBLIC, "mod", "I", null, null).visitEnd();
+            shared.visitMethod(Opcodes.ACC_PUBLIC | Opcodes.ACC_STATIC | Opcodes.ACC_NATIVE, "take", "(Lgen/DescriptorOnly;)V", null, null).visitEnd();
+            IndexTestUtil.writeClass(output, shared);
+
+            ClassWriter user = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+            user.visit(Opcodes.V17, Opcodes.ACC_PUBLIC, "gen/User", null, "java/lang/Object", null);
+            MethodVisitor method = user.visitMethod(Opcodes.ACC_PUBLIC | Opcodes.ACC_STATIC, "run", "()V", null, null);
+            method.visitCode();
+            // only referenced as the element type of an array class, and in a method descriptor
+            method.visitInsn(Opcodes.ICONST_1);
+            method.visitTypeInsn(Opcodes.ANEWARRAY, "[Lgen/ArrayElement;");
+            method.visitInsn(Opcodes.POP);
+            method.visitInsn(Opcodes.ACONST_NULL);
+            method.visitMethodInsn(Opcodes.INVOKESTATIC, "gen/Shared", "take", "(Lgen/DescriptorOnly;)V", false);
+            method.visitInsn(Opcodes.ACONST_NULL);
+            method.visitTypeInsn(Opcodes.CHECKCAST, "gen/Sub");
+            method.visitInsn(Opcodes.POP);
+            method.visitInsn(Opcodes.ACONST_NULL);
+            method.visitTypeInsn(Opcodes.CHECKCAST, "gen/Host$Inner");
+            method.visitInsn(Opcodes.POP);
+            method.visitInsn(Opcodes.RETURN);
+            method.visitMaxs(0, 0);
+            method.visitEnd();
+            IndexTestUtil.writeClass(output, user);
+        }
+
+        try (JarSession libJar = JarSession.open(libPath); JarSession modJar = JarSession.open(modPath)) {
+            IndexBuilder onDemand = indexOnDemand(libJar, modJar);
+            Set<String> indexed = IndexTestUtil.toText(onDemand).lines().filter(line -> line.startsWith("class ")).map(line -> line.split(" ")[2]).collect(Collectors.toSet());
+            Assertions.assertEquals(Set.of("gen/Shared", "gen/User", "gen/ArrayElement", "gen/DescriptorOnly", "gen/Sub", "gen/Super", "gen/SuperInterface", "gen/Host$Inner", "gen/Host"), indexed);
+
+            Index snapshot = onDemand.build();
+            IndexTestUtil.assertOnlyField(snapshot, "gen/Shared", "mod");
+            IndexTestUtil.assertOnlyField(snapshot, "gen/Unreferenced", "x");
+
+            IndexBuilder full = new IndexBuilder();
+            Indexer.indexJar(libJar, full, Runnable::run);
+            Indexer.indexJar(modJar, full, Runnable::run);
+            Assertions.assertEquals(List.of(), IndexTestUtil.checkProblems(full.build(), modJar));
+            Assertions.assertEquals(List.of(), IndexTestUtil.checkProblems(snapshot, modJar));
+        }
+    }
+
+    // the same way as Main with --on-demand
+    private static IndexBuilder indexOnDemand(JarSession libJar, JarSession modJar) throws IOException {
+        ForkJoinPool executor = new ForkJoinPool(4);
+        try {
+            IndexBuilder index = new IndexBuilder();
+            Indexer.indexAll(List.of(out -> Indexer.indexJarOnDemand(libJar, out), out -> Indexer.indexJar(modJar, out, executor)), index, executor);
+            Indexer.indexReferencedClasses(List.of(modJar), index, executor);
+            return index;
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
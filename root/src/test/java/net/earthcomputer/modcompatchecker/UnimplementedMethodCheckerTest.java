@@ -0,0 +1,198 @@
+package net.earthcomputer.modcompatchecker;
+
+import net.earthcomputer.modcompatchecker.checker.BinaryCompatChecker;
+import net.earthcomputer.modcompatchecker.checker.CheckerConfig;
+import net.earthcomputer.modcompatchecker.config.Config;
+import net.earthcomputer.modcompatchecker.indexer.Index;
+import net.earthcomputer.modcompatchecker.indexer.IndexBuilder;
+import net.earthcomputer.modcompatchecker.indexer.Indexer;
+import net.earthcomputer.modcompatchecker.indexer.ResolutionCache;
+import net.earthcomputer.modcompatchecker.util.JarSession;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Handle;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+
+// Classes and lambdas which share their parents, but differ by the package they're in, the methods they declare, or
+// whether they're a class or a lambda. The methods each may leave unimplemented are only worked out once for each
+// parents, package and kind of class, so that a verdict wrongly shared between them would show up as a missing or extra
+// problem.
+public class UnimplementedMethodCheckerTest {
+    private static final List<String> MOD_CLASSES = List.of(
+        "lib/SamePackage",
+        "mod/OtherPackage",
+        "mod/MissingPub",
+        "mod/FnImpl",
+        "mod/FnMissing",
+        "mod/LambdaUser"
+    );
+    private static final List<String> EXPECTED_MESSAGES = List.of(
+        "mod/FnMissing: Class does not implement the abstract method lib/Fn.apply ()V",
+        "mod/LambdaUser.renamed ()V: L1: Lambda does not implement the abstract method lib/Fn.apply ()V",
+        "mod/MissingPub: Class does not implement the abstract method lib/Base.pkg ()V",
+        "mod/MissingPub: Class does not implement the abstract method lib/Base.pub ()V",
+        "mod/OtherPackage: Class does not implement the abstract method lib/Base.pkg ()V"
+    );
+
+    @TempDir
+    static Path tempDir;
+    private static Path libJar;
+    private static Path modJar;
+
+    @BeforeAll
+    public static void setup() throws IOException {
+        libJar = tempDir.resolve("lib.jar");
+        try (JarOutputStream output = new JarOutputStream(Files.newOutputStream(libJar))) {
+            // abstract methods with each access level, where all but the public one are implemented by the subclass
+            ClassWriter base = newClass(Opcodes.ACC_PUBLIC | Opcodes.ACC_ABSTRACT, "lib/Base", "java/lang/Object");
+            base.visitMethod(Opcodes.ACC_ABSTRACT, "pkg", "()V", null, null).visitEnd();
+            base.visitMethod(Opcodes.ACC_PROTECTED | Opcodes.ACC_ABSTRACT, "prot", "()V", null, null).visitEnd();
+            base.visitMethod(Opcodes.ACC_PUBLIC | Opcodes.ACC_ABSTRACT, "pub", "()V", null, null).visitEnd();
+            writeClass(output, "lib/Base", base);
+            ClassWriter mid = newClass(Opcodes.ACC_PUBLIC | Opcodes.ACC_ABSTRACT, "lib/Mid", "lib/Base");
+            addMethod(mid, 0, "pkg", method -> {});
+            addMethod(mid, Opcodes.ACC_PROTECTED, "prot", method -> {});
+            writeClass(output, "lib/Mid", mid);
+
+            ClassWriter fn = newClass(Opcodes.ACC_PUBLIC | Opcodes.ACC_INTERFACE | Opcodes.ACC_ABSTRACT, "lib/Fn", "java/lang/Object");
+            fn.visitMethod(Opcodes.ACC_PUBLIC | Opcodes.ACC_ABSTRACT, "apply", "()V", null, null).visitEnd();
+            writeClass(output, "lib/Fn", fn);
+        }
+
+        modJar = tempDir.resolve("mod.jar");
+        try (JarOutputStream output = new JarOutputStream(Files.newOutputStream(modJar))) {
+            // the package-private implementation only counts in its own package, the protected one in any subclass
+            ClassWriter samePackage = newClass(Opcodes.ACC_PUBLIC, "lib/SamePackage", "lib/Mid");
+            addMethod(samePackage, Opcodes.ACC_PUBLIC, "pub", method -> {});
+            writeClass(output, "lib/SamePackage", samePackage);
+            ClassWriter otherPackage = newClass(Opcodes.ACC_PUBLIC, "mod/OtherPackage", "lib/Mid");
+            addMethod(otherPackage, Opcodes.ACC_PUBLIC, "pub", method -> {});
+            writeClass(output, "mod/OtherPackage", otherPackage);
+
+            // the same parents and package as the above, without declaring the public method
+            writeClass(output, "mod/MissingPub", newClass(Opcodes.ACC_PUBLIC, "mod/MissingPub", "lib/Mid"));
+
+            // a functional interface implemented by classes which do and don't declare its method, and by lambdas for
+            // its method and for a method it doesn't have
+            ClassWriter fnImpl = newClass(Opcodes.ACC_PUBLIC, "mod/FnImpl", "java/lang/Object", "lib/Fn");
+            addMethod(fnImpl, Opcodes.ACC_PUBLIC, "apply", method -> {});
+            writeClass(output, "mod/FnImpl", fnImpl);
+            writeClass(output, "mod/FnMissing", newClass(Opcodes.ACC_PUBLIC, "mod/FnMissing", "java/lang/Object", "lib/Fn"));
+            ClassWriter lambdaUser = newClass(Opcodes.ACC_PUBLIC, "mod/LambdaUser", "java/lang/Object");
+            addMethod(lambdaUser, Opcodes.ACC_PUBLIC, "implemented", method -> createLambda(method, "apply"));
+            addMethod(lambdaUser, Opcodes.ACC_PUBLIC, "renamed", method -> createLambda(method, "oldApply"));
+            addMethod(lambdaUser, Opcodes.ACC_PRIVATE | Opcodes.ACC_STATIC, "lambda", method -> {});
+            writeClass(output, "mod/LambdaUser", lambdaUser);
+        }
+    }
+
+    @Test
+    public void testIsolated() throws IOException {
+        List<String> messages = new ArrayList<>();
+        for (String className : MOD_CLASSES) {
+            messages.addAll(check(buildIndex(), List.of(className)));
+        }
+        messages.sort(null);
+        Assertions.assertEquals(EXPECTED_MESSAGES, messages);
+    }
+
+    @Test
+    public void testSharedIndex() throws IOException {
+        Index index = buildIndex();
+        List<String> messages = check(index, MOD_CLASSES);
+        messages.sort(null);
+        Assertions.assertEquals(EXPECTED_MESSAGES, messages);
+
+        // the implementations of lib/Fn and the lambdas really did share their outcomes, but whether lib/Mid's
+        // package-private method is accessible from outside its package depends on the nest of the class, so those
+        // outcomes aren't shared
+        ResolutionCache cache = index.getResolutionCache();
+        Assertions.assertNull(cache.getInheritedMethods("lib/Mid", List.of(), "mod", true));
+        Assertions.assertNotNull(cache.getInheritedMethods("java/lang/Object", List.of("lib/Fn"), "mod", true));
+        Assertions.assertNotNull(cache.getInheritedMethods("java/lang/Object", List.of("lib/Fn"), "mod", false));
+    }
+
+    @Test
+    public void testSharedIndexReversed() throws IOException {
+        List<String> classNames = new ArrayList<>(MOD_CLASSES);
+        Collections.reverse(classNames);
+        List<String> messages = check(buildIndex(), classNames);
+        messages.sort(null);
+        Assertions.assertEquals(EXPECTED_MESSAGES, messages);
+    }
+
+    private static Index buildIndex() throws IOException {
+        IndexBuilder builder = new IndexBuilder();
+        Indexer.indexJar(libJar, builder);
+        Indexer.indexJar(modJar, builder);
+        return builder.build();
+    }
+
+    // checks the given classes one after another, in the given order
+    private static List<String> check(Index index, List<String> classNames) throws IOException {
+        ErrorCollectingProblemCollector problems = new ErrorCollectingProblemCollector();
+        try (JarSession jar = JarSession.open(modJar)) {
+            for (String className : classNames) {
+                JarSession.Entry entry = jar.getEntry(className + ".class");
+                Assertions.assertNotNull(entry, className);
+                BinaryCompatChecker.checkClass(index, new CheckerConfig(Config.empty()), jar, entry, problems);
+            }
+        }
+        return new ArrayList<>(problems.getMessages());
+    }
+
+    // a lambda for lib/Fn whose method has the given name, implemented by mod/LambdaUser.lambda
+    private static void createLambda(MethodVisitor method, String interfaceMethodName) {
+        Handle metafactory = new Handle(
+            Opcodes.H_INVOKESTATIC,
+            "java/lang/invoke/LambdaMetafactory",
+            "metafactory",
+            "(Ljava/lang/invoke/MethodHandles$Lookup;Ljava/lang/String;Ljava/lang/invoke/MethodType;Ljava/lang/invoke/MethodType;Ljava/lang/invoke/MethodHandle;Ljava/lang/invoke/MethodType;)Ljava/lang/invoke/CallSite;",
+            false
+        );
+        Handle implementation = new Handle(Opcodes.H_INVOKESTATIC, "mod/LambdaUser", "lambda", "()V", false);
+        method.visitInvokeDynamicInsn(interfaceMethodName, "()Llib/Fn;", metafactory, Type.getType("()V"), implementation, Type.getType("()V"));
+        method.visitInsn(Opcodes.POP);
+    }
+
+    private static ClassWriter newClass(int access, String className, String superName, String... interfaces) {
+        ClassWriter writer = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+        writer.visit(Opcodes.V17, (access & Opcodes.ACC_INTERFACE) != 0 ? access : access | Opcodes.ACC_SUPER, className, null, superName, interfaces);
+        return writer;
+    }
+
+    private static void addMethod(ClassWriter writer, int access, String name, Consumer<MethodVisitor> code) {
+        MethodVisitor method = writer.visitMethod(access, name, "()V", null, null);
+        method.visitCode();
+        Label start = new Label();
+        method.visitLabel(start);
+        method.visitLineNumber(1, start);
+        code.accept(method);
+        method.visitInsn(Opcodes.RETURN);
+        method.visitMaxs(0, 0);
+        method.visitEnd();
+    }
+
+    private static void writeClass(JarOutputStream output, String className, ClassWriter writer) throws IOException {
+        writer.visitEnd();
+        output.putNextEntry(new JarEntry(className + ".class"));
+        output.write(writer.toByteArray());
+        output.closeEntry();
+    }
+}
@@ -0,0 +1,193 @@
+package net.earthcomputer.modcompatchecker;
+
+import net.earthcomputer.modcompatchecker.checker.BinaryCompatChecker;
+import net.earthcomputer.modcompatchecker.checker.CheckerConfig;
+import net.earthcomputer.modcompatchecker.config.Config;
+import net.earthcomputer.modcompatchecker.indexer.Index;
+import net.earthcomputer.modcompatchecker.indexer.IndexBuilder;
+import net.earthcomputer.modcompatchecker.indexer.Indexer;
+import net.earthcomputer.modcompatchecker.util.JarSession;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+
+// Classes in the same package which make the same references, where whether a reference is allowed depends on the class
+// or method it's made from. They are checked against the same index, so that a verdict wrongly shared between them
+// would show up as a missing or extra problem.
+public class VerdictCacheTest {
+    private static final List<String> MOD_CLASSES = List.of(
+        "mod/Subclass",
+        "mod/NonSubclass",
+        "mod/Host",
+        "mod/Host$Nested",
+        "mod/NotNested",
+        "mod/FinalOwner",
+        "mod/FinalOther"
+    );
+    private static final List<String> EXPECTED_MESSAGES = List.of(
+        "mod/FinalOther.<init> ()V: L1: Code writes to final field mod/FinalOwner.value : I",
+        "mod/FinalOther.run ()V: L1: Code writes to final field mod/FinalOwner.value : I",
+        "mod/FinalOwner.run ()V: L1: Code writes to final field mod/FinalOwner.value : I",
+        "mod/NonSubclass.run ()V: L1: Code accesses field lib/Base.protectedField : I which is inaccessible with protected visibility",
+        "mod/NonSubclass.run ()V: L1: Code accesses method lib/Base.protectedMethod ()V which is inaccessible with protected visibility",
+        "mod/NotNested.run ()V: L1: Code accesses field mod/Host.secret : I which is inaccessible with private visibility"
+    );
+
+    @TempDir
+    static Path tempDir;
+    private static Path libJar;
+    private static Path modJar;
+
+    @BeforeAll
+    public static void setup() throws IOException {
+        libJar = tempDir.resolve("lib.jar");
+        try (JarOutputStream output = new JarOutputStream(Files.newOutputStream(libJar))) {
+            ClassWriter base = newClass("lib/Base", "java/lang/Object");
+            base.visitField(Opcodes.ACC_PROTECTED | Opcodes.ACC_STATIC, "protectedField", "I", null, null).visitEnd();
+            base.visitMethod(Opcodes.ACC_PROTECTED | Opcodes.ACC_STATIC | Opcodes.ACC_NATIVE, "protectedMethod", "()V", null, null).visitEnd();
+            writeClass(output, "lib/Base", base);
+        }
+
+        modJar = tempDir.resolve("mod.jar");
+        try (JarOutputStream output = new JarOutputStream(Files.newOutputStream(modJar))) {
+            // the same protected members, from a subclass and from a class which isn't
+            Consumer<MethodVisitor> accessProtected = method -> {
+                method.visitFieldInsn(Opcodes.GETSTATIC, "lib/Base", "protectedField", "I");
+                method.visitInsn(Opcodes.POP);
+                method.visitMethodInsn(Opcodes.INVOKESTATIC, "lib/Base", "protectedMethod", "()V", false);
+            };
+            ClassWriter subclass = newClass("mod/Subclass", "lib/Base");
+            addMethod(subclass, "run", accessProtected);
+            writeClass(output, "mod/Subclass", subclass);
+            ClassWriter nonSubclass = newClass("mod/NonSubclass", "java/lang/Object");
+            addMethod(nonSubclass, "run", accessProtected);
+            writeClass(output, "mod/NonSubclass", nonSubclass);
+
+            // the same private member, from its own class, a nestmate and a class outside the nest
+            Consumer<MethodVisitor> accessPrivate = method -> {
+                method.visitFieldInsn(Opcodes.GETSTATIC, "mod/Host", "secret", "I");
+                method.visitInsn(Opcodes.POP);
+            };
+            ClassWriter host = newClass("mod/Host", "java/lang/Object");
+            host.visitNestMember("mod/Host$Nested");
+            host.visitField(Opcodes.ACC_PRIVATE | Opcodes.ACC_STATIC, "secret", "I", null, null).visitEnd();
+            addMethod(host, "run", accessPrivate);
+            writeClass(output, "mod/Host", host);
+            ClassWriter nested = newClass("mod/Host$Nested", "java/lang/Object");
+            nested.visitNestHost("mod/Host");
+            addMethod(nested, "run", accessPrivate);
+            writeClass(output, "mod/Host$Nested", nested);
+            ClassWriter notNested = newClass("mod/NotNested", "java/lang/Object");
+            addMethod(notNested, "run", accessPrivate);
+            writeClass(output, "mod/NotNested", notNested);
+
+            // the same final field write, from the owner's constructor, another of its methods, and another class
+            Consumer<MethodVisitor> writeFinal = method -> {
+                method.visitVarInsn(Opcodes.ALOAD, 0);
+                method.visitInsn(Opcodes.ICONST_1);
+                method.visitFieldInsn(Opcodes.PUTFIELD, "mod/FinalOwner", "value", "I");
+            };
+            for (String className : List.of("mod/FinalOwner", "mod/FinalOther")) {
+                ClassWriter writer = newClass(className, "java/lang/Object");
+                if (className.equals("mod/FinalOwner")) {
+                    writer.visitField(Opcodes.ACC_PUBLIC | Opcodes.ACC_FINAL, "value", "I", null, null).visitEnd();
+                }
+                addMethod(writer, "<init>", method -> {
+                    method.visitVarInsn(Opcodes.ALOAD, 0);
+                    method.visitMethodInsn(Opcodes.INVOKESPECIAL, "java/lang/Object", "<init>", "()V", false);
+                    writeFinal.accept(method);
+                });
+                addMethod(writer, "run", writeFinal);
+                writeClass(output, className, writer);
+            }
+        }
+    }
+
+    @Test
+    public void testIsolated() throws IOException {
+        List<String> messages = new ArrayList<>();
+        for (String className : MOD_CLASSES) {
+            messages.addAll(check(buildIndex(), List.of(className)));
+        }
+        messages.sort(null);
+        Assertions.assertEquals(EXPECTED_MESSAGES, messages);
+    }
+
+    @Test
+    public void testSharedIndex() throws IOException {
+        Index index = buildIndex();
+        List<String> messages = check(index, MOD_CLASSES);
+        messages.sort(null);
+        Assertions.assertEquals(EXPECTED_MESSAGES, messages);
+        Assertions.assertTrue(index.getVerdictCache().getHits() > 0);
+    }
+
+    @Test
+    public void testSharedIndexReversed() throws IOException {
+        List<String> classNames = new ArrayList<>(MOD_CLASSES);
+        Collections.reverse(classNames);
+        List<String> messages = check(buildIndex(), classNames);
+        messages.sort(null);
+        Assertions.assertEquals(EXPECTED_MESSAGES, messages);
+    }
+
+    private static Index buildIndex() throws IOException {
+        IndexBuilder builder = new IndexBuilder();
+        Indexer.indexJar(libJar, builder);
+        Indexer.indexJar(modJar, builder);
+        return builder.build();
+    }
+
+    // checks the given classes one after another, in the given order
+    private static List<String> check(Index index, List<String> classNames) throws IOException {
+        ErrorCollectingProblemCollector problems = new ErrorCollectingProblemCollector();
+        try (JarSession jar = JarSession.open(modJar)) {
+            for (String className : classNames) {
+                JarSession.Entry entry = jar.getEntry(className + ".class");
+                Assertions.assertNotNull(entry, className);
+                BinaryCompatChecker.checkClass(index, new CheckerConfig(Config.empty()), jar, entry, problems);
+            }
+        }
+        return new ArrayList<>(problems.getMessages());
+    }
+
+    private static ClassWriter newClass(String className, String superName) {
+        ClassWriter writer = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+        writer.visit(Opcodes.V17, Opcodes.ACC_PUBLIC | Opcodes.ACC_SUPER, className, null, superName, null);
+        return writer;
+    }
+
+    private static void addMethod(ClassWriter writer, String name, Consumer<MethodVisitor> code) {
+        MethodVisitor method = writer.visitMethod(Opcodes.ACC_PUBLIC, name, "()V", null, null);
+        method.visitCode();
+        Label start = new Label();
+        method.visitLabel(start);
+        method.visitLineNumber(1, start);
+        code.accept(method);
+        method.visitInsn(Opcodes.RETURN);
+        method.visitMaxs(0, 0);
+        method.visitEnd();
+    }
+
+    private static void writeClass(JarOutputStream output, String className, ClassWriter writer) throws IOException {
+        writer.visitEnd();
+        output.putNextEntry(new JarEntry(className + ".class"));
+        output.write(writer.toByteArray());
+        output.closeEntry();
+    }
+}
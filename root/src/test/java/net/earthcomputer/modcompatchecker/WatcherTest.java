@@ -0,0 +1,178 @@
+package net.earthcomputer.modcompatchecker;
+
+import net.earthcomputer.modcompatchecker.checker.Errors;
+import net.earthcomputer.modcompatchecker.checker.ProblemCollector;
+import net.earthcomputer.modcompatchecker.config.Config;
+import net.earthcomputer.modcompatchecker.config.Plugin;
+import net.earthcomputer.modcompatchecker.config.PluginLoader;
+import net.earthcomputer.modcompatchecker.indexer.Index;
+import net.earthcomputer.modcompatchecker.indexer.IndexBuilder;
+import net.earthcomputer.modcompatchecker.util.JarSession;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+
+// Re-checks a mod after a class in a jar nested inside it changes, where another class of the mod extends the changed
+// class without changing itself.
+public class WatcherTest {
+    private static final String MARKER = "mod/Sub: Superclass plugin/Marker is removed";
+
+    @TempDir
+    Path tempDir;
+
+    @BeforeEach
+    public void setup() {
+        List<Plugin> plugins = PluginLoader.createBuiltinPlugins();
+        plugins.add(new NestedJarPlugin());
+        PluginLoader.setTestingPlugins(plugins);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        PluginLoader.setTestingPlugins(null);
+    }
+
+    @Test
+    public void testRecheck() throws IOException {
+        Path modPath = tempDir.resolve("mod.jar");
+        byte[] sub = writeClass("mod/Sub", "lib/Base", Map.of("run", method -> {
+            method.visitVarInsn(Opcodes.ALOAD, 0);
+            method.visitMethodInsn(Opcodes.INVOKEVIRTUAL, "mod/Sub", "foo", "()V", false);
+        }));
+        byte[] other = writeClass("mod/Other", "java/lang/Object", Map.of("run", method -> {}));
+        byte[] baseV1 = writeClass("lib/Base", "java/lang/Object", Map.of("foo", method -> {}, "old", method -> referenceClass(method, "missing/Gone")));
+        byte[] baseV2 = writeClass("lib/Base", "java/lang/Object", Map.of("bar", method -> referenceClass(method, "missing/New")));
+        Files.write(modPath, modJar(baseV1, sub, other));
+
+        Watcher watcher = new Watcher(new IndexBuilder(), Config.empty(), Runnable::run);
+        try {
+            List<String> problems = new ArrayList<>(watcher.start(Map.of(modPath, Main.openWithNestedJars(JarSession.read(modPath)))));
+            problems.sort(null);
+            Assertions.assertEquals(List.of(
+                "lib/Base.old ()V: L1: Code accesses class missing/Gone which is removed",
+                MARKER
+            ), problems);
+
+            // a mod which is still being written keeps the previous build
+            byte[] newJar = modJar(baseV2, sub, other);
+            Files.write(modPath, Arrays.copyOf(newJar, newJar.length / 2));
+            Assertions.assertEquals(List.of(), watcher.recheck(Set.of(modPath)));
+            Files.write(modPath, modJar(baseV2, new byte[] {(byte) 0xca, (byte) 0xfe, (byte) 0xba, (byte) 0xbe, 0, 0, 0, 61, 0}, other));
+            Assertions.assertEquals(List.of(), watcher.recheck(Set.of(modPath)));
+
+            // mod/Sub is checked again because it extends lib/Base, and the problem of the plugin which only implements
+            // check is found again rather than reported as removed
+            Files.write(modPath, newJar);
+            Assertions.assertEquals(List.of(
+                "- lib/Base.old ()V: L1: Code accesses class missing/Gone which is removed",
+                "+ lib/Base.bar ()V: L1: Code accesses class missing/New which is removed",
+                "+ mod/Sub.run ()V: L1: Code accesses method mod/Sub.foo ()V which is removed"
+            ), watcher.recheck(Set.of(modPath)));
+
+            Files.write(modPath, modJar(baseV1, sub, other));
+            Assertions.assertEquals(List.of(
+                "- lib/Base.bar ()V: L1: Code accesses class missing/New which is removed",
+                "+ lib/Base.old ()V: L1: Code accesses class missing/Gone which is removed",
+                "- mod/Sub.run ()V: L1: Code accesses method mod/Sub.foo ()V which is removed"
+            ), watcher.recheck(Set.of(modPath)));
+
+            // nothing changed
+            Assertions.assertEquals(List.of(), watcher.recheck(Set.of(modPath)));
+        } finally {
+            watcher.close();
+        }
+    }
+
+    private static byte[] modJar(byte[] base, byte[] sub, byte[] other) throws IOException {
+        return jar(
+            "META-INF/jars/lib.jar", jar("lib/Base.class", base),
+            "mod/Sub.class", sub,
+            "mod/Other.class", other
+        );
+    }
+
+    private static byte[] jar(Object... namesAndContents) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (JarOutputStream output = new JarOutputStream(bytes)) {
+            for (int i = 0; i < namesAndContents.length; i += 2) {
+                output.putNextEntry(new JarEntry((String) namesAndContents[i]));
+                output.write((byte[]) namesAndContents[i + 1]);
+                output.closeEntry();
+            }
+        }
+        return bytes.toByteArray();
+    }
+
+    private static void referenceClass(MethodVisitor method, String className) {
+        method.visitTypeInsn(Opcodes.NEW, className);
+        method.visitInsn(Opcodes.POP);
+    }
+
+    // a class with a public no-arg method with each of the given names and code
+    private static byte[] writeClass(String className, String superName, Map<String, Consumer<MethodVisitor>> methods) {
+        ClassWriter writer = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+        writer.visit(Opcodes.V17, Opcodes.ACC_PUBLIC | Opcodes.ACC_SUPER, className, null, superName, null);
+        for (var entry : methods.entrySet()) {
+            Consumer<MethodVisitor> code = entry.getValue();
+            MethodVisitor method = writer.visitMethod(Opcodes.ACC_PUBLIC, entry.getKey(), "()V", null, null);
+            method.visitCode();
+            Label start = new Label();
+            method.visitLabel(start);
+            method.visitLineNumber(1, start);
+            code.accept(method);
+            method.visitInsn(Opcodes.RETURN);
+            method.visitMaxs(0, 0);
+            method.visitEnd();
+        }
+        writer.visitEnd();
+        return writer.toByteArray();
+    }
+
+    // Nests the jars under META-INF/jars, and reports a problem in mod/Sub with only check, so that it's left to the
+    // default checkClasses to check it again.
+    private static final class NestedJarPlugin implements Plugin {
+        @Override
+        public String id() {
+            return "nested_jars";
+        }
+
+        @Override
+        public List<String> getNestedJars(JarSession jar) {
+            List<String> nestedJars = new ArrayList<>();
+            for (JarSession.Entry entry : jar.getEntries()) {
+                if (entry.getName().startsWith("META-INF/jars/")) {
+                    nestedJars.add(entry.getName());
+                }
+            }
+            return nestedJars;
+        }
+
+        @Override
+        public void check(Index index, Config config, JarSession modJar, ProblemCollector problems, List<CompletableFuture<Void>> futures, Executor executor) {
+            if (modJar.getEntry("mod/Sub.class") != null) {
+                problems.addProblem("mod/Sub", Errors.CLASS_EXTENDS_REMOVED, "plugin/Marker");
+            }
+        }
+    }
+}
@@ -8,7 +8,9 @@ import net.earthcomputer.modcompatchecker.config.ConfigLoader;
 import net.earthcomputer.modcompatchecker.config.Plugin;
 import net.earthcomputer.modcompatchecker.config.PluginLoader;
 import net.earthcomputer.modcompatchecker.indexer.Index;
+import net.earthcomputer.modcompatchecker.indexer.IndexBuilder;
 import net.earthcomputer.modcompatchecker.indexer.Indexer;
+import net.earthcomputer.modcompatchecker.util.JarSession;
 import org.jetbrains.annotations.Nullable;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.DynamicTest;
@@ -24,8 +26,6 @@ import java.util.Arrays;
 import java.util.Collections;
 import java.util.EnumSet;
 import java.util.List;
-import java.util.jar.JarEntry;
-import java.util.jar.JarFile;
 
 public final class BinaryCompatFixture {
     private final List<DynamicTest> tests = new ArrayList<>();
@@ -65,25 +65,28 @@ public final class BinaryCompatFixture {
 
         PluginLoader.plugins().forEach(Plugin::initialize);
 
-        index = new Index();
+        IndexBuilder builder = new IndexBuilder();
         Path libPath = Path.of(System.getProperty("testNewLib.jar"));
         Path modPath = Path.of(System.getProperty("testMod.jar"));
-        for (Plugin plugin : PluginLoader.plugins()) {
-            plugin.preIndexLibrary(config, index, libPath);
-        }
-        for (Plugin plugin : PluginLoader.plugins()) {
-            plugin.preIndexMod(config, index, modPath);
+        try (JarSession libJar = JarSession.open(libPath); JarSession modJar = JarSession.open(modPath)) {
+            for (Plugin plugin : PluginLoader.plugins()) {
+                plugin.preIndexLibrary(config, builder, libJar);
+            }
+            for (Plugin plugin : PluginLoader.plugins()) {
+                plugin.preIndexMod(config, builder, modJar);
+            }
+            Indexer.indexJar(libJar, builder, Runnable::run);
+            Indexer.indexJar(modJar, builder, Runnable::run);
         }
-        Indexer.indexJar(libPath, index);
-        Indexer.indexJar(modPath, index);
+        index = builder.build();
     }
 
     public void register(String className, Errors... expectedErrors) {
         EnumSet<Errors> expectedErrorsSet = expectedErrors.length == 0 ? EnumSet.noneOf(Errors.class) : EnumSet.copyOf(Arrays.asList(expectedErrors));
         tests.add(DynamicTest.dynamicTest(className, () -> {
             Path modPath = Path.of(System.getProperty("testMod.jar"));
-            try (JarFile modJar = new JarFile(modPath.toFile())) {
-                JarEntry entry = modJar.getJarEntry(className + ".class");
+            try (JarSession modJar = JarSession.open(modPath)) {
+                JarSession.Entry entry = modJar.getEntry(className + ".class");
                 if (entry == null) {
                     throw new IOException("Class " + className + " not found in mod jar");
                 }